@@ -0,0 +1,324 @@
+import java.util.Random;
+
+/**
+  * Packed bitboard class. <br /><br />
+  *
+  * Stores the contents of a square Numerate grid as one bitboard per piece
+  * value, alongside a flat mailbox of values for constant time lookups. Cells
+  * are numbered row by row, so the cell at (x, y) is bit y*size+x. Boards up to
+  * 8x8 fit into a single long per value, while larger boards (up to 11x11) use
+  * two. Victory summaries and a Zobrist hash of the position are kept up to
+  * date on every swap.
+  */
+public class BitBoard
+{
+	/** Number of bits in a single bitboard word. */
+	public static final int WORD_BITS = 64;
+	/** The largest board size (in tiles per side) a bitboard can hold. */
+	public static final int MAX_SIZE = 11;
+	/** Base seed for the Zobrist keys. Changing this changes every position hash. */
+	private static final long ZOBRIST_SEED = 0x4E756D6572617465L;
+	
+	/** Zobrist keys shared between every board of the same size, indexed by size and then cell*size+value-1. */
+	private static final long ZOBRIST_KEYS[][] = new long[MAX_SIZE+1][];
+	
+	/**
+	  * Grabs the (shared) Zobrist keys for a board size, building them on first use. The keys for
+	  * every piece value come from their own generator, seeded off the board size and the value,
+	  * so hashes stay the same from run to run.
+	  */
+	private static synchronized long[] zobristKeys(int size)
+	{
+		if (ZOBRIST_KEYS[size] == null)
+		{
+			long keys[] = new long[size*size*size];
+			for (int value = 1; value <= size; value++)
+			{
+				Random generator = new Random(ZOBRIST_SEED + size*(MAX_SIZE+1) + value);
+				for (int cell = 0; cell < size*size; cell++)
+				{
+					keys[cell*size+value-1] = generator.nextLong();
+				}
+			}
+			ZOBRIST_KEYS[size] = keys;
+		}
+		return ZOBRIST_KEYS[size];
+	}
+	
+	/** Number of bitboard words needed for a board of the given size. */
+	public static int wordsFor(int size)
+	{
+		return (size*size+WORD_BITS-1)/WORD_BITS;
+	}
+	
+	/**
+	  * Length of an int buffer big enough to hold every legal move on a board of the given size.
+	  * Every piece can reach at most 2*(size-1) cells, and every move takes up two ints.
+	  */
+	public static int moveBufferSize(int size)
+	{
+		return size*size*2*(size-1)*2;
+	}
+	
+	/** Tests a single cell in a mask. */
+	public static boolean testBit(long mask[], int cell)
+	{
+		return (mask[cell >>> 6] & (1L << (cell & 63))) != 0;
+	}
+	
+	/** Sets a single cell in a mask. */
+	public static void setBit(long mask[], int cell)
+	{
+		mask[cell >>> 6] |= 1L << (cell & 63);
+	}
+	
+	/** Clears every cell in a mask. */
+	public static void clearBits(long mask[])
+	{
+		for (int i = 0; i < mask.length; i++)
+		{
+			mask[i] = 0;
+		}
+	}
+	
+	/** Board size, in tiles per side. */
+	private int size;
+	/** Number of words in a single bitboard. */
+	private int words;
+	/** Ray table for this board size. */
+	private RayTable rays;
+	
+	/** Piece value for every cell. */
+	private byte cells[];
+	/** Bitboards for every piece value, stored back to back: value v starts at (v-1)*words. */
+	private long boards[];
+	/** The highest piece value on the board. */
+	private int highestNumber;
+	/** Running victory summaries for the board. */
+	private VictoryTracker tracker;
+	/** Zobrist keys for this board size. */
+	private long keys[];
+	/** Zobrist hash of the current position. */
+	private long hash;
+	
+	/** Standard constructor. Packs an existing (square) grid of piece values. */
+	public BitBoard(int d_grid[][])
+	{
+		size = d_grid.length;
+		if (size > MAX_SIZE)
+		{
+			throw new IllegalArgumentException();
+		}
+		words = wordsFor(size);
+		rays = RayTable.forSize(size);
+		keys = zobristKeys(size);
+		
+		cells = new byte[size*size];
+		boards = new long[size*words];
+		highestNumber = 1;
+		
+		for (int y = 0; y < size; y++)
+		{
+			for (int x = 0; x < size; x++)
+			{
+				int value = d_grid[y][x];
+				if (value < 1 || value > size)
+				{
+					throw new IllegalArgumentException();
+				}
+				cells[y*size+x] = (byte)value;
+				hash ^= keys[(y*size+x)*size+value-1];
+				boards[(value-1)*words + ((y*size+x) >>> 6)] |= 1L << ((y*size+x) & 63);
+				if (value > highestNumber)
+				{
+					highestNumber = value;
+				}
+			}
+		}
+		
+		tracker = new VictoryTracker(this);
+	}
+	
+	/** Copy constructor. */
+	public BitBoard(BitBoard other)
+	{
+		size = other.size;
+		words = other.words;
+		rays = other.rays;
+		keys = other.keys;
+		hash = other.hash;
+		cells = other.cells.clone();
+		boards = other.boards.clone();
+		highestNumber = other.highestNumber;
+		tracker = new VictoryTracker(other.tracker, this);
+	}
+	
+	/** Gets the board size (in tiles per side). */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/** Gets the number of cells on the board. */
+	public int getCellCount()
+	{
+		return cells.length;
+	}
+	
+	/** Gets the number of words used by a single bitboard (and so by any mask for this board). */
+	public int getWords()
+	{
+		return words;
+	}
+	
+	/** Gets the highest piece value on the board. */
+	public int getHighestNumber()
+	{
+		return highestNumber;
+	}
+	
+	/** Gets the 64-bit Zobrist hash of the current position. Boards with the same pieces in the same places always hash the same. */
+	public long positionHash()
+	{
+		return hash;
+	}
+	
+	/** Gets the value of the piece at a cell. */
+	public int get(int cell)
+	{
+		return cells[cell];
+	}
+	
+	/** Gets the value of the piece at (x, y). */
+	public int get(int x, int y)
+	{
+		return cells[y*size+x];
+	}
+	
+	/** Swap the pieces at two cells. */
+	public void swap(int a, int b)
+	{
+		int valueA = cells[a];
+		int valueB = cells[b];
+		if (valueA != valueB)
+		{
+			tracker.beforeSwap(a, b);
+			long bits = (1L << (a & 63));
+			boards[(valueA-1)*words + (a >>> 6)] ^= bits;
+			boards[(valueB-1)*words + (a >>> 6)] ^= bits;
+			bits = (1L << (b & 63));
+			boards[(valueA-1)*words + (b >>> 6)] ^= bits;
+			boards[(valueB-1)*words + (b >>> 6)] ^= bits;
+			cells[a] = (byte)valueB;
+			cells[b] = (byte)valueA;
+			hash ^= keys[a*size+valueA-1] ^ keys[a*size+valueB-1] ^ keys[b*size+valueB-1] ^ keys[b*size+valueA-1];
+			tracker.afterSwap(a, b);
+		}
+	}
+	
+	/** Can a piece of value <tt>source</tt> move against a piece of value <tt>target</tt>? */
+	public boolean canMoveAgainst(int source, int target)
+	{
+		return target <= source && (target > 1 || source < highestNumber);
+	}
+	
+	/**
+	  * Finds every cell the piece at <tt>cell</tt> can move to, and sets them in <tt>targets</tt>.
+	  * Even pieces move up-down-left-right, odd pieces move diagonally, and every ray stops at the
+	  * first piece it can't move against.
+	  * @return the number of cells that were set.
+	  */
+	public int findTargets(int cell, long targets[])
+	{
+		int source = cells[cell];
+		if (source < 2)
+		{
+			return 0;
+		}
+		
+		// pieces can move against anything from the lowest value up to their own value
+		int lowest = (source < highestNumber) ? 1 : 2;
+		int rayCells[] = rays.getRays();
+		int starts[] = rays.getStarts();
+		int ends[] = rays.getEnds();
+		
+		int found = 0;
+		int first = cell*RayTable.DIRECTIONS + RayTable.firstDirection(source);
+		for (int ray = first; ray < first+RayTable.DIRECTIONS_PER_PIECE; ray++)
+		{
+			for (int i = starts[ray]; i < ends[ray]; i++)
+			{
+				int target = rayCells[i];
+				int value = cells[target];
+				if (value > source || value < lowest)
+				{
+					// we've found something to break the chain, so stop
+					break;
+				}
+				targets[target >>> 6] |= 1L << (target & 63);
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	  * Writes every legal move on the board into <tt>moves</tt>, as (from, to) cell pairs: move i
+	  * goes from moves[2*i] to moves[2*i+1]. The buffer should be at least
+	  * {@link #moveBufferSize(int)} ints long. Doesn't touch the board or allocate anything.
+	  * @return the number of moves written.
+	  */
+	public int generateMoves(int moves[])
+	{
+		int rayCells[] = rays.getRays();
+		int starts[] = rays.getStarts();
+		int ends[] = rays.getEnds();
+		
+		int count = 0;
+		// 1's can't move, so start with the 2's and go through the pieces one value at a time
+		for (int source = 2; source <= highestNumber; source++)
+		{
+			int lowest = (source < highestNumber) ? 1 : 2;
+			int direction = RayTable.firstDirection(source);
+			for (int w = 0; w < words; w++)
+			{
+				long pieces = boards[(source-1)*words+w];
+				while (pieces != 0)
+				{
+					int cell = w*WORD_BITS + Long.numberOfTrailingZeros(pieces);
+					pieces &= pieces-1;
+					
+					int first = cell*RayTable.DIRECTIONS + direction;
+					for (int ray = first; ray < first+RayTable.DIRECTIONS_PER_PIECE; ray++)
+					{
+						for (int i = starts[ray]; i < ends[ray]; i++)
+						{
+							int target = rayCells[i];
+							int value = cells[target];
+							if (value > source || value < lowest)
+							{
+								break;
+							}
+							moves[count*2] = cell;
+							moves[count*2+1] = target;
+							count++;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+	
+	/** Do the victory check for a given game mode. Runs in constant time, off the running summaries. */
+	public boolean victorious(int mode)
+	{
+		return tracker.victorious(mode);
+	}
+	
+	/** Gets the running victory summaries for the board. */
+	public VictoryTracker getTracker()
+	{
+		return tracker;
+	}
+}
\ No newline at end of file
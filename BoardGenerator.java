@@ -0,0 +1,359 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+  * Board generator class. <br /><br />
+  *
+  * Makes boards that are guaranteed to be winnable, and rates how hard they
+  * are. Every board starts out as a random winning layout for its game mode and
+  * is then scrambled with random legal moves. Moves can always be played
+  * backwards (the piece that moved can move straight back along the same ray),
+  * so the scramble itself is a way back to victory. The board is then run
+  * through a bounded solver and only kept if it falls inside the band for its
+  * difficulty: it has to need enough moves, and have neither too few nor too
+  * many swaps to pick from at the start. Batches are generated in parallel on a
+  * fork-join pool.
+  */
+public class BoardGenerator
+{
+	/** Cap on the number of positions searched when rating a single board. */
+	public static final long RATING_NODE_LIMIT = 100000;
+	/** Number of boards to try before settling for one outside the band. */
+	public static final int MAX_ATTEMPTS = 200;
+	/** Batches are split into tasks of at most this many boards. */
+	private static final int BATCH_GRAIN = 4;
+	
+	/** Scramble lengths, by difficulty tier (see {@link #tier(int)}). These also cap the moves a board can need, so the band has no cap of its own. */
+	private static final int SCRAMBLE_MOVES[] = {8, 16, 28, 40};
+	/** Fewest moves a board is allowed to need, by game mode and then difficulty tier. */
+	private static final int MIN_MOVES[][] = {
+		{5, 10, 16, 23}, // Line-Up
+		{4, 6, 9, 14},   // Alternation
+		{2, 3, 3, 3},    // Scatter
+		{4, 6, 10, 13}   // Summation
+	};
+	/** Fewest different swaps a board is allowed to start with, by game mode and then difficulty tier. Boards with fewer are too easy to feel out. */
+	private static final int MIN_BRANCHING[][] = {
+		{18, 82, 205, 400}, // Line-Up
+		{12, 60, 160, 310}, // Alternation
+		{14, 70, 180, 350}, // Scatter
+		{13, 70, 180, 345}  // Summation
+	};
+	/** Most different swaps a board is allowed to start with, by game mode and then difficulty tier. */
+	private static final int MAX_BRANCHING[][] = {
+		{30, 115, 265, 510}, // Line-Up
+		{31, 108, 250, 460}, // Alternation
+		{29, 102, 235, 430}, // Scatter
+		{28, 102, 232, 430}  // Summation
+	};
+	
+	/** Difficulty tier for a difficulty (board size): 4, 6, 8 and 10 are tiers 0 to 3. */
+	public static int tier(int difficulty)
+	{
+		return Math.max(0, Math.min(SCRAMBLE_MOVES.length-1, (difficulty-4)/2));
+	}
+	
+	/** Pool that batches (and the solver) run on. */
+	private ForkJoinPool pool;
+	
+	/** Standard constructor. */
+	public BoardGenerator(ForkJoinPool d_pool)
+	{
+		pool = d_pool;
+	}
+	
+	/** Constructor using the common fork-join pool. */
+	public BoardGenerator()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+	
+	/**
+	  * Generate a single rated board. Keeps trying until a board lands inside the band for its
+	  * difficulty; after {@link #MAX_ATTEMPTS} tries it settles for the hardest board it found,
+	  * which is still guaranteed to be winnable ({@link RatedBoard#isInBand()} tells which it was).
+	  * Never returns <tt>null</tt>: if every try so far was a scramble that went nowhere, it keeps
+	  * going until there's a board.
+	  */
+	public RatedBoard generate(int mode, int difficulty, Random generator)
+	{
+		RatedBoard best = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS || best == null; attempt++)
+		{
+			RatedBoard board = candidate(mode, difficulty, generator);
+			if (board == null)
+			{
+				continue;
+			}
+			else if (inBand(board, difficulty))
+			{
+				return board;
+			}
+			else if (best == null || board.getMinMoves() > best.getMinMoves())
+			{
+				best = board;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	  * Generate a batch of rated boards in parallel. Every board gets its own generator, seeded
+	  * off <tt>seed</tt> and its place in the batch, so a batch comes out the same every time.
+	  */
+	public RatedBoard[] generateBatch(int mode, int difficulty, int count, long seed)
+	{
+		RatedBoard boards[] = new RatedBoard[count];
+		pool.invoke(new BatchTask(mode, difficulty, seed, boards, 0, count));
+		return boards;
+	}
+	
+	/**
+	  * Make a single board without rating it: a winning layout, scrambled for as many moves as a
+	  * rated board of the same difficulty would be. Takes next to no time, and is still guaranteed to
+	  * be winnable, but might turn out to be too easy (or even already won).
+	  */
+	public static int[][] scrambledGrid(int mode, int difficulty, Random generator)
+	{
+		BitBoard board = new BitBoard(solvedGrid(mode, difficulty, generator));
+		scramble(board, SCRAMBLE_MOVES[tier(difficulty)], generator);
+		return toGrid(board);
+	}
+	
+	/** Make and rate a single board, without checking the band. Returns <tt>null</tt> if the scramble went nowhere. */
+	private RatedBoard candidate(int mode, int difficulty, Random generator)
+	{
+		BitBoard board = new BitBoard(solvedGrid(mode, difficulty, generator));
+		int scrambled = scramble(board, SCRAMBLE_MOVES[tier(difficulty)], generator);
+		if (board.victorious(mode))
+		{
+			return null;
+		}
+		return rate(mode, board, scrambled);
+	}
+	
+	/** Does a board need enough moves for its difficulty, and start with the right number of swaps to pick from? */
+	public static boolean inBand(RatedBoard board, int difficulty)
+	{
+		int tier = tier(difficulty);
+		int mode = board.getMode();
+		return board.getMinMoves() >= MIN_MOVES[mode][tier]
+		    && board.getBranching() >= MIN_BRANCHING[mode][tier] && board.getBranching() <= MAX_BRANCHING[mode][tier];
+	}
+	
+	/**
+	  * Rate a board: solve it within {@link #RATING_NODE_LIMIT} positions if possible, and count the
+	  * swaps available from the start. Boards too big to find the shortest solution for that quickly
+	  * get a weighted search as well (see {@link Solver#DEFAULT_WEIGHT}), in case it finds a way to
+	  * win that's shorter than the scramble, and to raise the lower bound.
+	  * @param knownMoves a number of moves the board is already known to be winnable in.
+	  */
+	public RatedBoard rate(int mode, BitBoard board, int knownMoves)
+	{
+		Solver solver = new Solver(mode, RATING_NODE_LIMIT, pool);
+		int solution[] = solver.solve(board);
+		int minMoves, maxMoves;
+		if (solution != null)
+		{
+			minMoves = solution.length/2;
+			maxMoves = minMoves;
+		}
+		else
+		{
+			Solver weighted = new Solver(mode, RATING_NODE_LIMIT, Solver.DEFAULT_WEIGHT, pool);
+			int found[] = weighted.solve(board);
+			minMoves = Math.max(solver.getLowerBound(), weighted.getLowerBound());
+			maxMoves = (found != null) ? Math.min(knownMoves, found.length/2) : knownMoves;
+		}
+		return new RatedBoard(mode, toGrid(board), minMoves, maxMoves, countSwaps(board));
+	}
+	
+	/** Counts the different swaps available on a board. Swapping a with b is the same as swapping b with a. */
+	public static int countSwaps(BitBoard board)
+	{
+		int cells = board.getCellCount();
+		int moves[] = new int[BitBoard.moveBufferSize(board.getSize())];
+		long seen[] = new long[(cells*cells+BitBoard.WORD_BITS-1)/BitBoard.WORD_BITS];
+		int count = board.generateMoves(moves);
+		int swaps = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int from = moves[i*2], to = moves[i*2+1];
+			int key = Math.min(from, to)*cells + Math.max(from, to);
+			if (board.get(from) != board.get(to) && !BitBoard.testBit(seen, key))
+			{
+				BitBoard.setBit(seen, key);
+				swaps++;
+			}
+		}
+		return swaps;
+	}
+	
+	/**
+	  * Plays random legal moves on a board, never swapping equal pieces or straight back again.
+	  * @return the number of moves actually played.
+	  */
+	public static int scramble(BitBoard board, int length, Random generator)
+	{
+		int moves[] = new int[BitBoard.moveBufferSize(board.getSize())];
+		int lastFrom = -1, lastTo = -1;
+		int played = 0;
+		for (int i = 0; i < length; i++)
+		{
+			int count = board.generateMoves(moves);
+			// pick moves at random until we find a useful one; give up after a while, since there might not be one
+			for (int attempt = 0; attempt < count; attempt++)
+			{
+				int move = generator.nextInt(count);
+				int from = moves[move*2], to = moves[move*2+1];
+				boolean undoing = (from == lastFrom && to == lastTo) || (from == lastTo && to == lastFrom);
+				if (board.get(from) != board.get(to) && !undoing)
+				{
+					board.swap(from, to);
+					lastFrom = from;
+					lastTo = to;
+					played++;
+					break;
+				}
+			}
+		}
+		return played;
+	}
+	
+	/**
+	  * Makes a random winning layout for a game mode. Every value from 1 to size shows up exactly
+	  * size times.
+	  */
+	public static int[][] solvedGrid(int mode, int size, Random generator)
+	{
+		int grid[][] = new int[size][size];
+		int values[] = shuffled(size, generator);
+		boolean transpose = generator.nextBoolean();
+		
+		if (mode == NumerateGame.LINEUP_MODE)
+		{
+			// every row (or column) holds its own number, counting up or down
+			boolean descending = generator.nextBoolean();
+			for (int y = 0; y < size; y++)
+			{
+				for (int x = 0; x < size; x++)
+				{
+					grid[y][x] = descending ? size-y : y+1;
+				}
+			}
+		}
+		else if (mode == NumerateGame.ALTERNATE_MODE)
+		{
+			// rows come in pairs: a-b-a-b over b-a-b-a, so both values show up once per column in the pair
+			for (int y = 0; y < size; y++)
+			{
+				int a = values[(y/2*2)%size], b = values[(y/2*2+1)%size];
+				for (int x = 0; x < size; x++)
+				{
+					grid[y][x] = ((x+y)%2 == 0) ? a : b;
+				}
+			}
+		}
+		else
+		{
+			// a shuffled latin square: every row and column holds every value, and no two neighbours match
+			int rows[] = shuffled(size, generator);
+			int columns[] = shuffled(size, generator);
+			for (int y = 0; y < size; y++)
+			{
+				for (int x = 0; x < size; x++)
+				{
+					grid[y][x] = values[(rows[y]+columns[x]-2)%size];
+				}
+			}
+		}
+		
+		if (transpose)
+		{
+			for (int y = 0; y < size; y++)
+			{
+				for (int x = y+1; x < size; x++)
+				{
+					int temp = grid[y][x];
+					grid[y][x] = grid[x][y];
+					grid[x][y] = temp;
+				}
+			}
+		}
+		return grid;
+	}
+	
+	/** Gets the values 1 to n in a random order. */
+	private static int[] shuffled(int n, Random generator)
+	{
+		int values[] = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			values[i] = i+1;
+		}
+		for (int i = n-1; i > 0; i--)
+		{
+			int j = generator.nextInt(i+1);
+			int temp = values[i];
+			values[i] = values[j];
+			values[j] = temp;
+		}
+		return values;
+	}
+	
+	/** Unpacks a bitboard into piece values, indexed by [y][x]. */
+	public static int[][] toGrid(BitBoard board)
+	{
+		int size = board.getSize();
+		int grid[][] = new int[size][size];
+		for (int y = 0; y < size; y++)
+		{
+			for (int x = 0; x < size; x++)
+			{
+				grid[y][x] = board.get(x, y);
+			}
+		}
+		return grid;
+	}
+	
+	/** Generates part of a batch, splitting it in half until it's small enough to do directly. */
+	@SuppressWarnings("serial")
+	private class BatchTask extends RecursiveAction
+	{
+		private int mode;
+		private int difficulty;
+		private long seed;
+		private RatedBoard boards[];
+		private int start;
+		private int end;
+		
+		/** Standard constructor. Fills boards[start] up to (but not including) boards[end]. */
+		private BatchTask(int d_mode, int d_difficulty, long d_seed, RatedBoard d_boards[], int d_start, int d_end)
+		{
+			mode = d_mode;
+			difficulty = d_difficulty;
+			seed = d_seed;
+			boards = d_boards;
+			start = d_start;
+			end = d_end;
+		}
+		
+		protected void compute()
+		{
+			if (end-start <= BATCH_GRAIN)
+			{
+				for (int i = start; i < end; i++)
+				{
+					boards[i] = generate(mode, difficulty, new Random(seed*31+i));
+				}
+			}
+			else
+			{
+				int middle = (start+end)/2;
+				invokeAll(new BatchTask(mode, difficulty, seed, boards, start, middle),
+				          new BatchTask(mode, difficulty, seed, boards, middle, end));
+			}
+		}
+	}
+}
\ No newline at end of file
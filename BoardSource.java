@@ -0,0 +1,11 @@
+/**
+  * Board source interface. <br /><br />
+  *
+  * Hands out boards to evaluate, one at a time, until it runs dry. Only ever
+  * read from one thread, so sources don't need to be thread-safe.
+  */
+public interface BoardSource
+{
+	/** Gets the next board, or <tt>null</tt> if there aren't any more. */
+	public int[][] nextBoard();
+}
\ No newline at end of file
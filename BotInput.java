@@ -0,0 +1,47 @@
+import java.util.Random;
+
+/**
+  * Bot input class. <br /><br />
+  *
+  * Plays random legal moves, never swapping two equal pieces, for as long as
+  * the game lasts.
+  */
+public class BotInput implements InputSource
+{
+	/** Random number generator for picking moves. */
+	private Random generator;
+	/** Buffer for the legal moves. Grown as bigger grids come along. */
+	private int moves[];
+	
+	/** Standard constructor. */
+	public BotInput(Random d_generator)
+	{
+		generator = d_generator;
+		moves = new int[0];
+	}
+	
+	/** Pick a random legal move. */
+	public boolean nextMove(Grid grid, int move[])
+	{
+		if (moves.length < grid.getMoveBufferSize())
+		{
+			moves = new int[grid.getMoveBufferSize()];
+		}
+		
+		int size = grid.getXSize();
+		int count = grid.generateMoves(moves);
+		// try moves at random until we find one that actually changes something
+		for (int attempt = 0; attempt < count; attempt++)
+		{
+			int i = generator.nextInt(count);
+			int from = moves[i*2], to = moves[i*2+1];
+			if (grid.getPiece(from%size, from/size) != grid.getPiece(to%size, to/size))
+			{
+				move[0] = from;
+				move[1] = to;
+				return true;
+			}
+		}
+		return false;
+	}
+}
\ No newline at end of file
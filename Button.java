@@ -32,8 +32,8 @@ public class Button
 	/** Render width of the button. This will occasionally differ from the expected width if the expected width is too small. */
 	private int renderWidth;
 	
-	/** Does the graphics screen need a complete redraw? */
-	public boolean needsCompleteRedraw = false;
+	/** Parts of the screen the button has changed since it was last drawn. */
+	private DirtyRegion dirty;
 	
 	/** Button text. */
 	private String text;
@@ -55,6 +55,29 @@ public class Button
 		mouseMoved = false;
 		
 		buttonPressTimer = new Timer("button_press",BUTTON_PRESS_DURATION,1,false);
+		
+		dirty = new DirtyRegion();
+		invalidate();
+	}
+	
+	/** Marks the whole button as needing a repaint. */
+	private void invalidate()
+	{
+		dirty.add(x-renderWidth/2,y,renderWidth+1,BUTTON_HEIGHT+1);
+	}
+	
+	/** Report the parts of the screen the button has changed to the graphics, so they get repainted. Call this before the frame is drawn. */
+	public void reportDirtyRegion(GameGraphics graphics)
+	{
+		Font previousFont = graphics.g.getFont();
+		int oldWidth = renderWidth;
+		readjustWidth(graphics);
+		if (renderWidth != oldWidth)
+		{
+			invalidate();
+		}
+		graphics.g.setFont(previousFont);
+		graphics.collect(dirty);
 	}
 	
 	/** Re-adjust the render width of the button based on width vs. position */
@@ -92,7 +115,7 @@ public class Button
 		readjustHighlight(mouseX, mouseY);
 		if (highlightedNow != highlighted)
 		{
-			needsCompleteRedraw = true;
+			invalidate();
 		}
 	}
 	
@@ -145,6 +168,11 @@ public class Button
 	/** Sets the button text. */
 	public void setText(String d_text)
 	{
+		if (!d_text.equals(text))
+		{
+			// the button might end up narrower, so clear away the old one
+			invalidate();
+		}
 		text = d_text;
 	}
 	
@@ -159,7 +187,7 @@ public class Button
 	{
 		if (d_enabled != enabled)
 		{
-			needsCompleteRedraw = true;
+			invalidate();
 		}
 		enabled = d_enabled;
 	}
@@ -189,15 +217,21 @@ public class Button
 		{
 			buttonPressTimer.reset();
 			buttonPressTimer.setIsActive(true);
-			needsCompleteRedraw = true;
+			invalidate();
 		}
 	}
 	
+	/** Gets the time (in seconds) until the button next needs time elapsed, if nothing else happens. Infinite unless it's being pressed. */
+	public double timeUntilUpdate()
+	{
+		return buttonPressTimer.timeLeft();
+	}
+	
 	/** Elapse time. Used only for press durations. */
 	public void elapseTime(double dtime)
 	{
 		buttonPressTimer.increment(dtime);
-		if (buttonPressTimer.triggered()) { needsCompleteRedraw = true; } // we don't need to put anything else here, since the timer will automatically deactive
+		if (buttonPressTimer.triggered()) { invalidate(); } // we don't need to put anything else here, since the timer will automatically deactive
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,184 @@
+/**
+  * Dirty region class. <br /><br />
+  *
+  * A set of screen rectangles that need repainting. Components add the areas
+  * they've changed as they go, and the screen only repaints what's been added.
+  * Overlapping rectangles are merged as they come in, and once there are too
+  * many to be worth keeping apart they're collapsed into one. Doesn't touch
+  * AWT, so game logic can mark things dirty even when there's no screen.
+  */
+public class DirtyRegion
+{
+	/** Most separate rectangles to keep. Past this, they're all merged into their bounding box. */
+	public static final int MAX_RECTS = 16;
+	
+	/** Left edges. */
+	private int left[];
+	/** Top edges. */
+	private int top[];
+	/** Right edges (exclusive). */
+	private int right[];
+	/** Bottom edges (exclusive). */
+	private int bottom[];
+	/** Number of rectangles in the region. */
+	private int count;
+	/** Is the whole screen dirty? */
+	private boolean all;
+	
+	/** Standard constructor. Starts out clean. */
+	public DirtyRegion()
+	{
+		left = new int[MAX_RECTS];
+		top = new int[MAX_RECTS];
+		right = new int[MAX_RECTS];
+		bottom = new int[MAX_RECTS];
+		count = 0;
+		all = false;
+	}
+	
+	/** Mark a rectangle as dirty. */
+	public void add(int x, int y, int width, int height)
+	{
+		if (all || width <= 0 || height <= 0)
+		{
+			return;
+		}
+		
+		int x1 = x, y1 = y, x2 = x+width, y2 = y+height;
+		// soak up every rectangle the new one overlaps or touches, growing it as we go
+		int i = 0;
+		while (i < count)
+		{
+			if (left[i] <= x2 && x1 <= right[i] && top[i] <= y2 && y1 <= bottom[i])
+			{
+				x1 = Math.min(x1, left[i]);
+				y1 = Math.min(y1, top[i]);
+				x2 = Math.max(x2, right[i]);
+				y2 = Math.max(y2, bottom[i]);
+				remove(i);
+				// the bigger rectangle might touch ones we've already passed
+				i = 0;
+			}
+			else
+			{
+				i++;
+			}
+		}
+		
+		if (count == MAX_RECTS)
+		{
+			// too many to track separately... so just lump them all together
+			for (i = 0; i < count; i++)
+			{
+				x1 = Math.min(x1, left[i]);
+				y1 = Math.min(y1, top[i]);
+				x2 = Math.max(x2, right[i]);
+				y2 = Math.max(y2, bottom[i]);
+			}
+			count = 0;
+		}
+		
+		left[count] = x1;
+		top[count] = y1;
+		right[count] = x2;
+		bottom[count] = y2;
+		count++;
+	}
+	
+	/** Mark everything in another region as dirty. */
+	public void add(DirtyRegion region)
+	{
+		if (region.all)
+		{
+			addAll();
+			return;
+		}
+		for (int i = 0; i < region.count; i++)
+		{
+			add(region.left[i], region.top[i], region.right[i]-region.left[i], region.bottom[i]-region.top[i]);
+		}
+	}
+	
+	/** Mark the whole screen as dirty. */
+	public void addAll()
+	{
+		all = true;
+		count = 0;
+	}
+	
+	/** Mark everything as clean. */
+	public void clear()
+	{
+		all = false;
+		count = 0;
+	}
+	
+	/** Drops a single rectangle, moving the last one into its place. */
+	private void remove(int i)
+	{
+		count--;
+		left[i] = left[count];
+		top[i] = top[count];
+		right[i] = right[count];
+		bottom[i] = bottom[count];
+	}
+	
+	/** Does any part of a rectangle need repainting? */
+	public boolean intersects(int x, int y, int width, int height)
+	{
+		if (all)
+		{
+			return true;
+		}
+		for (int i = 0; i < count; i++)
+		{
+			if (left[i] < x+width && x < right[i] && top[i] < y+height && y < bottom[i])
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Is the region clean? */
+	public boolean isEmpty()
+	{
+		return !all && count == 0;
+	}
+	
+	/** Is the whole screen dirty? */
+	public boolean isAll()
+	{
+		return all;
+	}
+	
+	/** Gets the number of separate rectangles in the region. Always 0 if the whole screen is dirty. */
+	public int getCount()
+	{
+		return count;
+	}
+	
+	/** Gets the x position of a rectangle. */
+	public int getX(int i)
+	{
+		return left[i];
+	}
+	
+	/** Gets the y position of a rectangle. */
+	public int getY(int i)
+	{
+		return top[i];
+	}
+	
+	/** Gets the width of a rectangle. */
+	public int getWidth(int i)
+	{
+		return right[i]-left[i];
+	}
+	
+	/** Gets the height of a rectangle. */
+	public int getHeight(int i)
+	{
+		return bottom[i]-top[i];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,264 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+  * Evaluation pipeline class. <br /><br />
+  *
+  * Plays boards by the million with a bot, to see how the starting scores and
+  * difficulties hold up. Boards stream in from a {@link BoardSource} in
+  * batches, and every batch is played across a fork-join pool by a
+  * {@link MovePolicy}, straight on BitBoards with no Game in between. Every
+  * game is scored with the same formulas as a real one - a simulated amount
+  * of time passes for every move - and only the totals are kept, in
+  * histograms, so memory use doesn't grow with the number of games.
+  */
+public class EvaluationPipeline
+{
+	/** Default number of boards read in (and played) at a time. */
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+	/** Default most moves a bot gets before the game is given up on. */
+	public static final int DEFAULT_MOVE_LIMIT = 1000;
+	/** Batches are split into tasks of at most this many boards. */
+	private static final int BATCH_GRAIN = 64;
+	
+	/** Pool batches are played on. */
+	private ForkJoinPool pool;
+	/** The bot. Every task plays with its own fork of it. */
+	private MovePolicy policy;
+	/** Game mode being played. */
+	private int mode;
+	/** Simulated time taken over every move (in seconds). */
+	private double moveTime;
+	/** Most moves the bot gets for a single game. */
+	private int moveLimit;
+	/** Number of boards read in at a time. */
+	private int batchSize;
+	/** Seed for the bots' random numbers. */
+	private long seed;
+	/** Starting score of the boards being played. Only known once the first board's in. */
+	private int startingScore;
+	
+	/** Standard constructor. */
+	public EvaluationPipeline(ForkJoinPool d_pool, MovePolicy d_policy, int d_mode, double d_moveTime, int d_moveLimit, int d_batchSize, long d_seed)
+	{
+		pool = d_pool;
+		policy = d_policy;
+		mode = d_mode;
+		moveTime = d_moveTime;
+		moveLimit = d_moveLimit;
+		batchSize = d_batchSize;
+		seed = d_seed;
+	}
+	
+	/** Constructor using the common fork-join pool and the defaults for everything else. */
+	public EvaluationPipeline(MovePolicy d_policy, int d_mode, long d_seed)
+	{
+		this(ForkJoinPool.commonPool(), d_policy, d_mode, HeadlessGame.DEFAULT_MOVE_TIME, DEFAULT_MOVE_LIMIT, DEFAULT_BATCH_SIZE, d_seed);
+	}
+	
+	/** Play every board from a source, and gather up the results. */
+	public EvaluationStats run(BoardSource source)
+	{
+		EvaluationStats stats = null;
+		int batch[][][] = new int[batchSize][][];
+		long batchNumber = 0;
+		while (true)
+		{
+			int count = 0;
+			while (count < batchSize && (batch[count] = source.nextBoard()) != null)
+			{
+				count++;
+			}
+			if (count == 0)
+			{
+				break;
+			}
+			if (stats == null)
+			{
+				// every board from a source is the same size
+				startingScore = Game.startingScore(mode, batch[0].length);
+				stats = newStats();
+			}
+			stats.add(pool.invoke(new BatchTask(batch, 0, count, seed + batchNumber*batchSize)));
+			batchNumber++;
+		}
+		return (stats != null) ? stats : newStats();
+	}
+	
+	/** Makes empty stats, shaped for the boards being played. */
+	private EvaluationStats newStats()
+	{
+		return new EvaluationStats(moveLimit, moveTime, startingScore);
+	}
+	
+	/** Play a single board to the end, and count it. */
+	private void play(int grid[][], MovePolicy player, EvaluationStats stats, int move[])
+	{
+		BitBoard board = new BitBoard(grid);
+		player.start(mode, board);
+		int moves = 0;
+		while (!board.victorious(mode) && moves < moveLimit && player.nextMove(board, move))
+		{
+			board.swap(move[0], move[1]);
+			moves++;
+		}
+		
+		if (board.victorious(mode))
+		{
+			int seconds = (int)(moves*moveTime);
+			int score = Game.scoreSeconds(Game.scoreMoves(startingScore, moves), seconds);
+			stats.addWin(moves, seconds, startingScore-score);
+		}
+		else
+		{
+			stats.addLoss();
+		}
+	}
+	
+	/** Plays part of a batch, splitting it in half until it's small enough to do directly. */
+	@SuppressWarnings("serial")
+	private class BatchTask extends RecursiveTask<EvaluationStats>
+	{
+		private int batch[][][];
+		private int start;
+		private int end;
+		private long seed;
+		
+		/** Standard constructor. Plays batch[start] up to (but not including) batch[end]. */
+		private BatchTask(int d_batch[][][], int d_start, int d_end, long d_seed)
+		{
+			batch = d_batch;
+			start = d_start;
+			end = d_end;
+			seed = d_seed;
+		}
+		
+		protected EvaluationStats compute()
+		{
+			if (end-start <= BATCH_GRAIN)
+			{
+				// seeded off where the boards are in the stream, so a run comes out the same every time
+				MovePolicy player = policy.fork(seed+start);
+				EvaluationStats stats = newStats();
+				int move[] = new int[2];
+				for (int i = start; i < end; i++)
+				{
+					play(batch[i], player, stats, move);
+				}
+				return stats;
+			}
+			else
+			{
+				int middle = (start+end)/2;
+				BatchTask second = new BatchTask(batch, middle, end, seed);
+				second.fork();
+				EvaluationStats stats = new BatchTask(batch, start, middle, seed).compute();
+				stats.add(second.join());
+				return stats;
+			}
+		}
+	}
+	
+	/**
+	  * Makes a source of freshly scrambled boards (see {@link BoardGenerator#scrambledGrid}).
+	  * Scrambles that happen to come out already won are thrown away, since there'd be nothing to play.
+	  */
+	public static BoardSource generatedBoards(final int mode, final int difficulty, final long count, long seed)
+	{
+		final Random generator = new Random(seed);
+		return new BoardSource()
+		{
+			private long made = 0;
+			
+			public int[][] nextBoard()
+			{
+				if (made >= count)
+				{
+					return null;
+				}
+				made++;
+				int grid[][];
+				do
+				{
+					grid = BoardGenerator.scrambledGrid(mode, difficulty, generator);
+				}
+				while (new BitBoard(grid).victorious(mode));
+				return grid;
+			}
+		};
+	}
+	
+	/** Makes a source of every board in a puzzle bank file for a game mode and difficulty. */
+	public static BoardSource bankBoards(final PuzzleBank bank, final int mode, final int difficulty)
+	{
+		return new BoardSource()
+		{
+			private int next = 0;
+			
+			public int[][] nextBoard()
+			{
+				if (next >= bank.count(mode, difficulty))
+				{
+					return null;
+				}
+				return bank.get(mode, difficulty, next++).getGrid();
+			}
+		};
+	}
+	
+	/** Makes a policy by name: random, greedy or solver. */
+	private static MovePolicy policyNamed(String name, long seed)
+	{
+		if (name.equals("greedy"))
+		{
+			return new GreedyPolicy(new Random(seed));
+		}
+		else if (name.equals("solver"))
+		{
+			return new SolverPolicy(BoardGenerator.RATING_NODE_LIMIT, new Random(seed));
+		}
+		return new RandomPolicy(new Random(seed));
+	}
+	
+	/**
+	  * Evaluates a bot on a stream of boards and prints the results.
+	  * Usage: EvaluationPipeline [random|greedy|solver] [games] [mode] [difficulty] [seed] [puzzle bank file]
+	  * With a puzzle bank file, every board in it for the mode and difficulty is played instead.
+	  */
+	public static void main(String args[])
+	{
+		String policyName = (args.length > 0) ? args[0] : "greedy";
+		long games = (args.length > 1) ? Long.parseLong(args[1]) : 100000;
+		int mode = (args.length > 2) ? Integer.parseInt(args[2]) : NumerateGame.LINEUP_MODE;
+		int difficulty = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+		long seed = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+		try
+		{
+			BoardSource source;
+			if (args.length > 5)
+			{
+				source = bankBoards(new PuzzleBank(args[5]), mode, difficulty);
+			}
+			else
+			{
+				source = generatedBoards(mode, difficulty, games, seed);
+			}
+			
+			EvaluationPipeline pipeline = new EvaluationPipeline(policyNamed(policyName, seed), mode, seed);
+			double start = GameUtils.sysTime();
+			EvaluationStats stats = pipeline.run(source);
+			double elapsed = GameUtils.sysTime()-start;
+			
+			System.out.println(stats.getPlayed()+" games ("+policyName+") in "+elapsed+"s ("+(long)(stats.getPlayed()/elapsed*3600)+" games/hour)");
+			System.out.println(stats.getWon()+" won, starting score "+Game.startingScore(mode, difficulty));
+			System.out.println("moves:   "+stats.getMoves());
+			System.out.println("seconds: "+stats.getSeconds());
+			System.out.println("lost:    "+stats.getLost());
+		}
+		catch (Exception X)
+		{
+			System.out.println("ERROR: "+X.toString());
+		}
+	}
+}
\ No newline at end of file
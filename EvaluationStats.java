@@ -0,0 +1,95 @@
+/**
+  * Evaluation stats class. <br /><br />
+  *
+  * What an evaluation run found out: how many games were played and won, and
+  * histograms of the moves, time and score lost (starting score less final
+  * score) of the games that were won. Every histogram is one bucket per value,
+  * with as many buckets as a game could possibly need under the run's move
+  * limit, so percentiles come out exact. Every batch task fills in its own,
+  * and they're added together at the end.
+  */
+public class EvaluationStats
+{
+	/** Number of games played. */
+	private long played;
+	/** Number of games won. */
+	private long won;
+	/** Moves taken to win. */
+	private Histogram moves;
+	/** Time taken to win (in seconds). */
+	private Histogram seconds;
+	/** Score lost over the game. */
+	private Histogram lost;
+	
+	/**
+	  * Standard constructor. Starts out empty.
+	  * @param moveLimit The most moves a game can take.
+	  * @param moveTime Simulated time taken over every move (in seconds).
+	  * @param startingScore The score every game starts out on.
+	  */
+	public EvaluationStats(int moveLimit, double moveTime, int startingScore)
+	{
+		int maxSeconds = (int)(moveLimit*moveTime);
+		played = 0;
+		won = 0;
+		moves = new Histogram(1, moveLimit+1);
+		seconds = new Histogram(1, maxSeconds+1);
+		lost = new Histogram(1, startingScore-Game.scoreSeconds(Game.scoreMoves(startingScore, moveLimit), maxSeconds)+1);
+	}
+	
+	/** Count a game that was won. */
+	public void addWin(int d_moves, int d_seconds, int scoreLost)
+	{
+		played++;
+		won++;
+		moves.add(d_moves);
+		seconds.add(d_seconds);
+		lost.add(scoreLost);
+	}
+	
+	/** Count a game that wasn't won. */
+	public void addLoss()
+	{
+		played++;
+	}
+	
+	/** Count everything from another set of stats. */
+	public void add(EvaluationStats other)
+	{
+		played += other.played;
+		won += other.won;
+		moves.add(other.moves);
+		seconds.add(other.seconds);
+		lost.add(other.lost);
+	}
+	
+	/** Gets the number of games played. */
+	public long getPlayed()
+	{
+		return played;
+	}
+	
+	/** Gets the number of games won. */
+	public long getWon()
+	{
+		return won;
+	}
+	
+	/** Gets the moves taken to win. */
+	public Histogram getMoves()
+	{
+		return moves;
+	}
+	
+	/** Gets the time taken to win (in seconds). */
+	public Histogram getSeconds()
+	{
+		return seconds;
+	}
+	
+	/** Gets the score lost over every game. */
+	public Histogram getLost()
+	{
+		return lost;
+	}
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 import java.awt.event.KeyEvent;
 
+import java.util.Random;
+
 /** Represents a single, simple active or replayed game. */
 public class Game extends GameState
 {
@@ -52,6 +54,9 @@ public class Game extends GameState
 	/** Status bar padding to the left side */
 	private static final int STATUS_BAR_PADDING = 5;
 	
+	/** How often to check on a hint search in progress (in seconds). */
+	private static final double HINT_POLL_TIME = 0.1;
+	
 	/** Width for buttons */
 	private static final int BUTTON_WIDTH = 35;
 	
@@ -105,6 +110,11 @@ public class Game extends GameState
 	/** High scores list */
 	private ScoresList scores;
 	
+	/** Works out hints in the background. */
+	private HintService hints;
+	/** The last hint the status bar was updated for. */
+	private Hint shownHint;
+	
 	/** The undo button */
 	private Button undoButton;
 	/** The hint button */
@@ -117,29 +127,48 @@ public class Game extends GameState
 	
 	/** Needs complete redraw? */
 	private boolean needsCompleteRedraw;
+	/** Has the status bar changed since the last frame? */
+	private boolean statusBarChanged;
+	/** Have the counters changed since the last frame? */
+	private boolean countersChanged;
+	/** Has the score changed since the last frame? */
+	private boolean scoreChanged;
+	/** The move count shown on the screen. */
+	private int shownMoves;
+	/** The caption shown along the bottom of the screen, or null. */
+	private String shownCaption;
 	/** Should the help box be refreshed? set this to true to redo the help box */
 	private boolean helpBoxNeedsRefreshing;
 	
-	/** Standard constructor. */
-	public Game(ScoresList d_scores, int mode, int difficulty, GameChallenge d_challenge)
+	/** Standard constructor. Picks a board out of the puzzle bank, or makes one up if there isn't one. */
+	public Game(ScoresList d_scores, PuzzleBank d_puzzles, int mode, int difficulty, GameChallenge d_challenge)
+	{
+		this(d_scores, mode, pickBoard(d_puzzles, mode, difficulty), d_challenge);
+		puzzles = d_puzzles;
+	}
+	
+	/**
+	  * Constructor for a game on a given board. The scores list can be null (no high scores are
+	  * kept then), and nothing here needs a screen, so this works for headless games too.
+	  */
+	public Game(ScoresList d_scores, int mode, int board[][], GameChallenge d_challenge)
 	{
 		scores = d_scores;
+		int difficulty = board.length;
 		int x = NumerateGame.GRID_X_PADDING,
 		    y = NumerateGame.GRID_Y_PADDING;
 		x += (NumerateGame.GRID_TILE_SIZE*(TextBank.DIFFICULTIES.length*2+2)-difficulty*NumerateGame.GRID_TILE_SIZE)/2;
 		y += (NumerateGame.GRID_TILE_SIZE*(TextBank.DIFFICULTIES.length*2+2)-difficulty*NumerateGame.GRID_TILE_SIZE)/2;
-		grid = new Grid(mode, difficulty, x, y, mouseX, mouseY);
+		grid = new Grid(mode, board, x, y, mouseX, mouseY);
 		challenge = d_challenge;
 		needsCompleteRedraw = true;
+		statusBarChanged = countersChanged = scoreChanged = false;
+		shownMoves = 0;
+		shownCaption = null;
+		hints = new HintService(mode);
+		shownHint = null;
 		
-		if (mode >= 0 && (difficulty-4)/2 >= 0 && mode < STARTING_SCORES.length && (difficulty-4)/2 < STARTING_SCORES[mode].length)
-		{
-			score = STARTING_SCORES[mode][(difficulty-4)/2];
-		}
-		else
-		{
-			score = 0;
-		}
+		score = startingScore(mode, difficulty);
 		
 		gameStartTimer = new Timer("game_start",GAME_START_DELAY,1,true);
 		pieceMovedTimer = new Timer("piece_moved",PIECE_MOVED_DELAY,1,false);
@@ -164,19 +193,53 @@ public class Game extends GameState
 		helpBoxNeedsRefreshing = true;
 	}
 	
+	/** Gets a board out of the puzzle bank, or makes one up on the spot if there's no bank (or nothing in it for this game). */
+	private static int[][] pickBoard(PuzzleBank puzzles, int mode, int difficulty)
+	{
+		RatedBoard puzzle = (puzzles != null) ? puzzles.pick(mode, difficulty, new Random()) : null;
+		if (puzzle == null)
+		{
+			puzzle = new BoardGenerator().generate(mode, difficulty, new Random());
+		}
+		return puzzle.getGrid();
+	}
+	
 	/** Draw the game. */
 	public void draw(GameGraphics graphics)
 	{
-		graphics.needsCompleteRedraw = needsCompleteRedraw || grid.needsCompleteRedraw || undoButton.needsCompleteRedraw || hintButton.needsCompleteRedraw;
-		graphics.redraw();
-		needsCompleteRedraw = grid.needsCompleteRedraw = false;
-		
-		graphics.g.setColor(NumerateGame.GAME_BG_COLOR);
-		graphics.g.fillRect(0,0,NumerateGame.WINDOW_X,NumerateGame.WINDOW_Y);
-		
-		grid.draw(graphics);
-		int textCursor = grid.getY();
-		textCursor += 2 + grid.getYSize()*NumerateGame.GRID_TILE_SIZE;
+		// work out what's changed first, since only that gets repainted
+		graphics.needsCompleteRedraw = graphics.needsCompleteRedraw || needsCompleteRedraw;
+		needsCompleteRedraw = false;
+		grid.setHint(hints.getHint());
+		grid.reportDirtyRegion(graphics);
+		undoButton.reportDirtyRegion(graphics);
+		hintButton.reportDirtyRegion(graphics);
+		if (grid.getMoves() != shownMoves)
+		{
+			shownMoves = grid.getMoves();
+			countersChanged = true;
+		}
+		if (countersChanged)
+		{
+			graphics.invalidate(TIME_COUNTER_X,TIME_COUNTER_Y,MOVE_COUNTER_X+MOVE_COUNTER_WIDTH+2-TIME_COUNTER_X,TIME_COUNTER_HEIGHT+2);
+			countersChanged = false;
+		}
+		if (scoreChanged)
+		{
+			graphics.invalidate(TIME_COUNTER_X,0,NumerateGame.WINDOW_X-TIME_COUNTER_X,SCORE_Y_PADDING+NumerateGame.SCORE_FONT.getSize());
+			scoreChanged = false;
+		}
+		if (statusBarChanged)
+		{
+			graphics.invalidate(NumerateGame.GRID_X_PADDING,statusBarY(),STATUS_BAR_WIDTH+2,STATUS_BAR_HEIGHT+2);
+			statusBarChanged = false;
+		}
+		String caption = currentCaption();
+		if (caption != shownCaption)
+		{
+			shownCaption = caption;
+			graphics.invalidateCaption();
+		}
 		
 		graphics.setHelpBoxRefreshed(!helpBoxNeedsRefreshing);
 		if (!graphics.isHelpBoxRefreshed())
@@ -200,6 +263,20 @@ public class Game extends GameState
 			graphics.setHelpBoxRefreshed(true);
 			helpBoxNeedsRefreshing = false;
 		}
+		
+		if (!graphics.redraw())
+		{
+			// nothing's changed
+			return;
+		}
+		
+		graphics.g.setColor(NumerateGame.GAME_BG_COLOR);
+		graphics.g.fillRect(0,0,NumerateGame.WINDOW_X,NumerateGame.WINDOW_Y);
+		
+		grid.draw(graphics);
+		int textCursor = grid.getY();
+		textCursor += 2 + grid.getYSize()*NumerateGame.GRID_TILE_SIZE;
+		
 		graphics.drawHelpBox();
 		
 		graphics.g.setFont(NumerateGame.GAME_HEADING_FONT);
@@ -215,45 +292,24 @@ public class Game extends GameState
 			// draw the undo/hint buttons
 			undoButton.draw(graphics,mouseX,mouseY);
 			hintButton.draw(graphics,mouseX,mouseY);
-			if (undoButton.isHighlighted())
+			if (shownCaption != null)
 			{
-				if (undoButton.isEnabled() && !grid.getMoveUndone())
-				{
-					graphics.drawCaption(TextBank.UNDO_BUTTON_CAPTION);
-				}
-				else if (undoButton.isEnabled() && grid.getMoveUndone())
-				{
-					graphics.drawCaption(TextBank.REDO_BUTTON_CAPTION);
-				}
-				else if (victorious)
-				{
-					graphics.drawCaption(TextBank.UNDO_BUTTON_VICTORY_CAPTION);
-				}
-				else if (!undoButton.isEnabled() && grid.pieceSelected())
-				{
-					graphics.drawCaption(TextBank.MOVING_BUTTON_CAPTION);
-				}
-				else if (!undoButton.isEnabled())
-				{
-					graphics.drawCaption(TextBank.CANT_UNDO_BUTTON_CAPTION);
-				}
-			}
-			else if (hintButton.isHighlighted())
-			{
-				if (victorious)
-				{
-					graphics.drawCaption(TextBank.HINT_BUTTON_VICTORY_CAPTION);
-				}
+				graphics.drawCaption(shownCaption);
 			}
 		}
 		
-		textCursor += graphics.g.getFont().getSize()/2;
 		if (!victorious)
 		{
 			// now draw the score
 			graphics.g.setFont(NumerateGame.SCORE_FONT);
-			graphics.g.drawString(NumerateGame.INTEGER_FORMAT.format(score),NumerateGame.WINDOW_X-SCORE_X_PADDING-graphics.g.getFontMetrics().stringWidth(NumerateGame.INTEGER_FORMAT.format(score)),SCORE_Y_PADDING+graphics.g.getFont().getSize()/2);
-			
+			if (graphics.isDirty(TIME_COUNTER_X,0,NumerateGame.WINDOW_X-TIME_COUNTER_X,SCORE_Y_PADDING+NumerateGame.SCORE_FONT.getSize()))
+			{
+				graphics.g.drawString(NumerateGame.INTEGER_FORMAT.format(score),NumerateGame.WINDOW_X-SCORE_X_PADDING-graphics.g.getFontMetrics().stringWidth(NumerateGame.INTEGER_FORMAT.format(score)),SCORE_Y_PADDING+graphics.g.getFont().getSize()/2);
+			}
+		}
+		
+		if (!victorious && graphics.isDirty(TIME_COUNTER_X,TIME_COUNTER_Y,MOVE_COUNTER_X+MOVE_COUNTER_WIDTH+2-TIME_COUNTER_X,TIME_COUNTER_HEIGHT+2))
+		{
 			int textCursor2 = TIME_COUNTER_Y + COUNTER_TOP_PADDING + 1;
 			// now draw the counters
 			graphics.g.setColor(NumerateGame.COUNTER_BORDER_COLOR);
@@ -278,7 +334,7 @@ public class Game extends GameState
 			drawUniformString(graphics, strTime, TIME_COUNTER_X+1+TIME_COUNTER_WIDTH/2, textCursor2);
 			drawUniformString(graphics, Integer.toString(grid.getMoves()), MOVE_COUNTER_X+1+MOVE_COUNTER_WIDTH/2, textCursor2);
 		}
-		else
+		else if (victorious)
 		{
 			// Victorious... so print the stuff out.
 			graphics.g.setFont(NumerateGame.SMALL_VICTORY_FONT);
@@ -293,7 +349,11 @@ public class Game extends GameState
 		}
 		
 		// now draw the status bar
-		textCursor += STATUS_PADDING;
+		textCursor = statusBarY();
+		if (!graphics.isDirty(NumerateGame.GRID_X_PADDING,textCursor,STATUS_BAR_WIDTH+2,STATUS_BAR_HEIGHT+2))
+		{
+			return;
+		}
 		graphics.g.setColor(NumerateGame.STATUS_BAR_BORDER_COLOR);
 		graphics.drawBorder(NumerateGame.GRID_X_PADDING,textCursor,NumerateGame.GRID_X_PADDING + STATUS_BAR_WIDTH + 1,textCursor + STATUS_BAR_HEIGHT + 1);
 		graphics.g.setColor(NumerateGame.STATUS_BAR_BACKGROUND_COLOR);
@@ -314,6 +374,49 @@ public class Game extends GameState
 		graphics.g.drawString(statusBar,NumerateGame.GRID_X_PADDING + 1 + STATUS_BAR_PADDING,textCursor + STATUS_BAR_HEIGHT/2 + 1 + graphics.g.getFont().getSize()/3);
 	}
 	
+	/** Gets the top of the status bar (in px). It sits below the grid and the countdown line. */
+	private int statusBarY()
+	{
+		return grid.getY() + 2 + grid.getYSize()*NumerateGame.GRID_TILE_SIZE + COUNTDOWN_PADDING + NumerateGame.GAME_HEADING_FONT.getSize()/2*2 + STATUS_PADDING;
+	}
+	
+	/** Gets the caption to show along the bottom of the screen for whatever button the mouse is over, or null if there isn't one. */
+	private String currentCaption()
+	{
+		if (countdown > 0)
+		{
+			return null;
+		}
+		else if (undoButton.isHighlighted())
+		{
+			if (undoButton.isEnabled() && !grid.getMoveUndone())
+			{
+				return TextBank.UNDO_BUTTON_CAPTION;
+			}
+			else if (undoButton.isEnabled() && grid.getMoveUndone())
+			{
+				return TextBank.REDO_BUTTON_CAPTION;
+			}
+			else if (victorious)
+			{
+				return TextBank.UNDO_BUTTON_VICTORY_CAPTION;
+			}
+			else if (!undoButton.isEnabled() && grid.pieceSelected())
+			{
+				return TextBank.MOVING_BUTTON_CAPTION;
+			}
+			else if (!undoButton.isEnabled())
+			{
+				return TextBank.CANT_UNDO_BUTTON_CAPTION;
+			}
+		}
+		else if (hintButton.isHighlighted() && victorious)
+		{
+			return TextBank.HINT_BUTTON_VICTORY_CAPTION;
+		}
+		return null;
+	}
+	
 	/** Draw a uniform-sized string centered at x,y */
 	private void drawUniformString(GameGraphics graphics, String str, int x, int y)
 	{
@@ -334,8 +437,8 @@ public class Game extends GameState
 		int seconds = time%60;
 		String formatted = "";
 		
-		int minuteDigits = NumerateGame.getDigits(minutes);
-		int secondDigits = NumerateGame.getDigits(seconds);
+		int minuteDigits = GameUtils.getDigits(minutes);
+		int secondDigits = GameUtils.getDigits(seconds);
 		
 		for (int i = minuteDigits; i < minDigits; i++)
 		{
@@ -377,8 +480,10 @@ public class Game extends GameState
 			
 			if (gameStartTimer.triggered())
 			{
+				// the countdown gives way to the buttons
 				grid.setActive(true);
 				countdown = 0;
+				needsCompleteRedraw = true;
 				time += dtime;
 			}
 			else if (gameStartTimer.isActive())
@@ -398,18 +503,49 @@ public class Game extends GameState
 					scoreSecond((int)time-intTime);
 					intTime = (int)time;
 					strTime = formattedTime(intTime,MIN_MINUTE_DIGITS,MAX_MINUTE_DIGITS);
-					needsCompleteRedraw = true;
+					countersChanged = true;
 				}
 				
 				// now deduct the score for possible moves we've made
-				scoreMove(grid.getUncheckedMoves());
+				int uncheckedMoves = grid.getUncheckedMoves();
+				if (uncheckedMoves > 0)
+				{
+					// any hint (or hint search) is for the old position now
+					hints.cancel();
+				}
+				scoreMove(uncheckedMoves);
+			}
+			
+			Hint hint = hints.getHint();
+			if (hint != shownHint)
+			{
+				shownHint = hint;
+				if (hint != null && hint.getHash() == grid.positionHash())
+				{
+					if (!hint.hasMove())
+					{
+						statusBar = TextBank.HINT_UNSOLVABLE_STATUS;
+						statusBarNature = -1;
+					}
+					else if (hint.isBest())
+					{
+						statusBar = TextBank.HINT_FOUND_STATUS;
+						statusBarNature = 1;
+					}
+					else
+					{
+						statusBar = TextBank.HINT_GUESS_STATUS;
+						statusBarNature = 0;
+					}
+				}
+				statusBarChanged = true;
 			}
 			
 			if (pieceMovedTimer.isActive() && pieceMovedTimer.triggered())
 			{
 				statusBar = defaultStatusBar;
 				statusBarNature = defaultStatusBarNature;
-				needsCompleteRedraw = true;
+				statusBarChanged = true;
 			}
 			
 			if (grid.changedStatusBar())
@@ -430,7 +566,7 @@ public class Game extends GameState
 					// bar case, so stop this timer
 					pieceMovedTimer.setIsActive(false);
 				}
-				needsCompleteRedraw = true;
+				statusBarChanged = true;
 			}
 			
 			if (grid.victorious())
@@ -444,10 +580,44 @@ public class Game extends GameState
 				defaultStatusBarNature = 1;
 				undoButton.setEnabled(false);
 				hintButton.setEnabled(false);
+				hints.cancel();
+				// the counters give way to the final results
+				needsCompleteRedraw = true;
 				
-				scoresPlacement = scores.scoreFits((grid.getHighestNumber()-4)/2,score);
+				if (scores != null)
+				{
+					scoresPlacement = scores.rankOf(grid.getMode(),(grid.getHighestNumber()-4)/2,score);
+				}
+			}
+		}
+	}
+	
+	/**
+	  * Gets the time until the game next needs time elapsed: when the countdown or the clock next
+	  * ticks over, the status bar reverts, a button pops back up, or it's time to check for a hint.
+	  */
+	public double timeUntilUpdate()
+	{
+		double wait = Math.min(undoButton.timeUntilUpdate(), hintButton.timeUntilUpdate());
+		if (!victorious)
+		{
+			if (gameStartTimer.isActive())
+			{
+				// the countdown changes every whole second left
+				double left = gameStartTimer.timeLeft();
+				wait = Math.min(wait, left-Math.ceil(left)+1.0);
+			}
+			else
+			{
+				wait = Math.min(wait, intTime+1-time);
+			}
+			wait = Math.min(wait, pieceMovedTimer.timeLeft());
+			if (hints.isSearching())
+			{
+				wait = Math.min(wait, HINT_POLL_TIME);
 			}
 		}
+		return Math.max(wait, 0.0);
 	}
 	
 	/** Mouse moved. */
@@ -490,8 +660,14 @@ public class Game extends GameState
 			undoButton.press();
 			hintButton.press();
 			
+			if (hintButton.isEnabled() && hintButton.isPressed())
+			{
+				requestHint();
+			}
+			
 			if (undoButton.isEnabled() && undoButton.isPressed())
 			{
+				hints.cancel();
 				grid.undoRedoMove();
 				if (grid.getMoveUndone())
 				{
@@ -516,12 +692,16 @@ public class Game extends GameState
 			}
 			hintButton.setEnabled(true);
 		}
-		needsCompleteRedraw = true;
 	}
 	
 	/** Receive a key press */
 	public void keyPressed(int keyCode)
 	{
+		if (keyCode == KeyEvent.VK_H && hintButton.isEnabled())
+		{
+			requestHint();
+		}
+		
 		if (grid.focused())
 		{
 			if (keyCode == KeyEvent.VK_UP)
@@ -547,23 +727,89 @@ public class Game extends GameState
 		}
 	}
 	
+	/** Ask for a hint for the current position. The search runs in the background, so this returns right away. */
+	private void requestHint()
+	{
+		if (!victorious && countdown <= 0)
+		{
+			hints.request(grid);
+			statusBar = TextBank.HINT_SEARCHING_STATUS;
+			statusBarNature = 0;
+			// make sure the status bar gets updated, even if the hint was already there
+			shownHint = null;
+			statusBarChanged = true;
+		}
+	}
+	
+	/** Gets the grid for this game. */
+	public Grid getGrid()
+	{
+		return grid;
+	}
+	
+	/** Gets the current score. */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/** Gets the time played so far (in seconds), not counting the countdown. */
+	public double getTime()
+	{
+		return time;
+	}
+	
+	/** Has the countdown finished, so pieces can be moved? */
+	public boolean isStarted()
+	{
+		return countdown <= 0;
+	}
+	
+	/** Has the game been won? */
+	public boolean isVictorious()
+	{
+		return victorious;
+	}
+	
 	/** Elapse a second on the score, deducting the score as necessary */
 	private void scoreSecond(int times)
 	{
 		if (score > 0)
 		{
-			score = Math.max(score-times*3,0);
-			needsCompleteRedraw = true;
+			score = scoreSeconds(score, times);
+			scoreChanged = true;
 		}
 	}
 	
 	/** Makes a move, deducting the score as necessary */
 	private void scoreMove(int times)
 	{
-		if (score > 0)
+		if (score > 0 && times > 0)
+		{
+			score = scoreMoves(score, times);
+			scoreChanged = true;
+		}
+	}
+	
+	/** Gets the score a game starts out with, for a game mode and difficulty (board size). 0 if there isn't one. */
+	public static int startingScore(int mode, int difficulty)
+	{
+		if (mode >= 0 && (difficulty-4)/2 >= 0 && mode < STARTING_SCORES.length && (difficulty-4)/2 < STARTING_SCORES[mode].length)
 		{
-			score = Math.max(score-times*13,0);
-			needsCompleteRedraw = true;
+			return STARTING_SCORES[mode][(difficulty-4)/2];
 		}
+		return 0;
+	}
+	
+	/** Deducts a number of elapsed seconds from a score. Scores never drop below 0. */
+	public static int scoreSeconds(int score, int seconds)
+	{
+		return Math.max(score-seconds*3,0);
+	}
+	
+	/** Deducts a number of moves from a score. Scores never drop below 0. */
+	public static int scoreMoves(int score, int moves)
+	{
+		return Math.max(score-moves*13,0);
 	}
 }
\ No newline at end of file
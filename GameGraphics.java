@@ -2,7 +2,10 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
 import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -12,11 +15,16 @@ import java.util.LinkedList;
   * Game graphics class. <br /><br />
   *
   * In effect, this class acts as a container for all graphics-related
-  * things passed to game states. Includes graphics and strategy objects.
+  * things passed to game states. Includes graphics and strategy objects.<br /><br />
+  *
+  * Game states draw into a back buffer that keeps its contents from frame to
+  * frame, so only the parts of the screen that have changed need repainting.
+  * Changes are reported as dirty rectangles; every frame, drawing is clipped
+  * to them, and the buffer is then copied to the screen in one go.
   */
 public class GameGraphics
 {
-	/** Graphics object. */
+	/** Graphics object. Draws into the back buffer, and is clipped to the dirty region while a frame is being drawn. */
 	public Graphics2D g;
 	/** Stategy object. */
 	public BufferStrategy s;
@@ -35,14 +43,31 @@ public class GameGraphics
 	/** Saved font. */
 	private Font savedFont;
 	
+	/** Back buffer. Keeps everything drawn into it until it's drawn over. */
+	private BufferedImage buffer;
+	/** Areas changed since the last frame was drawn. */
+	private DirtyRegion dirty;
+	/** Areas being repainted in the current frame. */
+	private DirtyRegion drawing;
+	/** Does the back buffer need copying to the screen? */
+	private boolean needsPresent;
+	
 	/** Needs complete redraw? */
 	public boolean needsCompleteRedraw = false;
+	/** How far this frame is between the last simulation step and the next one, from 0 to 1. Use it to smooth out anything that moves. */
+	public double interpolation = 0.0;
 	
 	/** Just a constructor. */
-	public GameGraphics(Graphics2D d_g, BufferStrategy d_s)
+	public GameGraphics(BufferStrategy d_s)
 	{
-		g = d_g;
 		s = d_s;
+		buffer = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(NumerateGame.WINDOW_X, NumerateGame.WINDOW_Y);
+		g = buffer.createGraphics();
+		dirty = new DirtyRegion();
+		drawing = new DirtyRegion();
+		// nothing's been drawn yet
+		dirty.addAll();
+		needsPresent = false;
 		
 		helpLines = new LinkedList<String>();
 		helpBoxRefreshed = false;
@@ -119,6 +144,8 @@ public class GameGraphics
 	/** Updates the dimensions of the help box. */
 	public void updateHelpBoxDimensions()
 	{
+		// the old box needs clearing away, and the new one needs drawing
+		invalidateHelpBox();
 		saveFont();
 		g.setFont(NumerateGame.CAPTION_FONT);
 		helpLineHeight = helpLines.size()*g.getFontMetrics().getMaxDescent();
@@ -136,6 +163,18 @@ public class GameGraphics
 		}
 		
 		revertFont();
+		invalidateHelpBox();
+	}
+	
+	/** Marks the area the help box takes up as dirty. The box hangs off the bottom right corner, and its text can poke out the top a little. */
+	private void invalidateHelpBox()
+	{
+		if (helpLines.size() > 0)
+		{
+			int x = NumerateGame.WINDOW_X-NumerateGame.HELP_BOX_PADDING_X-NumerateGame.HELP_BOX_INNER_PADDING_X*2-helpLineWidth-2;
+			int y = NumerateGame.WINDOW_Y-NumerateGame.HELP_BOX_PADDING_Y-NumerateGame.HELP_BOX_INNER_PADDING_Y*2-helpLineHeight-2-NumerateGame.CAPTION_FONT.getSize();
+			invalidate(x, y, NumerateGame.WINDOW_X-x, NumerateGame.WINDOW_Y-y);
+		}
 	}
 	
 	/** Draws the help box. */
@@ -168,30 +207,102 @@ public class GameGraphics
 		}
 	}
 	
-	/** Do a partial redraw of the screen */
-	public void partialRedraw()
+	/** Marks a rectangle as needing a repaint. */
+	public void invalidate(int x, int y, int width, int height)
 	{
-		g.clearRect(0,0,NumerateGame.WINDOW_X,NumerateGame.WINDOW_Y);
+		dirty.add(x, y, width, height);
 	}
 	
-	/** Do a complete redraw of the screen */
-	public void completeRedraw()
+	/** Marks the whole screen as needing a repaint. */
+	public void invalidateAll()
 	{
-		g = (Graphics2D) s.getDrawGraphics();
+		dirty.addAll();
 	}
 	
-	/** Just do a redraw -- figure out if it's partial or complete based on the context */
-	public void redraw()
+	/** Marks the caption strip along the bottom of the screen as needing a repaint. */
+	public void invalidateCaption()
+	{
+		int height = NumerateGame.CAPTION_FONT.getSize()*3/2+NumerateGame.CAPTION_PADDING_Y;
+		invalidate(0, NumerateGame.WINDOW_Y-height, NumerateGame.WINDOW_X, height);
+	}
+	
+	/** Takes every rectangle a component has marked as dirty, leaving the component's region clean. */
+	public void collect(DirtyRegion region)
+	{
+		dirty.add(region);
+		region.clear();
+	}
+	
+	/** Does any part of a rectangle get repainted this frame? Use this to skip drawing things that haven't changed. */
+	public boolean isDirty(int x, int y, int width, int height)
+	{
+		return drawing.intersects(x, y, width, height);
+	}
+	
+	/** Copy the whole back buffer to the screen next frame, even if nothing in it has changed. Needed whenever the window might have been drawn over. */
+	public void refreshScreen()
+	{
+		needsPresent = true;
+	}
+	
+	/**
+	  * Start drawing a frame: clips drawing to everything that's been marked as dirty (or the whole
+	  * screen, if it needs a complete redraw). Anything marked dirty while the frame is being drawn
+	  * gets repainted next frame.
+	  * @return whether or not there's anything to draw at all.
+	  */
+	public boolean redraw()
 	{
 		if (needsCompleteRedraw)
 		{
-			completeRedraw();
+			dirty.addAll();
 			needsCompleteRedraw = false;
 		}
+		
+		drawing.clear();
+		drawing.add(dirty);
+		dirty.clear();
+		if (drawing.isEmpty())
+		{
+			return false;
+		}
+		
+		if (drawing.isAll())
+		{
+			g.setClip(0, 0, NumerateGame.WINDOW_X, NumerateGame.WINDOW_Y);
+		}
+		else if (drawing.getCount() == 1)
+		{
+			g.setClip(drawing.getX(0), drawing.getY(0), drawing.getWidth(0), drawing.getHeight(0));
+		}
 		else
 		{
-			partialRedraw();
+			Area clip = new Area();
+			for (int i = 0; i < drawing.getCount(); i++)
+			{
+				clip.add(new Area(new Rectangle(drawing.getX(i), drawing.getY(i), drawing.getWidth(i), drawing.getHeight(i))));
+			}
+			g.setClip(clip);
 		}
+		needsPresent = true;
+		return true;
+	}
+	
+	/** Finish a frame: if anything was drawn, copy the back buffer to the screen and show it. */
+	public void present()
+	{
+		drawing.clear();
+		g.setClip(null);
+		if (!needsPresent && !s.contentsLost())
+		{
+			return;
+		}
+		
+		Graphics2D screen = (Graphics2D) s.getDrawGraphics();
+		screen.drawImage(buffer, 0, 0, null);
+		screen.dispose();
+		s.show();
+		needsPresent = false;
 	}
 	
 	/** Render a caption for the bottom of the screen. */
@@ -43,6 +43,8 @@ public class GameMenu extends GameState
 	private int selectedItem;
 	/** Text position (for scrolling text) */
 	private double textPosition;
+	/** Text position as of the simulation step before, so frames between steps can be drawn part way along. */
+	private double previousTextPosition;
 	
 	/** Credit text velocity (in pixels/sec) */
 	private final double creditTextVelocity = NumerateGame.WINDOW_X*1.25;
@@ -203,6 +205,7 @@ public class GameMenu extends GameState
 				placement = CREDITS;
 				textMoving = true;
 				textPosition = 0;
+				previousTextPosition = 0;
 				needsCompleteRedraw = true;
 			}
 			else if (selectedItem == 6)
@@ -264,7 +267,7 @@ public class GameMenu extends GameState
 			}
 			else if (selectedItem >= 0)
 			{
-				nextState = new Game(scores,gameMode,selectedItem*2+4, null);
+				nextState = new Game(scores,puzzles,gameMode,selectedItem*2+4, null);
 				graphics.setHelpBoxRefreshed(false);
 				needsCompleteRedraw = true;
 			}
@@ -307,9 +310,20 @@ public class GameMenu extends GameState
 	/** Pass game time on the menu. */
 	public void elapseTime(double dtime)
 	{
+		previousTextPosition = textPosition;
 		textPosition = Math.min((double)NumerateGame.WINDOW_X-CREDIT_SIDE_PADDING, textPosition + dtime*creditTextVelocity);
 	}
 	
+	/** Gets the time until the menu next needs time elapsed. Only the scrolling credits move on their own. */
+	public double timeUntilUpdate()
+	{
+		if (placement == CREDITS && textMoving)
+		{
+			return 0.0;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+	
 	/** Render the game menu. */
 	public void draw(GameGraphics graphics)
 	{
@@ -318,8 +332,12 @@ public class GameMenu extends GameState
 			this.graphics = graphics;
 		}
 		graphics.needsCompleteRedraw = graphics.needsCompleteRedraw || needsCompleteRedraw;
-		graphics.redraw();
 		needsCompleteRedraw = false;
+		if (!graphics.redraw())
+		{
+			// nothing's changed, so what's on the screen is still good
+			return;
+		}
 		graphics.g.setColor(NumerateGame.MENU_BG_COLOR);
 		graphics.g.fillRect(0,0,NumerateGame.WINDOW_X,NumerateGame.WINDOW_Y);
 		
@@ -371,6 +389,7 @@ public class GameMenu extends GameState
 				if (textPosition >= NumerateGame.WINDOW_X-CREDIT_SIDE_PADDING)
 				{
 					textPosition = NumerateGame.WINDOW_X-CREDIT_SIDE_PADDING;
+					previousTextPosition = textPosition;
 					graphics.setHelpBoxRefreshed(false);
 					textMoving = false;
 				}
@@ -390,11 +409,13 @@ public class GameMenu extends GameState
 				//graphics.g.drawString(TextBank.CREDITS_RETURN,CREDIT_SIDE_PADDING,NumerateGame.WINDOW_Y-CREDIT_PADDING);
 			}
 			
-			graphics.g.drawString(NumerateGame.GAME_TITLE+" v"+NumerateGame.GAME_VERSION,(int)textPosition-graphics.g.getFontMetrics().stringWidth(NumerateGame.GAME_TITLE+" v"+NumerateGame.GAME_VERSION),textCursor);
+			// draw the text part way between the last two steps, so it scrolls smoothly at any frame rate
+			int drawnPosition = (int)(previousTextPosition + (textPosition-previousTextPosition)*graphics.interpolation);
+			graphics.g.drawString(NumerateGame.GAME_TITLE+" v"+NumerateGame.GAME_VERSION,drawnPosition-graphics.g.getFontMetrics().stringWidth(NumerateGame.GAME_TITLE+" v"+NumerateGame.GAME_VERSION),textCursor);
 			textCursor += CREDIT_PADDING + NumerateGame.CREDITS_FONT.getSize();
 			for (int i = 0; i < TextBank.CREDITS_LINES.length; i++)
 			{
-				graphics.g.drawString(TextBank.CREDITS_LINES[i],(int)textPosition-graphics.g.getFontMetrics().stringWidth(TextBank.CREDITS_LINES[i]),textCursor);
+				graphics.g.drawString(TextBank.CREDITS_LINES[i],drawnPosition-graphics.g.getFontMetrics().stringWidth(TextBank.CREDITS_LINES[i]),textCursor);
 				textCursor += CREDIT_PADDING + NumerateGame.CREDITS_FONT.getSize();
 			}
 		}
@@ -541,9 +562,10 @@ public class GameMenu extends GameState
 	}
 	
 	/** Standard constructor. */
-	public GameMenu(ScoresList d_scores, int d_placement)
+	public GameMenu(ScoresList d_scores, PuzzleBank d_puzzles, int d_placement)
 	{
 		scores = d_scores;
+		puzzles = d_puzzles;
 		placement = d_placement;
 		selectedItem = -1;
 		nextState = this;
@@ -551,8 +573,8 @@ public class GameMenu extends GameState
 	}
 	
 	/** Placement-less constructor -- defaults to the main menu */
-	public GameMenu(ScoresList d_scores)
+	public GameMenu(ScoresList d_scores, PuzzleBank d_puzzles)
 	{
-		this(d_scores, MAIN_MENU);
+		this(d_scores, d_puzzles, MAIN_MENU);
 	}
 }
\ No newline at end of file
@@ -17,6 +17,8 @@ public abstract class GameState
 	
 	/** The game state's scores list */
 	protected ScoresList scores;
+	/** The game state's puzzle bank. Can be null, in which case boards are generated on the spot. */
+	protected PuzzleBank puzzles;
 	
 	/** Mouse is being dragged from one position to the other */
 	public void mouseDragged(int x, int y, boolean right)
@@ -83,6 +85,17 @@ public abstract class GameState
 	{
 	}
 	
+	/**
+	  * Gets the time (in seconds) until the state next needs time elapsed, as long as no input comes
+	  * in before then. The game loop sleeps until then (or until there's input), so a state that
+	  * isn't doing anything costs nothing. 0 means the state is animating and needs every cycle;
+	  * infinite means it's waiting on input alone.
+	  */
+	public double timeUntilUpdate()
+	{
+		return 0.0;
+	}
+	
 	/** Render the game state. */
 	public void draw(GameGraphics graphics)
 	{
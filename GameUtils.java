@@ -0,0 +1,53 @@
+/**
+  * Game utilities class. <br /><br />
+  *
+  * Small static helpers that don't need a window, a screen or any of AWT, so
+  * they're safe to use from headless games.
+  */
+public class GameUtils
+{
+	/** Static function for returning the current system time (in seconds). Recommended ONLY for time comparison! */
+	public static double sysTime()
+	{
+		return (double)System.nanoTime()/1000000000.0;
+	}
+	
+	/** Static function for a string array with one parameter. */
+	public static String[] a(String a1)
+	{
+		String[] a = {a1};
+		return a;
+	}
+	
+	/** Static function for a string array with two parameters. */
+	public static String[] a(String a1, String a2)
+	{
+		String[] a = {a1,a2};
+		return a;
+	}
+	
+	/** Static function for a string array with three parameters. */
+	public static String[] a(String a1, String a2, String a3)
+	{
+		String[] a = {a1,a2,a3};
+		return a;
+	}
+	
+	/** Static function for a string array with four parameters. */
+	public static String[] a(String a1, String a2, String a3, String a4)
+	{
+		String[] a = {a1,a2,a3,a4};
+		return a;
+	}
+	
+	/** Determine the number of digits in a base 10 integer. */
+	public static int getDigits(int number)
+	{
+		int digits = 1;
+		while ((number /= 10) != 0)
+		{
+			digits++;
+		}
+		return digits;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+import java.util.Random;
+
+/**
+  * Greedy policy class. <br /><br />
+  *
+  * Tries every legal move one step ahead and plays whichever leaves the
+  * least to fix, breaking ties at random. Never plays straight back the move
+  * it just made, so it can't get stuck swapping the same two pieces forever,
+  * but it can still wander around a position it can't improve on; games are
+  * capped by whoever's running them.
+  */
+public class GreedyPolicy implements MovePolicy
+{
+	/** Random number generator for breaking ties. */
+	private Random generator;
+	/** Buffer for the legal moves. Grown as bigger boards come along. */
+	private int moves[];
+	/** The game mode being played. */
+	private int mode;
+	/** Last move played, or -1. */
+	private int lastFrom, lastTo;
+	
+	/** Standard constructor. */
+	public GreedyPolicy(Random d_generator)
+	{
+		generator = d_generator;
+		moves = new int[0];
+		mode = 0;
+		lastFrom = lastTo = -1;
+	}
+	
+	/** Get ready to play a new board: make sure the move buffer's big enough, and forget the last move. */
+	public void start(int d_mode, BitBoard board)
+	{
+		mode = d_mode;
+		if (moves.length < BitBoard.moveBufferSize(board.getSize()))
+		{
+			moves = new int[BitBoard.moveBufferSize(board.getSize())];
+		}
+		lastFrom = lastTo = -1;
+	}
+	
+	/** Pick the move that leaves the least to fix. */
+	public boolean nextMove(BitBoard board, int move[])
+	{
+		VictoryTracker tracker = board.getTracker();
+		int count = board.generateMoves(moves);
+		int best = Integer.MAX_VALUE, ties = 0;
+		for (int i = 0; i < count; i++)
+		{
+			int from = moves[i*2], to = moves[i*2+1];
+			boolean undoing = (from == lastFrom && to == lastTo) || (from == lastTo && to == lastFrom);
+			if (board.get(from) == board.get(to) || undoing)
+			{
+				continue;
+			}
+			
+			// try it and see
+			board.swap(from, to);
+			int unfixed = tracker.unfixed(mode);
+			board.swap(from, to);
+			
+			if (unfixed < best)
+			{
+				best = unfixed;
+				ties = 1;
+				move[0] = from;
+				move[1] = to;
+			}
+			else if (unfixed == best && generator.nextInt(++ties) == 0)
+			{
+				// every move tied for best gets an equal chance
+				move[0] = from;
+				move[1] = to;
+			}
+		}
+		if (ties == 0)
+		{
+			return false;
+		}
+		lastFrom = move[0];
+		lastTo = move[1];
+		return true;
+	}
+	
+	/** Makes another greedy policy. */
+	public MovePolicy fork(long seed)
+	{
+		return new GreedyPolicy(new Random(seed));
+	}
+}
\ No newline at end of file
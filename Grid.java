@@ -24,13 +24,6 @@ public class Grid
 	/** Constant for right */
 	public static final int RIGHT = 3;
 	
-	/** How many times will the game attempt to avoid a repeated number? */
-	public static final int PLACEMENT_RETRY_ATTEMPTS = 2;
-	/** % chance, in scatter mode, that a grid tile will naturally mimic the previous tile */
-	public static final double REPEAT_TILE_CHANCE = 0.15;
-	/** Multiplier for the % chance each tile a repeat tile is naturally used. */
-	public static final double REPEAT_TILE_MULTIPLIER = 0.8;
-	
 	/** The grid's x position (on-screen) */
 	private int x;
 	/** The grid's y position (on-screen) */
@@ -39,10 +32,12 @@ public class Grid
 	/** The game mode used. */
 	private int mode;
 	
-	/** Contents of the grid. */
-	private int grid[][];
-	/** Grid highlights. Items in this array should be set to TRUE if they are movable. */
-	private boolean highlights[][];
+	/** Contents of the grid, packed into bitboards. */
+	private BitBoard board;
+	/** Grid highlights. Cells in this mask should be set if they are movable. */
+	private long highlights[];
+	/** Size of the grid (in tiles per side). */
+	private int size;
 	/** The highest number in the grid. Used for piece selection purposes. */
 	private int highestNumber;
 	
@@ -81,8 +76,8 @@ public class Grid
 	/** Using the keyboard? If this is enabled, display umovable pieces as being greyed out. */
 	private boolean usingKeyboard;
 	
-	/** Does the grid (and hence, the whole screen) need a complete redraw? */
-	public boolean needsCompleteRedraw;
+	/** Parts of the screen the grid has changed since it was last drawn. */
+	private DirtyRegion dirty;
 	
 	/** X position of grid swap position 1 */
 	private int x1;
@@ -95,18 +90,17 @@ public class Grid
 	/** Has a move been undone? Because if so, redo the move */
 	private boolean moveUndone;
 	
-	// REMOVE
-	Random generator;
-	int possibleXs[];
-	int possibleYs[];
-	int possibleMoves;
+	/** The hint to show, or null. Only shown if it's for the current position. */
+	private Hint hint;
 	
 	/** Standard constructor. Takes in an existing grid as a parameter */
 	public Grid(int d_mode, int d_grid[][], int d_x, int d_y, int mouseX, int mouseY)
 	{
 		mode = d_mode;
-		grid = d_grid;
-		highlights = new boolean[grid.length][grid[0].length];
+		board = new BitBoard(d_grid);
+		size = board.getSize();
+		highlights = new long[board.getWords()];
+		highestNumber = board.getHighestNumber();
 		
 		selectedX = -1;
 		selectedY = -1;
@@ -115,7 +109,8 @@ public class Grid
 		y = d_y;
 		
 		active = false;
-		needsCompleteRedraw = true;
+		dirty = new DirtyRegion();
+		invalidateGrid();
 		usingKeyboard = false;
 		focused = true;
 		
@@ -137,130 +132,21 @@ public class Grid
 		x2 = -1;
 		y2 = -1;
 		moveUndone = false;
-		
-		generator = new Random();
-		possibleXs = new int[50];
-		possibleYs = new int[50];
-		possibleMoves = 0;
 	}
 	
-	/** Create a new grid randomly, based on difficulty and game type settings. */
+	/**
+	  * Create a new grid randomly, based on difficulty and game type settings. The grid is always
+	  * winnable, and about as hard as any other grid of the same difficulty.
+	  */
 	public Grid(int d_mode, int difficulty, int d_x, int d_y, int mouseX, int mouseY)
 	{
-		this(d_mode,new int[difficulty][difficulty],d_x,d_y,mouseX,mouseY);
-		
-		int numbers[] = new int[difficulty]; // stores a count of how many numbers of each type are on the grid
-		Random generator = new Random();
-		
-		if (d_mode != NumerateGame.SCATTER_MODE)
-		{
-			// design a grid with as much randomness as possible...
-			// meant for non-scatter games
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					int attempts = 0;
-					do
-					{
-						// keep repeating the number selection process until we either get a non-repeated number or give up
-						do
-						{
-							// keep selecting a number until we get a number that is not already full
-							grid[i][j] = generator.nextInt(difficulty)+1;
-						} while(numbers[grid[i][j]-1] >= difficulty);
-						
-					} while (((i > 0 && grid[i-1][j] == grid[i][j]) || (j > 0 && grid[i][j-1] == grid[i][j])) && attempts++ < PLACEMENT_RETRY_ATTEMPTS);
-					numbers[grid[i][j]-1]++;
-				}
-			}
-		}
-		else
-		{
-			// create a grid for scatter mode
-			// this will intentionally group stuff together more than a normal grid
-			double repeatChance = REPEAT_TILE_CHANCE;
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					// first, see if we want to copy an adjacent tile
-					if ((i > 0 || j > 0) && generator.nextDouble() < repeatChance)
-					{
-						if (generator.nextDouble() < 0.5 && j > 0) // 50% chance we try the left tile first, then up tile
-						{
-							int number = grid[i][j-1]-1;
-							if (numbers[number] >= difficulty && i > 0) // now try going up
-							{
-								number = grid[i-1][j]-1;
-								if (numbers[number] < difficulty) // success! up works
-								{
-									grid[i][j] = number+1;
-									numbers[number]++;
-									repeatChance *= REPEAT_TILE_MULTIPLIER;
-									continue;
-								}
-							}
-							else // success! left works
-							{
-								grid[i][j] = number+1;
-								numbers[number]++;
-								repeatChance *= REPEAT_TILE_MULTIPLIER;
-								continue;
-							}
-						}
-						else if (i > 0) // try going up instead
-						{
-							int number = grid[i-1][j]-1;
-							if (numbers[number] >= difficulty && j > 0) // now try going up
-							{
-								number = grid[i][j-1]-1;
-								if (numbers[number] < difficulty) // success! up works
-								{
-									grid[i][j] = number+1;
-									numbers[number]++;
-									repeatChance *= REPEAT_TILE_MULTIPLIER;
-									continue;
-								}
-							}
-							else // success! left works
-							{
-								grid[i][j] = number+1;
-								numbers[number]++;
-								repeatChance *= REPEAT_TILE_MULTIPLIER;
-								continue;
-							}
-						}
-					}
-					
-					do
-					{
-						grid[i][j] = generator.nextInt(difficulty)+1;
-					} while (numbers[grid[i][j]-1] >= difficulty);
-					repeatChance = REPEAT_TILE_CHANCE; // reset the repeat tile chance
-					numbers[grid[i][j]-1]++;
-				}
-			}
-		}
-		
-		setHighestNumber();
+		this(d_mode,new BoardGenerator().generate(d_mode,difficulty,new Random()).getGrid(),d_x,d_y,mouseX,mouseY);
 	}
 	
 	/** Call this function to find out the highest number in the grid. */
 	public void setHighestNumber()
 	{
-		highestNumber = 1;
-		// now find the highest piece in the grid
-		for (int i = 0; i < grid.length; i++)
-		{
-			for (int j = 0; j < grid[i].length; j++)
-			{
-				if (highestNumber < grid[i][j])
-				{
-					highestNumber = grid[i][j];
-				}
-			}
-		}
+		highestNumber = board.getHighestNumber();
 	}
 	
 	/** Updates the highlighted piece based on mouse x and y information */
@@ -276,7 +162,7 @@ public class Grid
 		highlightedX = mouseX/NumerateGame.GRID_TILE_SIZE;
 		highlightedY = mouseY/NumerateGame.GRID_TILE_SIZE;
 		
-		if (highlightedX < 0 || highlightedY < 0 || mouseX < 0 || mouseY < 0 || highlightedX >= grid[0].length || highlightedY >= grid.length)
+		if (highlightedX < 0 || highlightedY < 0 || mouseX < 0 || mouseY < 0 || highlightedX >= size || highlightedY >= size)
 		{
 			highlightedX = -1;
 			highlightedY = -1;
@@ -284,12 +170,14 @@ public class Grid
 		
 		if ((oldX != highlightedX || oldY != highlightedY) && active)
 		{
-			needsCompleteRedraw = true;
+			invalidateTile(oldX, oldY);
+			invalidateTile(highlightedX, highlightedY);
 		}
 		
 		if ((highlightedX >= 0 && highlightedY >= 0 && beforeGrid) != focused)
 		{
-			needsCompleteRedraw = true;
+			// only the highlighted piece looks any different
+			invalidateTile(highlightedX, highlightedY);
 		}
 		
 		focused = (highlightedX >= 0 && highlightedY >= 0 && beforeGrid);
@@ -300,13 +188,14 @@ public class Grid
 	/** Moves the cursor */
 	public void moveHighlight(int direction, int amount)
 	{
+		invalidateTile(highlightedX, highlightedY);
 		if (direction == UP)
 		{
 			highlightedY = Math.max(0,highlightedY-amount);
 		}
 		else if (direction == DOWN)
 		{
-			highlightedY = Math.min(grid.length-1,highlightedY+amount);
+			highlightedY = Math.min(size-1,highlightedY+amount);
 		}
 		else if (direction == LEFT)
 		{
@@ -314,19 +203,17 @@ public class Grid
 		}
 		else if (direction == RIGHT)
 		{
-			highlightedX = Math.min(grid[0].length-1,highlightedX+amount);
+			highlightedX = Math.min(size-1,highlightedX+amount);
 		}
 		
 		setUsingKeyboard(true);
-		needsCompleteRedraw = true;
+		invalidateTile(highlightedX, highlightedY);
 	}
 	
 	/** Swap two pieces. */
 	public void swap(int x1, int y1, int x2, int y2)
 	{
-		int temp = grid[y1][x1];
-		grid[y1][x1] = grid[y2][x2];
-		grid[y2][x2] = temp;
+		board.swap(y1*size+x1, y2*size+x2);
 	}
 	
 	/**
@@ -340,14 +227,9 @@ public class Grid
 			{
 				selectedX = -1;
 				selectedY = -1;
-				// now cycle through the grid and erase any highlights
-				for (int i = 0; i < highlights.length; i++)
-				{
-					for (int j = 0; j < highlights[i].length; j++)
-					{
-						highlights[i][j] = false;
-					}
-				}
+				// now erase any highlights
+				BitBoard.clearBits(highlights);
+				invalidateGrid();
 				
 				changedStatusBar = true;
 				statusBar = TextBank.SELECT_PIECE_PROMPT;
@@ -378,7 +260,7 @@ public class Grid
 					// the mouse is outside of the grid, so this selection is irrelevant...
 					return IRRELEVANT;
 				}
-				else if (grid[highlightedY][highlightedX] < 2)
+				else if (board.get(highlightedX,highlightedY) < 2)
 				{
 					// we have a 1, so we can't do anything with this
 					changedStatusBar = true;
@@ -390,156 +272,14 @@ public class Grid
 					return FAILURE;
 				}
 				
-				boolean movable = false; // assume a piece is unmovable initially
-				
-				if (grid[highlightedY][highlightedX] % 2 == 0)
-				{
-					// even number... go straight
-					int currentX = highlightedX;
-					int currentY = highlightedY;
-					
-					// start by going left
-					while (--currentX >= 0)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					
-					// then right
-					while (++currentX < grid[currentY].length)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					
-					// then up
-					while (--currentY >= 0)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentY = highlightedY;
-					
-					// then down
-					while (++currentY < grid.length)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-				}
-				else
-				{
-					// odd piece - move diagonally
-					int currentX = highlightedX;
-					int currentY = highlightedY;
-					
-					// start by going up-left
-					while (--currentX >= 0 && --currentY >= 0)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					currentY = highlightedY;
-					
-					// then up-right
-					while (++currentX < grid[currentY].length && --currentY >= 0)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					currentY = highlightedY;
-					
-					// then down-left
-					while (--currentX >= 0 && ++currentY < grid.length)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					currentY = highlightedY;
-					
-					// then down-right
-					while (++currentX < grid[currentY].length && ++currentY < grid.length)
-					{
-						if (grid[currentY][currentX] <= grid[highlightedY][highlightedX] && (grid[currentY][currentX] > 1 || grid[highlightedY][highlightedX] < highestNumber))
-						{
-							highlights[currentY][currentX] = true;
-							movable = true;
-						}
-						else
-						{
-							// we've found something to break the chain, so stop
-							break;
-						}
-					}
-					currentX = highlightedX;
-					currentY = highlightedY;
-				}
+				// find every cell the piece can move to - even pieces go straight, odd pieces go diagonally
+				boolean movable = board.findTargets(highlightedY*size+highlightedX, highlights) > 0;
 		
 				if (movable)
 				{
 					selectedX = highlightedX;
 					selectedY = highlightedY;
+					invalidateGrid();
 					
 					changedStatusBar = true;
 					statusBar = TextBank.MOVE_PIECE_PROMPT;
@@ -562,7 +302,7 @@ public class Grid
 			{
 				// a piece is already selected... so see if we can swap
 				
-				if (highlightedY >= 0 && highlightedX >= 0 && highlights[highlightedY][highlightedX])
+				if (highlightedY >= 0 && highlightedX >= 0 && isHighlighted(highlightedX,highlightedY))
 				{
 					x1 = highlightedX;
 					y1 = highlightedY;
@@ -602,335 +342,86 @@ public class Grid
 		return IRRELEVANT;
 	}
 	
+	/**
+	  * Writes every legal move on the grid into <tt>moves</tt>, as (from, to) pairs of cells numbered
+	  * y*getXSize()+x: move i goes from moves[2*i] to moves[2*i+1]. The buffer should be at least
+	  * {@link #getMoveBufferSize()} ints long. Doesn't change the selection, the highlights or the
+	  * status bar, and doesn't allocate anything.
+	  * @return the number of moves written.
+	  */
+	public int generateMoves(int moves[])
+	{
+		return board.generateMoves(moves);
+	}
+	
+	/** Gets the length of an int buffer big enough to hold every legal move on this grid. */
+	public int getMoveBufferSize()
+	{
+		return BitBoard.moveBufferSize(size);
+	}
+	
 	/** Do that whole victory check thing. */
 	public boolean victorious()
 	{
-		if (mode == NumerateGame.LINEUP_MODE)
-		{
-			// ==================================================
-			// CHECK LINE-UP MODE
-			// ==================================================
-			boolean victorious = true;
-			// first, check horizontally, ascending
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (grid[i][j] != i+1)
-					{
-						victorious = false;
-						break;
-					}
-				}
-				if (!victorious)
-				{
-					break;
-				}
-			}
-			if (victorious)
-			{
-				return true;
-			}
-			victorious = true;
-			
-			// next, check horizontally, descending
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (grid[i][j] != grid.length-i)
-					{
-						victorious = false;
-						break;
-					}
-				}
-				if (!victorious)
-				{
-					break;
-				}
-			}
-			if (victorious)
-			{
-				return true;
-			}
-			
-			// next, check vertically, ascending
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (grid[i][j] != j+1)
-					{
-						victorious = false;
-						break;
-					}
-				}
-				if (!victorious)
-				{
-					break;
-				}
-			}
-			if (victorious)
-			{
-				return true;
-			}
-			victorious = true;
-			
-			// next, check vertically, descending
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (grid[i][j] != grid[i].length-j)
-					{
-						victorious = false;
-						break;
-					}
-				}
-				if (!victorious)
-				{
-					break;
-				}
-			}
-			if (victorious)
-			{
-				return true;
-			}
-			return false;
-		}
-		else if (mode == NumerateGame.ALTERNATE_MODE)
+		return board.victorious(mode);
+	}
+	
+	/** Draw the grid on the screen */
+	public void draw(GameGraphics graphics)
+	{
+		// first, draw the borders.
+		graphics.g.setColor(NumerateGame.GRID_BORDER_COLOR);
+		graphics.drawBorder(x,y,x + 1 + size*NumerateGame.GRID_TILE_SIZE,y + 1 + size*NumerateGame.GRID_TILE_SIZE);
+		
+		// next, fill in the box itself
+		graphics.g.setColor(NumerateGame.GRID_BG_COLOR);
+		graphics.g.fillRect(x+1,y+1, NumerateGame.GRID_TILE_SIZE*size, NumerateGame.GRID_TILE_SIZE*size);
+		
+		TileSprites sprites = TileSprites.forSize(NumerateGame.GRID_TILE_SIZE);
+		
+		for (int i = 0; i < size; i++)
 		{
-			// ==================================================
-			// CHECK ALTERNATE MODE
-			// ==================================================
-			
-			boolean victorious = true;
-			// first, try row-by-row
-			for (int i = 0; i < grid.length; i++)
-			{
-				int number1 = -1, number2 = -1;
-				
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (j % 2 > 0) // odd number
-					{
-						if (number2 < 0)
-						{
-							// number isn't already set... so set it
-							number2 = grid[i][j];
-						}
-						else if (number2 != grid[i][j])
-						{
-							victorious = false;
-							break;
-						}
-					}
-					else // even number
-					{
-						if (number1 < 0)
-						{
-							// number isn't already set... so set it
-							number1 = grid[i][j];
-						}
-						else if (number1 != grid[i][j])
-						{
-							victorious = false;
-							break;
-						}
-					}
-				}
-				
-				if (!victorious)
-				{
-					break;
-				}
-			}
-			
-			if (victorious)
+			for (int j = 0; j < size; j++)
 			{
-				// we know the row-by-row worked... so return true here
-				return true;
-			}
-			
-			victorious = true;
-			
-			// now try column by column
-			for (int j = 0; j < grid[0].length; j++)
-			{
-				int number1 = -1, number2 = -1;
-				
-				for (int i = 0; i < grid.length; i++)
+				int tileX = x + j*NumerateGame.GRID_TILE_SIZE + 1, tileY = y + i*NumerateGame.GRID_TILE_SIZE + 1;
+				// tiles that haven't changed are already on the screen
+				if (graphics.isDirty(tileX, tileY, NumerateGame.GRID_TILE_SIZE, NumerateGame.GRID_TILE_SIZE+1))
 				{
-					if (i % 2 > 0) // odd number
-					{
-						if (number2 < 0)
-						{
-							// number isn't already set... so set it
-							number2 = grid[i][j];
-						}
-						else if (number2 != grid[i][j])
-						{
-							victorious = false;
-							break;
-						}
-					}
-					else // even number
+					// the currently highlighted piece gets a nice background
+					boolean highlightedTile = active && highlightedX == j && highlightedY == i && (selectedX < 0 || selectedY < 0 || isHighlighted(j,i));
+					int textState = TileSprites.NORMAL_TEXT;
+					
+					if (!active)
 					{
-						if (number1 < 0)
-						{
-							// number isn't already set... so set it
-							number1 = grid[i][j];
-						}
-						else if (number1 != grid[i][j])
-						{
-							victorious = false;
-							break;
-						}
+						textState = TileSprites.INACTIVE_TEXT;
 					}
-				}
-				if (!victorious)
-				{
-					break;
-				}
-				
-			}
-			
-			// now we're at the mercy of whatever the column-by-column analysis was
-			return victorious;
-		}
-		else if (mode == NumerateGame.SCATTER_MODE)
-		{
-			// ==================================================
-			// CHECK SCATTER MODE
-			// ==================================================
-			for (int i = 0; i < grid.length; i++)
-			{
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					if (j > 0 && grid[i][j-1] == grid[i][j])
+					else if (selectedX == j && selectedY == i)
 					{
-						return false;
+						textState = TileSprites.SELECTED_TEXT;
 					}
-					if (i > 0 && grid[i-1][j] == grid[i][j])
+					else if (selectedX == -1 && selectedY == -1 && highlightedX == j && highlightedY == i && focused)
 					{
-						return false;
+						textState = TileSprites.CURSOR_TEXT;
 					}
-				}
-			}
-			return true;
-		}
-		else if (mode == NumerateGame.SUMMATION_MODE)
-		{
-			// ==================================================
-			// CHECK SUMMATION MODE
-			// ==================================================
-			// first check all rows...
-			for (int i = 0; i < grid.length; i++)
-			{
-				boolean numbers[] = new boolean[grid[i].length];
-				for (int j = 0; j < grid[i].length; j++)
-				{
-					int number = grid[i][j];
-					if (number <= numbers.length && number >= 0)
+					else if (selectedX != -1 && selectedY != -1 && highlightedX == j && highlightedY == i && isHighlighted(highlightedX,highlightedY) && focused)
 					{
-						numbers[number-1] = true;
+						textState = TileSprites.CURSOR_TEXT;
 					}
-				}
-				
-				// now check the numbers
-				for (int j = 0; j < numbers.length; j++)
-				{
-					if (!numbers[j])
+					else if (selectedX != -1 && selectedY != -1 && highlightedX == j && highlightedY == i && usingKeyboard && focused)
 					{
-						return false;
+						textState = TileSprites.INACTIVE_TEXT;
 					}
-				}
-			}
-			
-			// next, check all columns...
-			for (int j = 0; j < grid[0].length; j++)
-			{
-				boolean numbers[] = new boolean[grid.length];
-				for (int i = 0; i < grid.length; i++)
-				{
-					int number = grid[i][j];
-					if (number <= numbers.length && number >= 0)
+					else if (isHinted(j,i))
 					{
-						numbers[number-1] = true;
+						textState = TileSprites.HINT_TEXT;
 					}
-				}
-				
-				// now check the numbers
-				for (int i = 0; i < numbers.length; i++)
-				{
-					if (!numbers[i])
+					else if (isHighlighted(j,i))
 					{
-						return false;
+						textState = TileSprites.HIGHLIGHTED_TEXT;
 					}
+					
+					sprites.draw(graphics.g, tileX, tileY, board.get(j,i), textState, highlightedTile);
 				}
-			}
-			
-			// if we made it past all that, we have to say the player won
-			return true;
-		}
-		
-		return false;
-	}
-	
-	/** Draw the grid on the screen */
-	public void draw(GameGraphics graphics)
-	{
-		// first, draw the borders.
-		graphics.g.setColor(NumerateGame.GRID_BORDER_COLOR);
-		graphics.drawBorder(x,y,x + 1 + grid[0].length*NumerateGame.GRID_TILE_SIZE,y + 1 + grid.length*NumerateGame.GRID_TILE_SIZE);
-		
-		// next, fill in the box itself
-		graphics.g.setColor(NumerateGame.GRID_BG_COLOR);
-		graphics.g.fillRect(x+1,y+1, NumerateGame.GRID_TILE_SIZE*grid[0].length, NumerateGame.GRID_TILE_SIZE*grid.length);
-		
-		graphics.g.setFont(NumerateGame.GRID_FONT);
-		graphics.g.setColor(NumerateGame.GRID_TEXT_COLOR);
-		int textCursor = y + 1;
-		boolean changedColor = false;
-		
-		for (int i = 0; i < grid.length; i++)
-		{
-			for (int j = 0; j < grid[i].length; j++)
-			{
-				if (active && highlightedX == j && highlightedY == i && (selectedX < 0 || selectedY < 0 || highlights[i][j]))
-				{
-					// this is the currently highlighted piece... so give it a nice background
-					graphics.g.setColor(NumerateGame.GRID_HIGHLIGHTED_BG_COLOR);
-					graphics.g.fillRect(x + j*NumerateGame.GRID_TILE_SIZE + 1, y + i*NumerateGame.GRID_TILE_SIZE + 1,NumerateGame.GRID_TILE_SIZE-1,NumerateGame.GRID_TILE_SIZE+1);
-					graphics.g.setColor(NumerateGame.GRID_TEXT_COLOR);
-				}
-				
-				if (!active)
-				{
-					graphics.g.setColor(NumerateGame.INACTIVE_GRID_TEXT_COLOR);
-				}
-				else if (selectedX == j && selectedY == i)
-				{
-					graphics.g.setColor(NumerateGame.GRID_SELECTED_TEXT_COLOR);
-				}
-				else if (selectedX == -1 && selectedY == -1 && highlightedX == j && highlightedY == i && focused)
-				{
-					graphics.g.setColor(NumerateGame.GRID_CURSOR_TEXT_COLOR);
-				}
-				else if (selectedX != -1 && selectedY != -1 && highlightedX == j && highlightedY == i && highlights[highlightedY][highlightedX] && focused)
-				{
-					graphics.g.setColor(NumerateGame.GRID_CURSOR_TEXT_COLOR);
-				}
-				else if (selectedX != -1 && selectedY != -1 && highlightedX == j && highlightedY == i && usingKeyboard && focused)
-				{
-					graphics.g.setColor(NumerateGame.INACTIVE_GRID_TEXT_COLOR);
-				}
-				else if (highlights[i][j])
-				{
-					graphics.g.setColor(NumerateGame.GRID_HIGHLIGHTED_TEXT_COLOR);
-				}
-				
-				graphics.g.drawString(Integer.toString(grid[i][j]),1+x+NumerateGame.GRID_TILE_SIZE*j+NumerateGame.GRID_TILE_SIZE/2-graphics.g.getFontMetrics().stringWidth(Integer.toString(grid[i][j]))/2,1+y+NumerateGame.GRID_TILE_SIZE*i+NumerateGame.GRID_TILE_SIZE/2+NumerateGame.GRID_FONT.getSize()/6);
 				
 				// now draw the vertical line
 				if (i <= 0)
@@ -938,20 +429,15 @@ public class Grid
 					if (j > 0) // only draw the vertical line if we are after the first tile
 					{
 						graphics.g.setColor(NumerateGame.GRID_TILE_BORDER_COLOR);
-						graphics.g.drawLine(x + NumerateGame.GRID_TILE_SIZE*j, y+1, x + NumerateGame.GRID_TILE_SIZE*j, y+1+NumerateGame.GRID_TILE_SIZE*grid.length);
-						
+						graphics.g.drawLine(x + NumerateGame.GRID_TILE_SIZE*j, y+1, x + NumerateGame.GRID_TILE_SIZE*j, y+1+NumerateGame.GRID_TILE_SIZE*size);
 					}
 				}
-				
-				// now reset the color...
-				graphics.g.setColor(NumerateGame.GRID_TEXT_COLOR);
 			}
 			// now draw the horizontal line
 			if (i > 0) // only draw the horizontal line if we are after the first row
 			{
 				graphics.g.setColor(NumerateGame.GRID_TILE_BORDER_COLOR);
-				graphics.g.drawLine(x+1, y+1+NumerateGame.GRID_TILE_SIZE*i, x+NumerateGame.GRID_TILE_SIZE*grid[0].length, y+1+NumerateGame.GRID_TILE_SIZE*i);
-				graphics.g.setColor(NumerateGame.GRID_TEXT_COLOR);
+				graphics.g.drawLine(x+1, y+1+NumerateGame.GRID_TILE_SIZE*i, x+NumerateGame.GRID_TILE_SIZE*size, y+1+NumerateGame.GRID_TILE_SIZE*i);
 			}
 		}
 	}
@@ -959,6 +445,8 @@ public class Grid
 	/** Undo/redo a move */
 	public void undoRedoMove()
 	{
+		invalidateTile(x1,y1);
+		invalidateTile(x2,y2);
 		if (moves > 0 && !moveUndone)
 		{
 			// undo the move
@@ -999,13 +487,37 @@ public class Grid
 	/** Gets the x size of the grid (in tiles). */
 	public int getXSize()
 	{
-		return grid[0].length;
+		return size;
 	}
 	
 	/** Gets the x size of the grid (in tiles). */
 	public int getYSize()
 	{
-		return grid.length;
+		return size;
+	}
+	
+	/** Gets a 64-bit hash of the current position, kept up to date as pieces are swapped. Equal positions always give equal hashes. */
+	public long positionHash()
+	{
+		return board.positionHash();
+	}
+	
+	/** Gets a copy of the pieces on the grid, for solvers and anything else that wants to play around with them. */
+	public BitBoard copyBoard()
+	{
+		return new BitBoard(board);
+	}
+	
+	/** Gets the value of the piece at (x, y). */
+	public int getPiece(int x, int y)
+	{
+		return board.get(x, y);
+	}
+	
+	/** Gets the game mode of the grid. */
+	public int getMode()
+	{
+		return mode;
 	}
 	
 	/** Gets the move count of the grid. */
@@ -1098,7 +610,7 @@ public class Grid
 	{
 		if (d_active != active)
 		{
-			needsCompleteRedraw = true;
+			invalidateGrid();
 		}
 		active = d_active;
 		if (active)
@@ -1109,100 +621,69 @@ public class Grid
 		}
 	}
 	
-	/** Sets whether or not the keyboard is in use */
-	public void setUsingKeyboard(boolean d_usingKeyboard)
+	/** Is the piece at (x, y) one the selected piece can move to? */
+	private boolean isHighlighted(int x, int y)
 	{
-		usingKeyboard = d_usingKeyboard;
+		return x >= 0 && y >= 0 && x < size && y < size && BitBoard.testBit(highlights, y*size+x);
+	}
+	
+	/** Is the piece at (x, y) part of the hint for the current position? */
+	private boolean isHinted(int x, int y)
+	{
+		return hint != null && hint.hasMove() && hint.getHash() == board.positionHash()
+		    && (hint.getFrom() == y*size+x || hint.getTo() == y*size+x);
 	}
 	
-	// MAKE A RANDOM MOVE -- REMOVE THIS SHIT!
-	public void makeRandomMove()
+	/** Sets the hint to show. Hints for any other position are ignored. */
+	public void setHint(Hint d_hint)
 	{
-		int x = 0, y = 0;
-		do
+		if (d_hint != hint)
 		{
-			highlightedY = generator.nextInt(grid.length);
-			highlightedX = generator.nextInt(grid[highlightedY].length);
-			
-			if (selectPiece() != SUCCESS)
-			{
-				continue;
-			}
-			
-			possibleMoves = 0;
-			if (grid[selectedY][selectedX] % 2 == 0)
-			{
-				// even piece
-				x = selectedX;
-				y = selectedY-1;
-				while (y >= 0 && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					y--;
-					possibleMoves++;
-				}
-				x = selectedX;
-				y = selectedY+1;
-				while (y < highlights.length && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					y++;
-				}
-				
-				x = selectedX-1;
-				y = selectedY;
-				while (x >= 0 && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					x--;
-				}
-				x = selectedX+1;
-				y = selectedY;
-				while (y < highlights.length && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					x++;
-				}
-			}
-			else
-			{
-				// odd
-				while (y >= 0 && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					y--;
-				}
-				x = selectedX;
-				y = selectedY+1;
-				while (y < highlights.length && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					y++;
-				}
-				
-				x = selectedX-1;
-				y = selectedY;
-				while (x >= 0 && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					x--;
-				}
-				x = selectedX+1;
-				y = selectedY;
-				while (y < highlights.length && highlights[y][x])
-				{
-					possibleYs[possibleMoves] = y;
-					possibleXs[possibleMoves] = x;
-					x++;
-				}
-			}
-		} while (false);
+			invalidateHint();
+			hint = d_hint;
+			invalidateHint();
+		}
+	}
+	
+	/** Marks the pieces the current hint points at as needing a repaint. */
+	private void invalidateHint()
+	{
+		if (hint != null && hint.hasMove())
+		{
+			invalidateTile(hint.getFrom()%size, hint.getFrom()/size);
+			invalidateTile(hint.getTo()%size, hint.getTo()/size);
+		}
+	}
+	
+	/** Marks a single tile as needing a repaint. Tiles off the grid are ignored. */
+	private void invalidateTile(int tileX, int tileY)
+	{
+		if (tileX >= 0 && tileY >= 0 && tileX < size && tileY < size)
+		{
+			// the highlight runs a pixel into the row below, so take that too
+			dirty.add(x + tileX*NumerateGame.GRID_TILE_SIZE + 1, y + tileY*NumerateGame.GRID_TILE_SIZE + 1, NumerateGame.GRID_TILE_SIZE, NumerateGame.GRID_TILE_SIZE+1);
+		}
+	}
+	
+	/** Marks the whole grid as needing a repaint. */
+	private void invalidateGrid()
+	{
+		dirty.add(x, y, size*NumerateGame.GRID_TILE_SIZE+2, size*NumerateGame.GRID_TILE_SIZE+2);
+	}
+	
+	/** Report the parts of the screen the grid has changed to the graphics, so they get repainted. Call this before the frame is drawn. */
+	public void reportDirtyRegion(GameGraphics graphics)
+	{
+		graphics.collect(dirty);
+	}
+	
+	/** Sets whether or not the keyboard is in use */
+	public void setUsingKeyboard(boolean d_usingKeyboard)
+	{
+		if (d_usingKeyboard != usingKeyboard)
+		{
+			invalidateTile(highlightedX, highlightedY);
+		}
+		usingKeyboard = d_usingKeyboard;
 	}
 }
\ No newline at end of file
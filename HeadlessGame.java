@@ -0,0 +1,156 @@
+import java.util.Random;
+
+/**
+  * Headless game driver. <br /><br />
+  *
+  * Runs a Game with no window, no screen and no AWT at all. Time is simulated
+  * in fixed steps rather than read off the clock, and moves come from an input
+  * source, fed through the same mouse handling a player would use. Never calls
+  * Game.draw(), so nothing ever needs a GameGraphics.
+  */
+public class HeadlessGame
+{
+	/** Default simulated time step (in seconds), used during the countdown. */
+	public static final double DEFAULT_STEP = 1.0/NumerateGame.CYCLES_PER_SEC;
+	/** Default simulated time a player takes over every move (in seconds). */
+	public static final double DEFAULT_MOVE_TIME = 2.0;
+	/** Default simulated time limit (in seconds) before a game is given up on. */
+	public static final double DEFAULT_TIME_LIMIT = 3600.0;
+	
+	/** The game being played. */
+	private Game game;
+	/** Where the moves come from. */
+	private InputSource input;
+	/** Simulated time step (in seconds), used during the countdown. */
+	private double step;
+	/** Simulated time taken over every move (in seconds). */
+	private double moveTime;
+	/** Number of moves made. */
+	private int movesMade;
+	
+	/** Standard constructor. */
+	public HeadlessGame(Game d_game, InputSource d_input, double d_step, double d_moveTime)
+	{
+		game = d_game;
+		input = d_input;
+		step = d_step;
+		moveTime = d_moveTime;
+		movesMade = 0;
+	}
+	
+	/** Constructor using the default time step and move time. */
+	public HeadlessGame(Game d_game, InputSource d_input)
+	{
+		this(d_game, d_input, DEFAULT_STEP, DEFAULT_MOVE_TIME);
+	}
+	
+	/**
+	  * Play the game until it's won, the input runs out of moves, <tt>timeLimit</tt> seconds
+	  * of simulated time go by, or <tt>moveLimit</tt> moves have been made.
+	  * @return <tt>true</tt> if the game was won.
+	  */
+	public boolean run(double timeLimit, int moveLimit)
+	{
+		int move[] = new int[2];
+		double simulated = 0;
+		while (!game.isVictorious() && simulated < timeLimit && movesMade < moveLimit)
+		{
+			if (game.isStarted())
+			{
+				if (!input.nextMove(game.getGrid(), move))
+				{
+					break;
+				}
+				play(move[0], move[1]);
+				
+				// nothing happens between moves but the clock ticking, so skip straight to the next one
+				game.elapseTime(moveTime);
+				simulated += moveTime;
+			}
+			else
+			{
+				game.elapseTime(step);
+				simulated += step;
+			}
+		}
+		return game.isVictorious();
+	}
+	
+	/**
+	  * Play the game until it's won, the input runs out of moves, or <tt>timeLimit</tt> seconds
+	  * of simulated time go by.
+	  * @return <tt>true</tt> if the game was won.
+	  */
+	public boolean run(double timeLimit)
+	{
+		return run(timeLimit, Integer.MAX_VALUE);
+	}
+	
+	/** Make a move the same way a player would: click the piece, then click where it's going. */
+	private void play(int from, int to)
+	{
+		click(from);
+		click(to);
+		movesMade++;
+	}
+	
+	/** Move the mouse over the middle of a cell and left-click it. */
+	private void click(int cell)
+	{
+		Grid grid = game.getGrid();
+		int size = grid.getXSize();
+		int x = grid.getX() + 1 + (cell%size)*NumerateGame.GRID_TILE_SIZE + NumerateGame.GRID_TILE_SIZE/2;
+		int y = grid.getY() + 1 + (cell/size)*NumerateGame.GRID_TILE_SIZE + NumerateGame.GRID_TILE_SIZE/2;
+		game.mouseMoved(x, y);
+		game.mousePressed(false);
+	}
+	
+	/** Gets the game being played. */
+	public Game getGame()
+	{
+		return game;
+	}
+	
+	/** Gets the number of moves made. */
+	public int getMovesMade()
+	{
+		return movesMade;
+	}
+	
+	/**
+	  * Plays a batch of headless games with a bot (greedy unless told otherwise) and reports how fast
+	  * they went. Every game is capped at {@link EvaluationPipeline#DEFAULT_MOVE_LIMIT} moves.
+	  * Usage: HeadlessGame [greedy|random] [games] [mode] [difficulty] [seed]
+	  */
+	public static void main(String args[])
+	{
+		String bot = (args.length > 0) ? args[0] : "greedy";
+		int games = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		int mode = (args.length > 2) ? Integer.parseInt(args[2]) : NumerateGame.LINEUP_MODE;
+		int difficulty = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+		long seed = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+		
+		Random generator = new Random(seed);
+		int won = 0;
+		long totalMoves = 0;
+		long totalScore = 0;
+		double start = GameUtils.sysTime();
+		for (int i = 0; i < games; i++)
+		{
+			Game game = new Game(null, mode, BoardGenerator.scrambledGrid(mode, difficulty, generator), null);
+			InputSource input = bot.equals("random") ? new BotInput(generator) : new PolicyInput(new GreedyPolicy(generator), mode);
+			HeadlessGame headless = new HeadlessGame(game, input);
+			boolean victorious = headless.run(DEFAULT_TIME_LIMIT, EvaluationPipeline.DEFAULT_MOVE_LIMIT);
+			totalMoves += headless.getMovesMade();
+			if (victorious)
+			{
+				won++;
+				totalScore += game.getScore();
+			}
+		}
+		double elapsed = GameUtils.sysTime()-start;
+		
+		System.out.println(games+" games ("+bot+") in "+elapsed+"s ("+(int)(games/elapsed)+" games/s, "+(long)(totalMoves/elapsed)+" moves/s)");
+		System.out.println(won+" won, average winning score "+((won > 0) ? totalScore/won : 0));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+/**
+  * Hint class. <br /><br />
+  *
+  * A single suggested move for a single board position. Hints never change
+  * once they're made, so they can be handed between threads freely.
+  */
+public class Hint
+{
+	/** Hash of the position this hint is for. */
+	private long hash;
+	/** Cell the suggested move starts from, or -1 if there's no move to suggest. */
+	private int from;
+	/** Cell the suggested move ends on, or -1 if there's no move to suggest. */
+	private int to;
+	/** Number of moves left to win after this one, or -1 if unknown. */
+	private int movesLeft;
+	
+	/** Standard constructor. */
+	public Hint(long d_hash, int d_from, int d_to, int d_movesLeft)
+	{
+		hash = d_hash;
+		from = d_from;
+		to = d_to;
+		movesLeft = d_movesLeft;
+	}
+	
+	/** Gets the hash of the position this hint is for. */
+	public long getHash()
+	{
+		return hash;
+	}
+	
+	/** Gets the cell the suggested move starts from. */
+	public int getFrom()
+	{
+		return from;
+	}
+	
+	/** Gets the cell the suggested move ends on. */
+	public int getTo()
+	{
+		return to;
+	}
+	
+	/** Gets the number of moves left to win after this one, or -1 if unknown. */
+	public int getMovesLeft()
+	{
+		return movesLeft;
+	}
+	
+	/** Is there actually a move to suggest? */
+	public boolean hasMove()
+	{
+		return from >= 0 && to >= 0;
+	}
+	
+	/** Is this move known to be on a shortest path to victory? */
+	public boolean isBest()
+	{
+		return movesLeft >= 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+
+/**
+  * Hint service class. <br /><br />
+  *
+  * Works out hints in the background, so the game loop never waits on a
+  * search. Every request publishes a quick best guess first, then the first
+  * move of a weighted search's solution (see {@link Solver#DEFAULT_WEIGHT}),
+  * and then the shortest solution if it can be found in time, through a
+  * volatile snapshot the game can read at any time without locking. Finished
+  * hints are cached by position hash, so asking twice (or following a hint and
+  * asking again) costs nothing. Searches run on a small fork-join pool of
+  * their own, of low priority daemon threads, rather than the common pool, so
+  * they never compete with the game loop on an even footing.
+  */
+public class HintService
+{
+	/** Cap on the number of positions searched for a single hint. */
+	public static final long HINT_NODE_LIMIT = 4000000;
+	/** Number of positions to remember hints for. */
+	private static final int CACHE_SIZE = 256;
+	/** Most threads a hint search can spread out over. One core's always left over for the game. */
+	private static final int MAX_SEARCH_THREADS = 4;
+	
+	/** The thread every hint search starts on. Shared by every game, and created on first use. */
+	private static ExecutorService executor;
+	/** The pool hint searches run on. Shared by every game, and created on first use. */
+	private static ForkJoinPool pool;
+	
+	/** Grabs the (shared) hint thread. It's a low priority daemon, so it never holds up the game or stops it quitting. */
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "hints");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+	
+	/** Grabs the (shared) pool hint searches run on. Its threads are low priority daemons too, for the same reasons. */
+	private static synchronized ForkJoinPool getPool()
+	{
+		if (pool == null)
+		{
+			int threads = Math.max(1, Math.min(MAX_SEARCH_THREADS, Runtime.getRuntime().availableProcessors()-1));
+			pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory()
+			{
+				public ForkJoinWorkerThread newThread(ForkJoinPool owner)
+				{
+					ForkJoinWorkerThread thread = new ForkJoinWorkerThread(owner)
+					{
+					};
+					thread.setName("hint search");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			}, null, false);
+		}
+		return pool;
+	}
+	
+	/** The game mode hints are for. */
+	private int mode;
+	/** The latest hint. Might be for an old position, so check its hash before using it. */
+	private volatile Hint hint;
+	/** The search currently running, or <tt>null</tt>. */
+	private volatile Solver current;
+	/** The weighted search that goes before the current one. */
+	private volatile Solver currentQuick;
+	/** Hash of the position the current search is for. */
+	private volatile long currentHash;
+	/** Finished hints, by position hash. Least recently used hints are dropped first. */
+	private Map<Long, Hint> cache;
+	
+	/** Standard constructor. */
+	public HintService(int d_mode)
+	{
+		mode = d_mode;
+		hint = null;
+		current = null;
+		cache = new LinkedHashMap<Long, Hint>(CACHE_SIZE, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<Long, Hint> eldest)
+			{
+				return size() > CACHE_SIZE;
+			}
+		};
+	}
+	
+	/**
+	  * Ask for a hint for the grid's current position. Returns straight away: the hint shows up
+	  * in {@link #getHint()} as soon as it's ready, which for cached positions is right now.
+	  */
+	public void request(Grid grid)
+	{
+		final long hash = grid.positionHash();
+		Hint cached = lookup(hash);
+		if (cached != null)
+		{
+			hint = cached;
+			return;
+		}
+		
+		Solver running = current;
+		if (running != null && currentHash == hash && !running.isCancelled())
+		{
+			// already on it
+			return;
+		}
+		
+		cancel();
+		final BitBoard board = grid.copyBoard();
+		final Solver quick = new Solver(mode, HINT_NODE_LIMIT, Solver.DEFAULT_WEIGHT, getPool());
+		final Solver solver = new Solver(mode, HINT_NODE_LIMIT, getPool());
+		currentHash = hash;
+		currentQuick = quick;
+		current = solver;
+		getExecutor().execute(new Runnable()
+		{
+			public void run()
+			{
+				search(quick, solver, board, hash);
+			}
+		});
+	}
+	
+	/** Stop any running search and drop the current hint. Call this whenever the position changes. */
+	public void cancel()
+	{
+		Solver running = current;
+		if (running != null)
+		{
+			running.cancel();
+			currentQuick.cancel();
+		}
+		current = null;
+		hint = null;
+	}
+	
+	/** Gets the latest hint, or <tt>null</tt> if there isn't one yet. Never blocks. */
+	public Hint getHint()
+	{
+		return hint;
+	}
+	
+	/** Is a search still running? */
+	public boolean isSearching()
+	{
+		return current != null;
+	}
+	
+	/** Runs a single search, on the hint thread: the weighted one, then the one for the shortest solution. */
+	private void search(Solver quick, Solver solver, BitBoard board, long hash)
+	{
+		if (solver.isCancelled())
+		{
+			return;
+		}
+		
+		// publish a quick guess first, so there's something to show while the solver works
+		Hint guess = bestGuess(board, hash);
+		publish(solver, guess);
+		
+		// then a move that's known to lead to a win, if not the fastest one
+		int quickSolution[] = quick.solve(board);
+		int solution[] = null;
+		if (quickSolution != null && quickSolution.length/2 <= quick.getLowerBound())
+		{
+			// nothing can be shorter than this, so there's no need to look any further
+			solution = quickSolution;
+		}
+		else
+		{
+			if (quickSolution != null && quickSolution.length > 0)
+			{
+				publish(solver, new Hint(hash, quickSolution[0], quickSolution[1], -1));
+			}
+			solution = solver.solve(board);
+		}
+		
+		if (solution != null)
+		{
+			publish(solver, storeSolution(board, solution, true));
+		}
+		else if (solver.isUnsolvable())
+		{
+			Hint none = new Hint(hash, -1, -1, -1);
+			store(none);
+			publish(solver, none);
+		}
+		else if (!solver.isCancelled() && quickSolution != null)
+		{
+			// out of time, so the weighted solution will have to do
+			storeSolution(board, quickSolution, false);
+		}
+		else if (!solver.isCancelled() && guess != null)
+		{
+			// out of time, so the guess will have to do
+			store(guess);
+		}
+		
+		if (current == solver)
+		{
+			current = null;
+		}
+	}
+	
+	/**
+	  * Caches a hint for every position along a solution, so following the hint and asking again is
+	  * free. Hints from a solution that isn't known to be the shortest don't say how many moves are left.
+	  * @return the hint for the first position, or <tt>null</tt> if the board's already won.
+	  */
+	private Hint storeSolution(BitBoard board, int solution[], boolean shortest)
+	{
+		Hint first = null;
+		BitBoard replay = new BitBoard(board);
+		int length = solution.length/2;
+		for (int i = 0; i < length; i++)
+		{
+			Hint step = new Hint(replay.positionHash(), solution[i*2], solution[i*2+1], shortest ? length-i-1 : -1);
+			store(step);
+			if (first == null)
+			{
+				first = step;
+			}
+			replay.swap(solution[i*2], solution[i*2+1]);
+		}
+		return first;
+	}
+	
+	/**
+	  * Picks the move that leaves the lowest lower bound on the moves left to win, by trying every
+	  * one. Nowhere near as good as solving, but it only takes a moment.
+	  */
+	private Hint bestGuess(BitBoard board, long hash)
+	{
+		int moves[] = new int[BitBoard.moveBufferSize(board.getSize())];
+		int count = board.generateMoves(moves);
+		BitBoard trial = new BitBoard(board);
+		int best = -1, bestBound = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++)
+		{
+			int from = moves[i*2], to = moves[i*2+1];
+			if (trial.get(from) == trial.get(to))
+			{
+				continue;
+			}
+			trial.swap(from, to);
+			int bound = trial.getTracker().lowerBound(mode);
+			trial.swap(from, to);
+			if (bound < bestBound)
+			{
+				best = i;
+				bestBound = bound;
+			}
+		}
+		
+		if (best < 0)
+		{
+			return null;
+		}
+		return new Hint(hash, moves[best*2], moves[best*2+1], -1);
+	}
+	
+	/** Publish a hint, unless its search has been cancelled. */
+	private void publish(Solver solver, Hint d_hint)
+	{
+		// a cancelled search can still slip one through here, which is why hints carry their position hash
+		if (d_hint != null && !solver.isCancelled())
+		{
+			hint = d_hint;
+		}
+	}
+	
+	/** Looks up a cached hint. */
+	private synchronized Hint lookup(long hash)
+	{
+		return cache.get(hash);
+	}
+	
+	/** Caches a hint. */
+	private synchronized void store(Hint d_hint)
+	{
+		cache.put(d_hint.getHash(), d_hint);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+/**
+  * Histogram class. <br /><br />
+  *
+  * Counts whole-number values into fixed-width buckets, along with a running
+  * total, minimum and maximum. Values past the last bucket go in the last
+  * bucket (and values below 0 in the first), so the histogram never grows.
+  * Histograms of the same shape can be added together, which is how batches
+  * counted on separate threads get combined.
+  */
+public class Histogram
+{
+	/** Width of every bucket. */
+	private int bucketWidth;
+	/** Number of values in each bucket. */
+	private long counts[];
+	/** Number of values counted. */
+	private long count;
+	/** Total of every value counted. */
+	private long sum;
+	/** Smallest value counted. */
+	private int min;
+	/** Largest value counted. */
+	private int max;
+	
+	/** Standard constructor. Starts out empty. */
+	public Histogram(int d_bucketWidth, int buckets)
+	{
+		bucketWidth = d_bucketWidth;
+		counts = new long[buckets];
+		count = 0;
+		sum = 0;
+		min = Integer.MAX_VALUE;
+		max = Integer.MIN_VALUE;
+	}
+	
+	/** Count a value. */
+	public void add(int value)
+	{
+		int bucket = Math.max(0, Math.min(counts.length-1, value/bucketWidth));
+		counts[bucket]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+	
+	/** Count every value from another histogram, which has to be the same shape as this one. */
+	public void add(Histogram other)
+	{
+		if (other.bucketWidth != bucketWidth || other.counts.length != counts.length)
+		{
+			throw new IllegalArgumentException();
+		}
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+	
+	/** Gets the number of values counted. */
+	public long getCount()
+	{
+		return count;
+	}
+	
+	/** Gets the average value, or 0 if nothing's been counted. */
+	public double getMean()
+	{
+		return (count > 0) ? (double)sum/count : 0.0;
+	}
+	
+	/** Gets the smallest value counted, or 0 if nothing's been counted. */
+	public int getMin()
+	{
+		return (count > 0) ? min : 0;
+	}
+	
+	/** Gets the largest value counted, or 0 if nothing's been counted. */
+	public int getMax()
+	{
+		return (count > 0) ? max : 0;
+	}
+	
+	/** Gets the number of buckets. */
+	public int getBucketCount()
+	{
+		return counts.length;
+	}
+	
+	/** Gets the width of every bucket. */
+	public int getBucketWidth()
+	{
+		return bucketWidth;
+	}
+	
+	/** Gets the number of values in a bucket. */
+	public long getBucket(int bucket)
+	{
+		return counts[bucket];
+	}
+	
+	/**
+	  * Gets (roughly) the value a fraction of the values are at or below: the top of the bucket it
+	  * falls in, capped at the largest value counted.
+	  */
+	public int percentile(double fraction)
+	{
+		long wanted = (long)Math.ceil(fraction*count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen >= wanted && seen > 0)
+			{
+				return Math.min(getMax(), (i+1)*bucketWidth-1);
+			}
+		}
+		return getMax();
+	}
+	
+	/** Sums the histogram up in a line. */
+	public String toString()
+	{
+		return "n="+count+" mean="+(Math.round(getMean()*10)/10.0)+" min="+getMin()+" p50="+percentile(0.5)+" p90="+percentile(0.9)+" p99="+percentile(0.99)+" max="+getMax();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+  * Input queue class. <br /><br />
+  *
+  * Carries input events from whatever thread they arrive on (the AWT event
+  * thread, usually) over to the game loop, so game states are only ever
+  * touched by one thread. Events are stored as plain ints in a fixed-size
+  * ring buffer. Any number of threads can add events without locking, and
+  * the game loop drains them every cycle, squashing runs of mouse movement
+  * down to the last position, since that's the only one that matters.
+  */
+public class InputQueue
+{
+	/** Mouse moved event. The arguments are the x and y position. */
+	public static final int MOUSE_MOVED = 0;
+	/** Mouse dragged event. The arguments are the x and y position, and 1 if it's the right button. */
+	public static final int MOUSE_DRAGGED = 1;
+	/** Mouse clicked event. The argument is 1 if it's the right button. */
+	public static final int MOUSE_CLICKED = 2;
+	/** Mouse entered event. The arguments are the x and y position. */
+	public static final int MOUSE_ENTERED = 3;
+	/** Mouse exited event. */
+	public static final int MOUSE_EXITED = 4;
+	/** Mouse pressed event. The argument is 1 if it's the right button. */
+	public static final int MOUSE_PRESSED = 5;
+	/** Mouse released event. The argument is 1 if it's the right button. */
+	public static final int MOUSE_RELEASED = 6;
+	/** Key pressed event. The argument is the key code. */
+	public static final int KEY_PRESSED = 7;
+	/** Key released event. The argument is the key code. */
+	public static final int KEY_RELEASED = 8;
+	/** Key typed event. The argument is the character typed. */
+	public static final int KEY_TYPED = 9;
+	
+	/** Default number of events the queue can hold. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** Capacity - 1. The capacity is always a power of 2, so this masks positions into slots. */
+	private int mask;
+	/** Event types, by slot. */
+	private int types[];
+	/** First event arguments, by slot. */
+	private int args1[];
+	/** Second event arguments, by slot. */
+	private int args2[];
+	/** Third event arguments, by slot. */
+	private int args3[];
+	/**
+	  * Slot sequence numbers. A slot whose sequence matches the next position to write is free;
+	  * one whose sequence is one past the next position to read holds an event that's ready.
+	  */
+	private AtomicLongArray sequences;
+	/** Next position to write. Shared by every thread adding events. */
+	private AtomicLong tail;
+	/** Next position to read. Only ever touched by the game loop. */
+	private long head;
+	
+	/** Total events dropped because the queue was full. */
+	private AtomicLong dropped;
+	
+	/** Standard constructor. The capacity is rounded up to a power of 2. */
+	public InputQueue(int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(capacity-1, 1))*2;
+		mask = size-1;
+		types = new int[size];
+		args1 = new int[size];
+		args2 = new int[size];
+		args3 = new int[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+		{
+			sequences.set(i, i);
+		}
+		tail = new AtomicLong(0);
+		head = 0;
+		dropped = new AtomicLong(0);
+	}
+	
+	/** Default-capacity constructor. */
+	public InputQueue()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	  * Add an event. Safe to call from any thread. If the queue's full (which takes a game loop
+	  * that's stopped draining it) the event is dropped.
+	  * @return whether or not the event made it in.
+	  */
+	public boolean offer(int type, int arg1, int arg2, int arg3)
+	{
+		long position = tail.get();
+		while (true)
+		{
+			int slot = (int)position & mask;
+			long difference = sequences.get(slot)-position;
+			if (difference == 0)
+			{
+				// the slot's free... so claim it, unless another thread got there first
+				if (tail.compareAndSet(position, position+1))
+				{
+					types[slot] = type;
+					args1[slot] = arg1;
+					args2[slot] = arg2;
+					args3[slot] = arg3;
+					// publish the event: the reader won't touch the slot until it sees this
+					sequences.set(slot, position+1);
+					return true;
+				}
+				position = tail.get();
+			}
+			else if (difference < 0)
+			{
+				// the reader hasn't freed this slot yet, so we're full
+				dropped.incrementAndGet();
+				return false;
+			}
+			else
+			{
+				// someone else took this position; try the next one
+				position = tail.get();
+			}
+		}
+	}
+	
+	/** Are there any events waiting? Only the game loop should call this. */
+	public boolean hasEvents()
+	{
+		return ready();
+	}
+	
+	/** Is the event at the head of the queue ready to read? */
+	private boolean ready()
+	{
+		return sequences.get((int)head & mask) == head+1;
+	}
+	
+	/** Frees the slot at the head of the queue, and moves on to the next one. */
+	private void advance()
+	{
+		sequences.set((int)head & mask, head+mask+1);
+		head++;
+	}
+	
+	/**
+	  * Hand every waiting event over to a game state, in order. Runs of mouse movement are squashed
+	  * down to the last event in the run. Stops early if an event makes the state hand over to another
+	  * one. Only the game loop should call this.
+	  * @return the number of events handed over.
+	  */
+	public int drain(GameState state)
+	{
+		int count = 0;
+		while (ready())
+		{
+			int slot = (int)head & mask;
+			int type = types[slot], arg1 = args1[slot], arg2 = args2[slot], arg3 = args3[slot];
+			advance();
+			
+			if (type == MOUSE_MOVED || type == MOUSE_DRAGGED)
+			{
+				// skip ahead to the last of a run of moves
+				while (ready() && types[(int)head & mask] == type && args3[(int)head & mask] == arg3)
+				{
+					slot = (int)head & mask;
+					arg1 = args1[slot];
+					arg2 = args2[slot];
+					advance();
+				}
+			}
+			
+			dispatch(state, type, arg1, arg2, arg3);
+			count++;
+			if (state.nextState != state)
+			{
+				// the state's on its way out, so the rest of the input is for the next one
+				break;
+			}
+		}
+		return count;
+	}
+	
+	/** Hand a single event over to a game state. */
+	private static void dispatch(GameState state, int type, int arg1, int arg2, int arg3)
+	{
+		switch (type)
+		{
+			case MOUSE_MOVED:
+				state.mouseMoved(arg1, arg2);
+				break;
+			case MOUSE_DRAGGED:
+				state.mouseDragged(arg1, arg2, arg3 != 0);
+				break;
+			case MOUSE_CLICKED:
+				state.mouseClicked(arg1 != 0);
+				break;
+			case MOUSE_ENTERED:
+				state.mouseEntered(arg1, arg2);
+				break;
+			case MOUSE_EXITED:
+				state.mouseExited();
+				break;
+			case MOUSE_PRESSED:
+				state.mousePressed(arg1 != 0);
+				break;
+			case MOUSE_RELEASED:
+				state.mouseReleased(arg1 != 0);
+				break;
+			case KEY_PRESSED:
+				state.keyPressed(arg1);
+				break;
+			case KEY_RELEASED:
+				state.keyReleased(arg1);
+				break;
+			case KEY_TYPED:
+				state.keyTyped((char)arg1);
+				break;
+		}
+	}
+	
+	/** Gets the total number of events dropped because the queue was full. */
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+}
\ No newline at end of file
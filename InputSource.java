@@ -0,0 +1,14 @@
+/**
+  * Input source interface. <br /><br />
+  *
+  * Something that plays a headless game in place of a player with a mouse:
+  * every time the game wants a move, the source picks one.
+  */
+public interface InputSource
+{
+	/**
+	  * Pick the next move for a grid, as a (from, to) pair of cells numbered y*size+x.
+	  * @return <tt>false</tt> if there are no more moves to make, in which case the game stops.
+	  */
+	public boolean nextMove(Grid grid, int move[]);
+}
\ No newline at end of file
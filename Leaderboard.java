@@ -0,0 +1,190 @@
+import java.util.Random;
+
+/**
+  * Leaderboard class. <br /><br />
+  * Every score ever made for a game mode and difficulty, highest first, with no limit on how many.
+  * Scores are kept in an indexed skip list: every link also knows how many scores it skips over,
+  * so working out where a score ranks, or which score is at a rank, is a walk down the levels
+  * rather than along the whole board. Scores that tie keep the order they were added in.
+  */
+public class Leaderboard
+{
+	/** Most levels the skip list can have. Plenty for any number of scores an int can count. */
+	private static final int MAX_LEVELS = 16;
+	/** Odds (1 in this) of a score making it up each level. */
+	private static final int LEVEL_ODDS = 4;
+	
+	/** A single score in the skip list. */
+	private static class Node
+	{
+		/** The score. Null for the head. */
+		private ScoresList.Score score;
+		/** The score's value, kept here so walking the list doesn't have to look in every score. */
+		private int value;
+		/** Next node at every level this node's on. */
+		private Node next[];
+		/** Number of scores skipped over by every link (this node's own rank to the next one's). */
+		private int widths[];
+		
+		/** Standard constructor. */
+		private Node(ScoresList.Score d_score, int levels)
+		{
+			score = d_score;
+			value = (d_score != null) ? d_score.getScore() : 0;
+			next = new Node[levels];
+			widths = new int[levels];
+		}
+	}
+	
+	/** Head of the skip list, on every level. Ranks 0, ahead of the top score. */
+	private Node head;
+	/** Number of levels in use. */
+	private int levels;
+	/** Number of scores on the board. */
+	private int size;
+	/** Random number generator for picking levels. */
+	private Random generator;
+	/** Nodes to link a new one in after, on every level. Kept around so adding doesn't allocate. */
+	private Node update[];
+	/** Rank of every node in {@link #update}. */
+	private int updateRanks[];
+	
+	/** Standard constructor. Starts out empty. */
+	public Leaderboard()
+	{
+		head = new Node(null, MAX_LEVELS);
+		levels = 1;
+		size = 0;
+		generator = new Random();
+		update = new Node[MAX_LEVELS];
+		updateRanks = new int[MAX_LEVELS];
+	}
+	
+	/** Gets the number of scores on the board. */
+	public int size()
+	{
+		return size;
+	}
+	
+	/** Gets the rank a score would get if it were added now: after every score at least as high. 1 is the top. */
+	public int rankOf(int score)
+	{
+		Node node = head;
+		int rank = 0;
+		for (int i = levels-1; i >= 0; i--)
+		{
+			while (node.next[i] != null && node.next[i].value >= score)
+			{
+				rank += node.widths[i];
+				node = node.next[i];
+			}
+		}
+		return rank+1;
+	}
+	
+	/** Add a score to the board. Returns the rank it got. */
+	public int add(ScoresList.Score score)
+	{
+		// find where it goes on every level, and the rank of the node it goes after
+		Node node = head;
+		int rank = 0;
+		for (int i = levels-1; i >= 0; i--)
+		{
+			while (node.next[i] != null && node.next[i].value >= score.getScore())
+			{
+				rank += node.widths[i];
+				node = node.next[i];
+			}
+			update[i] = node;
+			updateRanks[i] = rank;
+		}
+		
+		int nodeLevels = 1;
+		while (nodeLevels < MAX_LEVELS && generator.nextInt(LEVEL_ODDS) == 0)
+		{
+			nodeLevels++;
+		}
+		while (levels < nodeLevels)
+		{
+			update[levels] = head;
+			updateRanks[levels] = 0;
+			head.widths[levels] = size+1;
+			levels++;
+		}
+		
+		Node added = new Node(score, nodeLevels);
+		for (int i = 0; i < nodeLevels; i++)
+		{
+			added.next[i] = update[i].next[i];
+			update[i].next[i] = added;
+			// the old link gets split in two around the new node
+			added.widths[i] = update[i].widths[i] - (rank-updateRanks[i]);
+			update[i].widths[i] = rank-updateRanks[i]+1;
+		}
+		for (int i = nodeLevels; i < levels; i++)
+		{
+			// links over the top of the new node skip one more score now
+			update[i].widths[i]++;
+		}
+		size++;
+		return rank+1;
+	}
+	
+	/** Gets the score at a rank (1 is the top), or null if there isn't one. */
+	public ScoresList.Score get(int rank)
+	{
+		if (rank < 1 || rank > size)
+		{
+			return null;
+		}
+		Node node = head;
+		int passed = 0;
+		for (int i = levels-1; i >= 0; i--)
+		{
+			while (node.next[i] != null && passed+node.widths[i] <= rank)
+			{
+				passed += node.widths[i];
+				node = node.next[i];
+			}
+		}
+		return node.score;
+	}
+	
+	/** Gets the top scores on the board, highest first: up to <tt>count</tt> of them, fewer if the board's short. */
+	public ScoresList.Score[] top(int count)
+	{
+		return range(1, count);
+	}
+	
+	/**
+	  * Gets up to <tt>count</tt> scores, in order, starting from a rank (anything before 1 starts from the top).
+	  * Finding the first is a walk down the levels; the rest are just followed along.
+	  */
+	public ScoresList.Score[] range(int rank, int count)
+	{
+		rank = Math.max(1, rank);
+		count = Math.max(0, Math.min(count, size-rank+1));
+		ScoresList.Score scores[] = new ScoresList.Score[count];
+		if (count == 0)
+		{
+			return scores;
+		}
+		
+		Node node = head;
+		int passed = 0;
+		for (int i = levels-1; i >= 0; i--)
+		{
+			while (node.next[i] != null && passed+node.widths[i] <= rank)
+			{
+				passed += node.widths[i];
+				node = node.next[i];
+			}
+		}
+		for (int i = 0; i < count; i++)
+		{
+			scores[i] = node.score;
+			node = node.next[0];
+		}
+		return scores;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+  * Loop scheduler class. <br /><br />
+  *
+  * Paces a fixed-timestep game loop. The simulation always moves forward in
+  * steps of exactly the same length, however long frames actually take, and
+  * frames are rendered against absolute deadlines so timing errors never
+  * pile up. Waiting is done with LockSupport.parkNanos, so the thread is
+  * asleep rather than spinning while idle. Under load, the scheduler drops
+  * simulation steps once it's too far behind to catch up, and skips
+  * rendering frames whose deadline has already passed.<br /><br />
+  *
+  * When there's nothing to animate, the loop can idle until it's woken up
+  * (by input, say) or a timeout runs out. Time spent idle isn't handed out
+  * as steps - a long idle would take ages to replay, step by step - but as a
+  * single stretch of time (see {@link #getIdleTime}), which is fine since
+  * nothing was due to happen during it.
+  */
+public class LoopScheduler
+{
+	/** Nanoseconds in a second. */
+	private static final long NANOS_PER_SEC = 1000000000L;
+	/** Parking can overshoot by this much, so wake up this early and yield for the rest (in ns). */
+	private static final long SPIN_NANOS = 200000L;
+	/** Never skip more than this many frames in a row, so the screen doesn't freeze entirely under load. */
+	private static final int MAX_SKIPPED_FRAMES = 5;
+	
+	/** Length of a simulation step (in ns). */
+	private long stepNanos;
+	/** Time between frames (in ns). */
+	private long frameNanos;
+	/** Most simulation steps to run for a single frame. Any more than this get dropped. */
+	private int maxSteps;
+	
+	/** Deadline for the next frame (in ns, on the System.nanoTime() clock). */
+	private long deadline;
+	/** Time of the last simulation step (in ns). */
+	private long lastStep;
+	/** Time waiting to be simulated (in ns). Always less than a step once the steps for a frame are handed out. */
+	private long accumulated;
+	/** Number of frames skipped in a row. */
+	private int skippedFrames;
+	
+	/** The thread running the loop. */
+	private volatile Thread loopThread;
+	/** Has the loop been woken up since it last idled? */
+	private volatile boolean woken;
+	/** Time spent idle since the last frame started (in ns). */
+	private long idleNanos;
+	/** Time spent idle just before the current frame (in ns). */
+	private long frameIdleNanos;
+	
+	/** Total simulation steps dropped. */
+	private long droppedSteps;
+	/** Total frames skipped. */
+	private long droppedFrames;
+	
+	/** Standard constructor. */
+	public LoopScheduler(double stepsPerSec, double framesPerSec, int d_maxSteps)
+	{
+		stepNanos = (long)(NANOS_PER_SEC/stepsPerSec);
+		frameNanos = (long)(NANOS_PER_SEC/framesPerSec);
+		maxSteps = d_maxSteps;
+		start();
+	}
+	
+	/** (Re)start the clock. Call this right before the loop starts. */
+	public void start()
+	{
+		long now = System.nanoTime();
+		deadline = now;
+		lastStep = now;
+		accumulated = 0;
+		skippedFrames = 0;
+		loopThread = Thread.currentThread();
+		woken = false;
+		idleNanos = 0;
+		frameIdleNanos = 0;
+	}
+	
+	/**
+	  * Wait for the next frame deadline, then work out how much simulating is due.
+	  * @return the number of fixed steps to simulate before rendering.
+	  */
+	public int nextFrame()
+	{
+		deadline += frameNanos;
+		long now = waitUntil(deadline);
+		
+		if (now-deadline > frameNanos)
+		{
+			// we've missed at least one whole frame... so don't bother rushing to catch up on them
+			droppedFrames += (now-deadline)/frameNanos;
+			deadline = now;
+		}
+		
+		accumulated += now-lastStep;
+		lastStep = now;
+		
+		frameIdleNanos = idleNanos;
+		idleNanos = 0;
+		
+		long steps = accumulated/stepNanos;
+		if (steps > maxSteps)
+		{
+			// too far behind to catch up without making it worse, so drop the extra steps altogether
+			droppedSteps += steps-maxSteps;
+			accumulated -= (steps-maxSteps)*stepNanos;
+			steps = maxSteps;
+		}
+		accumulated -= steps*stepNanos;
+		return (int)steps;
+	}
+	
+	/**
+	  * Sleep until {@link #wake()} is called or the timeout runs out, whichever comes first. The next
+	  * frame starts as soon as this returns, and the time spent asleep is handed back by
+	  * {@link #getIdleTime} rather than as steps - so that frame will usually have no steps due, and
+	  * anything that has to happen on waking (handling input, say) can't wait for a step to do it.
+	  * @param timeout the longest to sleep for (in seconds). Can be infinite.
+	  */
+	public void idle(double timeout)
+	{
+		long start = System.nanoTime();
+		long now = start;
+		long wakeTime = now + (long)Math.min(timeout*NANOS_PER_SEC, Long.MAX_VALUE/2);
+		while (!woken && wakeTime-now > 0)
+		{
+			LockSupport.parkNanos(this, wakeTime-now);
+			now = System.nanoTime();
+		}
+		woken = false;
+		
+		// the next frame is due right away, and the time asleep gets simulated all at once rather than in steps
+		idleNanos += now-start;
+		lastStep += now-start;
+		deadline = now-frameNanos;
+		skippedFrames = 0;
+	}
+	
+	/**
+	  * Gets the time spent idle just before the current frame (in seconds), or 0 if the loop didn't
+	  * idle. Simulate it as a single stretch of time before the frame's steps.
+	  */
+	public double getIdleTime()
+	{
+		return (double)frameIdleNanos/NANOS_PER_SEC;
+	}
+	
+	/** Wake the loop up if it's idle, or stop it idling next time if it isn't. Can be called from any thread. */
+	public void wake()
+	{
+		woken = true;
+		Thread thread = loopThread;
+		if (thread != null)
+		{
+			LockSupport.unpark(thread);
+		}
+	}
+	
+	/** Gets the time between frames (in seconds). */
+	public double getFramePeriod()
+	{
+		return (double)frameNanos/NANOS_PER_SEC;
+	}
+	
+	/**
+	  * Should this frame be rendered? Call this after simulating the frame's steps: if they ran past
+	  * the next frame's deadline, rendering would only put us further behind, so the frame is skipped
+	  * (but never too many in a row).
+	  */
+	public boolean shouldRender()
+	{
+		if (System.nanoTime() > deadline+frameNanos && skippedFrames < MAX_SKIPPED_FRAMES)
+		{
+			skippedFrames++;
+			droppedFrames++;
+			return false;
+		}
+		skippedFrames = 0;
+		return true;
+	}
+	
+	/** Park until an absolute deadline (on the System.nanoTime() clock). Returns the time on waking. */
+	private long waitUntil(long wakeTime)
+	{
+		long now = System.nanoTime();
+		while (wakeTime-now > SPIN_NANOS)
+		{
+			// parkNanos can return early (or spuriously), so keep going until the deadline's close
+			LockSupport.parkNanos(wakeTime-now-SPIN_NANOS);
+			now = System.nanoTime();
+		}
+		while (wakeTime-now > 0)
+		{
+			Thread.yield();
+			now = System.nanoTime();
+		}
+		return now;
+	}
+	
+	/** Gets the length of a simulation step (in seconds). */
+	public double getStep()
+	{
+		return (double)stepNanos/NANOS_PER_SEC;
+	}
+	
+	/**
+	  * Gets how far the renderer is between the last simulation step and the next one, from 0 to 1.
+	  * Use this to interpolate anything that moves smoothly.
+	  */
+	public double getInterpolation()
+	{
+		return (double)accumulated/stepNanos;
+	}
+	
+	/** Gets the total number of simulation steps dropped. */
+	public long getDroppedSteps()
+	{
+		return droppedSteps;
+	}
+	
+	/** Gets the total number of frames skipped. */
+	public long getDroppedFrames()
+	{
+		return droppedFrames;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+/**
+  * Move policy interface. <br /><br />
+  *
+  * A bot that plays boards straight off a BitBoard, for evaluating boards and
+  * difficulty settings by the million. Policies keep their own state (random
+  * numbers, move buffers, a plan), so every thread plays with its own copy,
+  * made with {@link #fork(long)}.
+  */
+public interface MovePolicy
+{
+	/** Get ready to play a new board. */
+	public void start(int mode, BitBoard board);
+	
+	/**
+	  * Pick the next move for a board, as a (from, to) pair of cells numbered y*size+x.
+	  * @return <tt>false</tt> if there are no more moves to make, in which case the game stops.
+	  */
+	public boolean nextMove(BitBoard board, int move[]);
+	
+	/** Makes a fresh policy of the same kind, with its own random numbers seeded from <tt>seed</tt>. */
+	public MovePolicy fork(long seed);
+}
\ No newline at end of file
@@ -2,7 +2,6 @@ import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.Graphics2D;
 import java.awt.GridLayout;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
@@ -79,6 +78,8 @@ public class NumerateGame extends Canvas
 	public static final Color GRID_SELECTED_TEXT_COLOR = Color.BLUE;
 	/** Color for highlighted grid items */
 	public static final Color GRID_HIGHLIGHTED_TEXT_COLOR = Color.GREEN;
+	/** Color for grid items in the current hint */
+	public static final Color GRID_HINT_TEXT_COLOR = Color.MAGENTA;
 	/** Color for menu background */
 	public static final Color MENU_BG_COLOR = new Color(0,0,32);
 	/** Color for game background */
@@ -162,14 +163,12 @@ public class NumerateGame extends Canvas
 	
 	/** Target game framerate. */
 	public static final double FRAMERATE = 35.0;
-	/** Number of cycles per second to work off of. */
+	/** Number of cycles per second to work off of. Every cycle is a fixed simulation step of 1/CYCLES_PER_SEC seconds. */
 	public static final int CYCLES_PER_SEC = 100;
-	
-	/** General game tasks branch constant */
-	public static final int B_GENERAL_GAME_TASKS = 0;
-	
-	/** Game refresh timer constant */
-	public static final int T_GAME_REFRESH = 0;
+	/** Most cycles to simulate for a single frame. When the game falls further behind than this, the rest get dropped. */
+	public static final int MAX_CYCLES_PER_FRAME = 10;
+	/** Longest to go without putting the frame back up while the window isn't focused (in seconds), since other windows might draw over it. */
+	public static final double UNFOCUSED_REFRESH_TIME = 0.5;
 	
 	// Field sizes:
 	/** Long field size. */
@@ -209,8 +208,10 @@ public class NumerateGame extends Canvas
 	/** In debug mode? */
 	private boolean debugMode;
 	
-	/** Game timer list. */
-	private TimerList timers;
+	/** Game loop scheduler. */
+	private LoopScheduler scheduler;
+	/** Input waiting to be handed to the current state. Filled on the AWT event thread, drained by the game loop. */
+	private InputQueue input;
 	
 	/** Game mouse listener */
 	private MouseManager mouseListener;
@@ -219,62 +220,76 @@ public class NumerateGame extends Canvas
 	
 	/** Games high score list. */
 	private ScoresList scores;
+	/** Pre-generated boards. Null if there's no puzzle bank. */
+	private PuzzleBank puzzles;
 	
+	/** Passes mouse events on to the game loop. Nothing here touches the game state directly, since it runs on the AWT event thread. */
 	public class MouseManager implements MouseListener, MouseMotionListener
 	{
 		
 		public void mouseDragged(MouseEvent e)
 		{
-			currentState.mouseDragged(e.getX(),e.getY(),e.getButton() == MouseEvent.BUTTON3);
+			input.offer(InputQueue.MOUSE_DRAGGED,e.getX(),e.getY(),(e.getButton() == MouseEvent.BUTTON3) ? 1 : 0);
+			scheduler.wake();
 		}
 		
 		public void mouseMoved(MouseEvent e)
 		{
-			currentState.mouseMoved(e.getX(),e.getY());
+			input.offer(InputQueue.MOUSE_MOVED,e.getX(),e.getY(),0);
+			scheduler.wake();
 		}
 		
 		public void mouseClicked(MouseEvent e) 
 		{
-			currentState.mouseClicked(e.getButton() == MouseEvent.BUTTON3);
+			input.offer(InputQueue.MOUSE_CLICKED,(e.getButton() == MouseEvent.BUTTON3) ? 1 : 0,0,0);
+			scheduler.wake();
 		}
 		
 		public void mouseEntered(MouseEvent e) 
 		{
-			currentState.mouseEntered(e.getX(),e.getY());
+			input.offer(InputQueue.MOUSE_ENTERED,e.getX(),e.getY(),0);
+			scheduler.wake();
 		}
 		
 		public void mouseExited(MouseEvent e) 
 		{
 			// mouse exited the component, so reset the x/y components
-			currentState.mouseExited();
+			input.offer(InputQueue.MOUSE_EXITED,0,0,0);
+			scheduler.wake();
 		}
 		
 		public void mousePressed(MouseEvent e) 
 		{
-			currentState.mousePressed(e.getButton() == MouseEvent.BUTTON3);
+			input.offer(InputQueue.MOUSE_PRESSED,(e.getButton() == MouseEvent.BUTTON3) ? 1 : 0,0,0);
+			scheduler.wake();
 		}
 		
 		public void mouseReleased(MouseEvent e) 
 		{
-			currentState.mouseReleased(e.getButton() == MouseEvent.BUTTON3);
+			input.offer(InputQueue.MOUSE_RELEASED,(e.getButton() == MouseEvent.BUTTON3) ? 1 : 0,0,0);
+			scheduler.wake();
 		}
 	}
 	
+	/** Passes key events on to the game loop. */
 	public class KeyManager implements KeyListener
 	{
 		public void keyPressed(KeyEvent e)
 		{
-			currentState.keyPressed(e.getKeyCode());
+			input.offer(InputQueue.KEY_PRESSED,e.getKeyCode(),0,0);
+			scheduler.wake();
 		}
 		
 		public void keyReleased(KeyEvent e)
 		{
-			currentState.keyReleased(e.getKeyCode());
+			input.offer(InputQueue.KEY_RELEASED,e.getKeyCode(),0,0);
+			scheduler.wake();
 		}
 		
 		public void keyTyped(KeyEvent e)
 		{
-			currentState.keyTyped(e.getKeyChar());
+			input.offer(InputQueue.KEY_TYPED,e.getKeyChar(),0,0);
+			scheduler.wake();
 		}
 	} 
 	
@@ -282,49 +297,42 @@ public class NumerateGame extends Canvas
 	// UTILITY METHODS
 	// ==================================================
 	
+	// These live in GameUtils, so headless games can use them without loading AWT.
+	
 	/** Static function for returning the current system time (in seconds). Recommended ONLY for time comparison! */
 	public static double sysTime()
 	{
-		return (double)System.nanoTime()/1000000000.0;
+		return GameUtils.sysTime();
 	}
 	
 	/** Static function for a string array with one parameter. */
 	public static String[] a(String a1)
 	{
-		String[] a = {a1};
-		return a;
+		return GameUtils.a(a1);
 	}
 	
 	/** Static function for a string array with two parameters. */
 	public static String[] a(String a1, String a2)
 	{
-		String[] a = {a1,a2};
-		return a;
+		return GameUtils.a(a1,a2);
 	}
 	
 	/** Static function for a string array with three parameters. */
 	public static String[] a(String a1, String a2, String a3)
 	{
-		String[] a = {a1,a2,a3};
-		return a;
+		return GameUtils.a(a1,a2,a3);
 	}
 	
 	/** Static function for a string array with four parameters. */
 	public static String[] a(String a1, String a2, String a3, String a4)
 	{
-		String[] a = {a1,a2,a3,a4};
-		return a;
+		return GameUtils.a(a1,a2,a3,a4);
 	}
 	
 	/** Determine the number of digits in a base 10 integer. */
 	public static int getDigits(int number)
 	{
-		int digits = 1;
-		while ((number /= 10) != 0)
-		{
-			digits++;
-		}
-		return digits;
+		return GameUtils.getDigits(number);
 	}
 	
 	// ==================================================
@@ -368,6 +376,13 @@ public class NumerateGame extends Canvas
 			public void windowClosing(WindowEvent e) {
 				System.exit(0);
 			}
+			public void windowActivated(WindowEvent e) {
+				// the window might have been covered up, so get the loop to put the frame back up
+				if (scheduler != null) { scheduler.wake(); }
+			}
+			public void windowDeiconified(WindowEvent e) {
+				if (scheduler != null) { scheduler.wake(); }
+			}
 		});
 		
 		// request the focus so key events come to us
@@ -378,9 +393,8 @@ public class NumerateGame extends Canvas
 		createBufferStrategy(2);
 		strategy = getBufferStrategy();
 		
-		// now create our timers...
-		timers = new TimerList(2);
-		timers.addTimer(B_GENERAL_GAME_TASKS,T_GAME_REFRESH, new Timer("refresh",1/FRAMERATE,0,false));
+		// now create our loop scheduler...
+		scheduler = new LoopScheduler(CYCLES_PER_SEC, FRAMERATE, MAX_CYCLES_PER_FRAME);
 		
 		// now set up the scores list
 		try
@@ -393,10 +407,21 @@ public class NumerateGame extends Canvas
 			System.out.println(X.getMessage());
 		}
 		
+		// and the puzzle bank, if there is one
+		try
+		{
+			puzzles = new PuzzleBank();
+		}
+		catch (Exception X)
+		{
+			puzzles = null;
+		}
+		
 		// initiate the menu...
-		currentState = new GameMenu(scores);
+		currentState = new GameMenu(scores, puzzles);
 		
-		// now add a mouse listener
+		// now add a mouse listener (and somewhere for its events to wait for the game loop)
+		input = new InputQueue();
 		mouseListener = new MouseManager();
 		addMouseListener(mouseListener);
 		addMouseMotionListener(mouseListener);
@@ -416,17 +441,40 @@ public class NumerateGame extends Canvas
 	/** Game loop. */
 	public void gameLoop()
 	{
-		GameGraphics graphics = new GameGraphics((Graphics2D) strategy.getDrawGraphics(),strategy);
-		double time = sysTime(), dtime = 0.0;
-		boolean needsCompleteRedraw = false; // set this to TRUE when we lose focus of our window and need to redraw it
+		GameGraphics graphics = new GameGraphics(strategy);
+		double step = scheduler.getStep();
 		
+		scheduler.start();
 		while (true)
 		{
-			dtime = sysTime()-time;
-			time += dtime;
-			timers.increment(dtime);
-			
-			currentState = currentState.nextState;
+			// wait for the next frame, then catch the game up: any time spent idle all at once, then in fixed steps
+			int steps = scheduler.nextFrame();
+			double idleTime = scheduler.getIdleTime();
+			if (currentState != null)
+			{
+				// input gets handled here, on the game thread, once a frame - even a frame with no steps due
+				currentState = currentState.nextState;
+				if (currentState != null)
+				{
+					input.drain(currentState);
+				}
+			}
+			if (idleTime > 0 && currentState != null)
+			{
+				currentState = currentState.nextState;
+				if (currentState != null)
+				{
+					currentState.elapseTime(idleTime);
+				}
+			}
+			for (int i = 0; i < steps && currentState != null; i++)
+			{
+				currentState = currentState.nextState;
+				if (currentState != null)
+				{
+					currentState.elapseTime(step);
+				}
+			}
 			
 			if (currentState == null)
 			{
@@ -437,30 +485,31 @@ public class NumerateGame extends Canvas
 				break;
 			}
 			
-			currentState.elapseTime(dtime);
-			
-			if (!timers.isActive(B_GENERAL_GAME_TASKS, T_GAME_REFRESH) || timers.triggered(B_GENERAL_GAME_TASKS, T_GAME_REFRESH))
+			boolean focused = container.hasFocus() || hasFocus();
+			if (scheduler.shouldRender())
 			{
-				if (!timers.isActive(B_GENERAL_GAME_TASKS, T_GAME_REFRESH))
+				if (!focused)
 				{
-					// if the screen refresh timer is not already enabled, enable it (usually done at startup)
-					timers.setIsActive(B_GENERAL_GAME_TASKS, T_GAME_REFRESH,true);
-				}
-				
-				if (!container.hasFocus() && !hasFocus())
-				{
-					graphics.needsCompleteRedraw = true;
+					// other windows might be drawing over us, so put the whole frame back up
+					graphics.refreshScreen();
 				}
 				
+				graphics.interpolation = scheduler.getInterpolation();
 				currentState.draw(graphics);
-				
-				graphics.g.dispose();
-				graphics.s.show();
-				
+				graphics.present();
 			}
 			
-			try { Thread.sleep(1000/CYCLES_PER_SEC); } catch (Exception e) {}
-			
+			// if nothing's moving, sleep until something happens: input, or the state's next timed event
+			// (but not with input still waiting, or a state waiting to hand over, since those need a frame now)
+			double wait = currentState.timeUntilUpdate();
+			if (!focused)
+			{
+				wait = Math.min(wait, UNFOCUSED_REFRESH_TIME);
+			}
+			if (wait > scheduler.getFramePeriod() && !input.hasEvents() && currentState.nextState == currentState)
+			{
+				scheduler.idle(wait);
+			}
 		}
 		
 		setVisible(false);
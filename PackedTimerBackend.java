@@ -0,0 +1,432 @@
+import java.util.ArrayList;
+
+/**
+  * Packed timer backend class. <br /><br />
+  *
+  * Keeps timers as plain numbers rather than objects: every branch holds its
+  * timers' periods, current periods, execution counts and flags in parallel
+  * arrays, and ids are stored as {@link TimerId} numbers. Incrementing a
+  * branch is one straight loop over two double arrays, with no objects
+  * touched and nothing allocated, which suits lists of thousands of timers
+  * that nearly all tick every cycle. (The {@link WheelTimerBackend} suits lists where few timers
+  * come due at a time.)<br /><br />
+  *
+  * Timers handed to the list are copied in, so changing them afterwards has
+  * no effect, and the timers handed back out are copies too.
+  */
+public class PackedTimerBackend implements TimerBackend
+{
+	/** Flag for an active timer. */
+	private static final byte ACTIVE = 1;
+	/** Flag for a timer that's been made to trigger. */
+	private static final byte TRIGGERED = 2;
+	/** Flag for a timer the listener's been told has come due. */
+	private static final byte REPORTED = 4;
+	/** Initial capacity for branches. */
+	private static final int TIMER_LIST_SIZE = 6;
+	
+	/**
+	  * Branch class. <br /><br />
+	  *
+	  * The timers in a single branch, by index.
+	  */
+	private static class Branch
+	{
+		/** Periods. */
+		double period[];
+		/** Current periods. */
+		double current[];
+		/** 1 for active timers and 0 for the rest, so incrementing doesn't need to check. Mirrors the ACTIVE flag. */
+		double rate[];
+		/** Execution counts. */
+		int execCount[];
+		/** Max execution counts. */
+		int maxExecCount[];
+		/** Id numbers. */
+		int ids[];
+		/** Flags. */
+		byte flags[];
+		/** Number of timers. */
+		int size;
+		
+		/** Standard constructor. */
+		Branch(int capacity)
+		{
+			period = new double[capacity];
+			current = new double[capacity];
+			rate = new double[capacity];
+			execCount = new int[capacity];
+			maxExecCount = new int[capacity];
+			ids = new int[capacity];
+			flags = new byte[capacity];
+			size = 0;
+		}
+		
+		/** Opens up a gap at an index, growing the arrays if they're full. */
+		void insert(int index)
+		{
+			if (size == period.length)
+			{
+				int capacity = Math.max(size*2, TIMER_LIST_SIZE);
+				period = grow(period, capacity);
+				current = grow(current, capacity);
+				rate = grow(rate, capacity);
+				execCount = grow(execCount, capacity);
+				maxExecCount = grow(maxExecCount, capacity);
+				ids = grow(ids, capacity);
+				byte newFlags[] = new byte[capacity];
+				System.arraycopy(flags, 0, newFlags, 0, size);
+				flags = newFlags;
+			}
+			int moved = size-index;
+			System.arraycopy(period, index, period, index+1, moved);
+			System.arraycopy(current, index, current, index+1, moved);
+			System.arraycopy(rate, index, rate, index+1, moved);
+			System.arraycopy(execCount, index, execCount, index+1, moved);
+			System.arraycopy(maxExecCount, index, maxExecCount, index+1, moved);
+			System.arraycopy(ids, index, ids, index+1, moved);
+			System.arraycopy(flags, index, flags, index+1, moved);
+			size++;
+		}
+		
+		/** Is a timer active? */
+		boolean isActive(int i)
+		{
+			return (flags[i] & ACTIVE) != 0;
+		}
+		
+		/** Sets a timer's active flag (and rate). */
+		void setActive(int i, boolean active)
+		{
+			if (active)
+			{
+				flags[i] |= ACTIVE;
+				rate[i] = 1.0;
+			}
+			else
+			{
+				flags[i] &= ~ACTIVE;
+				rate[i] = 0.0;
+			}
+		}
+		
+		/** Disables a timer if it's used up its execution count. */
+		void checkExecCount(int i)
+		{
+			if (execCount[i] >= maxExecCount[i] && maxExecCount[i] > 0)
+			{
+				current[i] = 0.0;
+				setActive(i, false);
+			}
+		}
+		
+		/** Has a timer been triggered? Exactly the same rules as {@link Timer#triggered()}. */
+		boolean triggered(int i)
+		{
+			if ((isActive(i) && current[i] >= period[i]) || (flags[i] & TRIGGERED) != 0)
+			{
+				flags[i] &= ~TRIGGERED;
+				execCount[i]++;
+				current[i] = Math.max(0.0, current[i]-period[i]);
+				checkExecCount(i);
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/** Copies a double array into a bigger one. */
+	private static double[] grow(double array[], int capacity)
+	{
+		double grown[] = new double[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	
+	/** Copies an int array into a bigger one. */
+	private static int[] grow(int array[], int capacity)
+	{
+		int grown[] = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	
+	/** Branches. */
+	private ArrayList<Branch> branches;
+	/** Listener told about timers coming due. */
+	private TimerListener listener;
+	
+	/** Standard constructor. Starts out with no branches. */
+	public PackedTimerBackend()
+	{
+		branches = new ArrayList<Branch>();
+		listener = null;
+	}
+	
+	/** Tells the listener about any timers in a branch that have come due since it was last told. */
+	private void report(int branchNumber)
+	{
+		if (listener == null)
+		{
+			return;
+		}
+		Branch branch = branches.get(branchNumber);
+		for (int i = 0; i < branch.size; i++)
+		{
+			boolean due = (branch.isActive(i) && branch.current[i] >= branch.period[i]) || (branch.flags[i] & TRIGGERED) != 0;
+			if (!due)
+			{
+				branch.flags[i] &= ~REPORTED;
+			}
+			else if ((branch.flags[i] & REPORTED) == 0)
+			{
+				branch.flags[i] |= REPORTED;
+				listener.timerExpired(branchNumber, i, TimerId.forNumber(branch.ids[i]).getName());
+			}
+		}
+	}
+	
+	/** Counts the number of branches. */
+	public int branchCount()
+	{
+		return branches.size();
+	}
+	
+	/** Counts the number of timers in a branch. */
+	public int timerCount(int branchNumber)
+	{
+		return branches.get(branchNumber).size;
+	}
+	
+	/** Adds a single new branch. */
+	public void addBranch()
+	{
+		branches.add(new Branch(TIMER_LIST_SIZE));
+	}
+	
+	/** Inserts a copy of a timer into a branch. */
+	public void addTimer(int branchNumber, int timerNumber, Timer timer)
+	{
+		Branch branch = branches.get(branchNumber);
+		branch.insert(timerNumber);
+		branch.period[timerNumber] = timer.getPeriod();
+		branch.current[timerNumber] = timer.getCurrentPeriod();
+		branch.execCount[timerNumber] = timer.getExecCount();
+		branch.maxExecCount[timerNumber] = timer.getMaxExecCount();
+		branch.ids[timerNumber] = TimerId.of(timer.getId()).getNumber();
+		branch.flags[timerNumber] = timer.isTriggered() ? TRIGGERED : 0;
+		branch.setActive(timerNumber, timer.isActive());
+		report(branchNumber);
+	}
+	
+	/** Gets a copy of a timer. Changing it has no effect on the list. */
+	public Timer getTimer(int branchNumber, int timerNumber)
+	{
+		Branch branch = branches.get(branchNumber);
+		Timer timer = new Timer(TimerId.forNumber(branch.ids[timerNumber]).getName(), branch.period[timerNumber], branch.maxExecCount[timerNumber], true);
+		timer.setExecCount(branch.execCount[timerNumber]);
+		timer.setIsActive(true);
+		timer.increment(branch.current[timerNumber]);
+		timer.setIsActive(branch.isActive(timerNumber));
+		timer.setIsTriggered((branch.flags[timerNumber] & TRIGGERED) != 0);
+		return timer;
+	}
+	
+	/** Gets a timer's id. */
+	public String getId(int branchNumber, int timerNumber)
+	{
+		return TimerId.forNumber(branches.get(branchNumber).ids[timerNumber]).getName();
+	}
+	
+	/** Gets a timer's period. */
+	public double getPeriod(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).period[timerNumber];
+	}
+	
+	/** Gets a timer's maximum execution count. */
+	public int getMaxExecCount(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).maxExecCount[timerNumber];
+	}
+	
+	/** Gets a timer's execution count. */
+	public int getExecCount(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).execCount[timerNumber];
+	}
+	
+	/** Checks if there are any active timers. */
+	public boolean isActive()
+	{
+		for (int i = 0; i < branches.size(); i++)
+		{
+			if (isActive(i))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Checks if there are any active timers in a branch. */
+	public boolean isActive(int branchNumber)
+	{
+		Branch branch = branches.get(branchNumber);
+		for (int i = 0; i < branch.size; i++)
+		{
+			if (branch.isActive(i))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Checks if a timer is active. */
+	public boolean isActive(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).isActive(timerNumber);
+	}
+	
+	/** Sets a timer's id. */
+	public void setId(int branchNumber, int timerNumber, String id)
+	{
+		branches.get(branchNumber).ids[timerNumber] = TimerId.of(id).getNumber();
+	}
+	
+	/** Sets a timer's period. */
+	public void setPeriod(int branchNumber, int timerNumber, double period)
+	{
+		Branch branch = branches.get(branchNumber);
+		branch.period[timerNumber] = period;
+		report(branchNumber);
+	}
+	
+	/** Sets a timer's max execution count. */
+	public void setMaxExecCount(int branchNumber, int timerNumber, int maxExecCount)
+	{
+		Branch branch = branches.get(branchNumber);
+		branch.maxExecCount[timerNumber] = maxExecCount;
+		branch.checkExecCount(timerNumber);
+		report(branchNumber);
+	}
+	
+	/** Sets a timer's execution count. */
+	public void setExecCount(int branchNumber, int timerNumber, int execCount)
+	{
+		Branch branch = branches.get(branchNumber);
+		branch.execCount[timerNumber] = Math.max(0, execCount);
+		branch.checkExecCount(timerNumber);
+		report(branchNumber);
+	}
+	
+	/** Changes a timer's active status. */
+	public void setIsActive(int branchNumber, int timerNumber, boolean isActive)
+	{
+		branches.get(branchNumber).setActive(timerNumber, isActive);
+		report(branchNumber);
+	}
+	
+	/** Changes a timer's triggered status. */
+	public void setIsTriggered(int branchNumber, int timerNumber, boolean isTriggered)
+	{
+		Branch branch = branches.get(branchNumber);
+		if (isTriggered)
+		{
+			branch.flags[timerNumber] |= TRIGGERED;
+		}
+		else
+		{
+			branch.flags[timerNumber] &= ~TRIGGERED;
+		}
+		report(branchNumber);
+	}
+	
+	/** Increments every timer. */
+	public void increment(double amount)
+	{
+		for (int i = 0; i < branches.size(); i++)
+		{
+			increment(i, amount);
+		}
+	}
+	
+	/** Increments every timer in a branch. Inactive timers have a rate of 0, so the loop doesn't need to check. */
+	public void increment(int branchNumber, double amount)
+	{
+		Branch branch = branches.get(branchNumber);
+		double current[] = branch.current;
+		double rate[] = branch.rate;
+		int size = branch.size;
+		for (int i = 0; i < size; i++)
+		{
+			current[i] += rate[i]*amount;
+		}
+		report(branchNumber);
+	}
+	
+	/** Increments a timer. */
+	public void increment(int branchNumber, int timerNumber, double amount)
+	{
+		Branch branch = branches.get(branchNumber);
+		if (branch.isActive(timerNumber))
+		{
+			branch.current[timerNumber] += amount;
+			report(branchNumber);
+		}
+	}
+	
+	/** Checks if any timer has been triggered, triggering every one that has. */
+	public boolean triggered()
+	{
+		boolean triggered = false;
+		for (int i = 0; i < branches.size(); i++)
+		{
+			if (triggered(i))
+			{
+				triggered = true;
+			}
+		}
+		return triggered;
+	}
+	
+	/** Checks if any timer in a branch has been triggered, triggering every one that has. */
+	public boolean triggered(int branchNumber)
+	{
+		Branch branch = branches.get(branchNumber);
+		boolean triggered = false;
+		for (int i = 0; i < branch.size; i++)
+		{
+			if (branch.triggered(i))
+			{
+				triggered = true;
+			}
+		}
+		report(branchNumber);
+		return triggered;
+	}
+	
+	/** Checks if a timer has been triggered. */
+	public boolean triggered(int branchNumber, int timerNumber)
+	{
+		boolean triggered = branches.get(branchNumber).triggered(timerNumber);
+		report(branchNumber);
+		return triggered;
+	}
+	
+	/** Resets a timer. */
+	public void reset(int branchNumber, int timerNumber)
+	{
+		Branch branch = branches.get(branchNumber);
+		branch.execCount[timerNumber] = 0;
+		branch.current[timerNumber] = 0.0;
+		report(branchNumber);
+	}
+	
+	/** Sets the listener told about timers coming due. Can be null. */
+	public void setListener(TimerListener d_listener)
+	{
+		listener = d_listener;
+	}
+}
\ No newline at end of file
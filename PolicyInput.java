@@ -0,0 +1,52 @@
+/**
+  * Policy input class. <br /><br />
+  *
+  * Plays a headless game with a {@link MovePolicy}, so the same bots that
+  * evaluate boards can play real games. The policy plays on a BitBoard copy
+  * of the grid, made when the first move's asked for, and every move it
+  * picks is made on the copy too so the two stay in step. Use a fresh one
+  * for every game.
+  */
+public class PolicyInput implements InputSource
+{
+	/** The bot. */
+	private MovePolicy policy;
+	/** Game mode being played. */
+	private int mode;
+	/** The policy's copy of the grid. Null until the first move. */
+	private BitBoard board;
+	
+	/** Standard constructor. */
+	public PolicyInput(MovePolicy d_policy, int d_mode)
+	{
+		policy = d_policy;
+		mode = d_mode;
+		board = null;
+	}
+	
+	/** Pick the policy's next move. */
+	public boolean nextMove(Grid grid, int move[])
+	{
+		if (board == null)
+		{
+			int size = grid.getXSize();
+			int pieces[][] = new int[size][size];
+			for (int y = 0; y < size; y++)
+			{
+				for (int x = 0; x < size; x++)
+				{
+					pieces[y][x] = grid.getPiece(x, y);
+				}
+			}
+			board = new BitBoard(pieces);
+			policy.start(mode, board);
+		}
+		
+		if (!policy.nextMove(board, move))
+		{
+			return false;
+		}
+		board.swap(move[0], move[1]);
+		return true;
+	}
+}
\ No newline at end of file
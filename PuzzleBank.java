@@ -0,0 +1,279 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.Random;
+
+/**
+  * Puzzle bank. <br /><br />
+  * A file of pre-generated, pre-rated boards, built offline (see {@link #main(String[])}) and
+  * memory-mapped at run time. Every board takes up a fixed-size record, and records are grouped
+  * by game mode and difficulty, so picking a board is a couple of reads straight out of the map.
+  * Nothing gets parsed up front and nothing but the picked board ends up on the heap.
+  */
+public class PuzzleBank
+{
+	/** The default puzzle bank file. */
+	public static final String PUZZLES_FILENAME = "puzzles.nmb";
+	
+	/** First int in the file. Used to make sure it's actually a puzzle bank. */
+	private static final int INITIAL_INT = 0x4E4D4231;
+	/** Version of the file format. */
+	private static final int VERSION = 1;
+	
+	/** Number of game modes in the bank. */
+	public static final int MODES = 4;
+	/** Number of difficulties in the bank (4x4, 6x6, 8x8 and 10x10). */
+	public static final int DIFFICULTIES = 4;
+	/** Largest board size a record can hold. Values up to 15 fit into the 4 bits a cell gets. */
+	public static final int MAX_BOARD_SIZE = 10;
+	
+	/** Size of the header (in bytes). Leaves room to spare after the index. */
+	private static final int HEADER_SIZE = 256;
+	/** Offset of the index in the header: a (first record, record count) pair of ints for every mode and difficulty. */
+	private static final int INDEX_OFFSET = 16;
+	/** Size of a single record (in bytes). */
+	private static final int RECORD_SIZE = 64;
+	/** Offset of the packed cells in a record, after the mode, size, move counts, branching and rating. */
+	private static final int CELLS_OFFSET = 12;
+	
+	// Records are in this format:
+	// BYTE mode
+	// BYTE size
+	// SHORT minimum moves
+	// SHORT maximum moves (the same as the minimum when the solution length is exact)
+	// SHORT branching
+	// FLOAT rating
+	// BYTE[50] cells, two to a byte (low 4 bits first), row by row
+	
+	/** The mapped file. */
+	private MappedByteBuffer map;
+	/** First record for every mode and difficulty, at index mode*DIFFICULTIES+difficulty tier. */
+	private int firsts[];
+	/** Number of records for every mode and difficulty, at index mode*DIFFICULTIES+difficulty tier. */
+	private int counts[];
+	
+	/** Standard constructor. Maps an existing puzzle bank file. */
+	public PuzzleBank(String filename) throws Exception
+	{
+		RandomAccessFile file = null;
+		try
+		{
+			file = new RandomAccessFile(filename, "r");
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+			{
+				throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.FILE_NOT_FOUND_ERROR);
+		}
+		finally
+		{
+			// the map stays valid after the file's closed
+			if (file != null)
+			{
+				try { file.close(); } catch (IOException X) {}
+			}
+		}
+		
+		if (map.getInt(0) != INITIAL_INT || map.getInt(4) != VERSION || map.getInt(8) != RECORD_SIZE)
+		{
+			throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+		}
+		
+		int records = (map.capacity()-HEADER_SIZE)/RECORD_SIZE;
+		firsts = new int[MODES*DIFFICULTIES];
+		counts = new int[MODES*DIFFICULTIES];
+		for (int i = 0; i < MODES*DIFFICULTIES; i++)
+		{
+			firsts[i] = map.getInt(INDEX_OFFSET + i*8);
+			counts[i] = map.getInt(INDEX_OFFSET + i*8 + 4);
+			if (firsts[i] < 0 || counts[i] < 0 || (long)firsts[i]+counts[i] > records)
+			{
+				throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+			}
+		}
+	}
+	
+	/** Default-file constructor. */
+	public PuzzleBank() throws Exception
+	{
+		this(PUZZLES_FILENAME);
+	}
+	
+	/** Index into the index for a mode and difficulty, or -1 if the bank doesn't cover them. */
+	private static int bucket(int mode, int difficulty)
+	{
+		int tier = (difficulty-4)/2;
+		if (mode < 0 || mode >= MODES || difficulty < 4 || difficulty%2 != 0 || tier >= DIFFICULTIES)
+		{
+			return -1;
+		}
+		return mode*DIFFICULTIES+tier;
+	}
+	
+	/** Gets the number of boards in the bank for a game mode and difficulty. */
+	public int count(int mode, int difficulty)
+	{
+		int bucket = bucket(mode, difficulty);
+		return (bucket < 0) ? 0 : counts[bucket];
+	}
+	
+	/** Gets a single board for a game mode and difficulty. */
+	public RatedBoard get(int mode, int difficulty, int index)
+	{
+		int bucket = bucket(mode, difficulty);
+		if (bucket < 0 || index < 0 || index >= counts[bucket])
+		{
+			throw new IndexOutOfBoundsException();
+		}
+		
+		// only absolute reads, so any number of threads can share the map
+		int offset = HEADER_SIZE + (firsts[bucket]+index)*RECORD_SIZE;
+		int size = map.get(offset+1);
+		int grid[][] = new int[size][size];
+		for (int cell = 0; cell < size*size; cell++)
+		{
+			int packed = map.get(offset + CELLS_OFFSET + cell/2);
+			grid[cell/size][cell%size] = (cell%2 == 0) ? (packed & 0xF) : ((packed >> 4) & 0xF);
+		}
+		return new RatedBoard(map.get(offset), grid, map.getShort(offset+2), map.getShort(offset+4), map.getShort(offset+6));
+	}
+	
+	/** Picks a random board for a game mode and difficulty, or returns <tt>null</tt> if the bank doesn't have any. */
+	public RatedBoard pick(int mode, int difficulty, Random generator)
+	{
+		int count = count(mode, difficulty);
+		if (count <= 0)
+		{
+			return null;
+		}
+		return get(mode, difficulty, generator.nextInt(count));
+	}
+	
+	/** Packs a single board into a record, at the buffer's current position. */
+	private static void writeRecord(ByteBuffer buffer, RatedBoard board)
+	{
+		int start = buffer.position();
+		int size = board.getSize();
+		if (size > MAX_BOARD_SIZE)
+		{
+			throw new IllegalArgumentException();
+		}
+		buffer.put((byte)board.getMode());
+		buffer.put((byte)size);
+		buffer.putShort((short)board.getMinMoves());
+		buffer.putShort((short)board.getMaxMoves());
+		buffer.putShort((short)board.getBranching());
+		buffer.putFloat((float)board.getRating());
+		
+		int grid[][] = board.getGrid();
+		for (int cell = 0; cell < size*size; cell += 2)
+		{
+			int packed = grid[cell/size][cell%size];
+			if (cell+1 < size*size)
+			{
+				packed |= grid[(cell+1)/size][(cell+1)%size] << 4;
+			}
+			buffer.put((byte)packed);
+		}
+		buffer.position(start+RECORD_SIZE);
+	}
+	
+	/**
+	  * Build a new puzzle bank, with <tt>perBucket</tt> boards for every game mode and difficulty.
+	  * Boards come from a {@link BoardGenerator}, which spreads the work over every core.
+	  */
+	public static void build(String filename, int perBucket, long seed) throws Exception
+	{
+		RandomAccessFile file = null;
+		try
+		{
+			File old = new File(filename);
+			if (old.exists() && !old.delete())
+			{
+				throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+			}
+			file = new RandomAccessFile(filename, "rw");
+			FileChannel channel = file.getChannel();
+			BoardGenerator generator = new BoardGenerator();
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(INITIAL_INT);
+			header.putInt(VERSION);
+			header.putInt(RECORD_SIZE);
+			
+			int first = 0;
+			channel.position(HEADER_SIZE);
+			for (int mode = 0; mode < MODES; mode++)
+			{
+				for (int tier = 0; tier < DIFFICULTIES; tier++)
+				{
+					RatedBoard boards[] = generator.generateBatch(mode, tier*2+4, perBucket, seed + mode*DIFFICULTIES + tier);
+					ByteBuffer records = ByteBuffer.allocate(boards.length*RECORD_SIZE);
+					int count = 0;
+					for (int i = 0; i < boards.length; i++)
+					{
+						if (boards[i] != null)
+						{
+							writeRecord(records, boards[i]);
+							count++;
+						}
+					}
+					records.flip();
+					while (records.hasRemaining())
+					{
+						channel.write(records);
+					}
+					
+					header.putInt(INDEX_OFFSET + (mode*DIFFICULTIES+tier)*8, first);
+					header.putInt(INDEX_OFFSET + (mode*DIFFICULTIES+tier)*8 + 4, count);
+					first += count;
+				}
+			}
+			
+			// write the header last, so a half-built file never passes for a good one
+			header.clear();
+			channel.write(header, 0);
+			channel.force(true);
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+		}
+		finally
+		{
+			if (file != null)
+			{
+				try { file.close(); } catch (IOException X) {}
+			}
+		}
+	}
+	
+	/** Builds a puzzle bank. Usage: PuzzleBank [filename] [boards per mode and difficulty] */
+	public static void main(String args[])
+	{
+		String filename = (args.length > 0) ? args[0] : PUZZLES_FILENAME;
+		int perBucket = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		try
+		{
+			long start = System.currentTimeMillis();
+			build(filename, perBucket, start);
+			// make sure it reads back
+			new PuzzleBank(filename);
+			System.out.println("Built "+filename+" with "+perBucket*MODES*DIFFICULTIES+" boards in "+(System.currentTimeMillis()-start)/1000.0+"s");
+		}
+		catch (Exception X)
+		{
+			System.out.println("ERROR: "+X.toString());
+		}
+	}
+}
\ No newline at end of file
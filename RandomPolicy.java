@@ -0,0 +1,56 @@
+import java.util.Random;
+
+/**
+  * Random policy class. <br /><br />
+  *
+  * Plays random legal moves, never swapping two equal pieces, for as long as
+  * the game lasts. The BitBoard counterpart to {@link BotInput}.
+  */
+public class RandomPolicy implements MovePolicy
+{
+	/** Random number generator for picking moves. */
+	private Random generator;
+	/** Buffer for the legal moves. Grown as bigger boards come along. */
+	private int moves[];
+	
+	/** Standard constructor. */
+	public RandomPolicy(Random d_generator)
+	{
+		generator = d_generator;
+		moves = new int[0];
+	}
+	
+	/** Get ready to play a new board: make sure the move buffer's big enough. */
+	public void start(int mode, BitBoard board)
+	{
+		if (moves.length < BitBoard.moveBufferSize(board.getSize()))
+		{
+			moves = new int[BitBoard.moveBufferSize(board.getSize())];
+		}
+	}
+	
+	/** Pick a random legal move. */
+	public boolean nextMove(BitBoard board, int move[])
+	{
+		int count = board.generateMoves(moves);
+		// try moves at random until we find one that actually changes something
+		for (int attempt = 0; attempt < count; attempt++)
+		{
+			int i = generator.nextInt(count);
+			int from = moves[i*2], to = moves[i*2+1];
+			if (board.get(from) != board.get(to))
+			{
+				move[0] = from;
+				move[1] = to;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Makes another random policy. */
+	public MovePolicy fork(long seed)
+	{
+		return new RandomPolicy(new Random(seed));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+/**
+  * Rated board class. <br /><br />
+  *
+  * A generated board, along with how hard it is to win. The number of moves
+  * needed is known exactly when the board could be solved within the rating
+  * budget; otherwise it's only known to lie somewhere between a proven lower
+  * bound and the shortest way to win that turned up (the scramble that made
+  * the board, or whatever a weighted search found).
+  */
+public class RatedBoard
+{
+	/** The game mode the board was rated for. */
+	private int mode;
+	/** Piece values, indexed by [y][x]. */
+	private int grid[][];
+	/** Proven minimum number of moves needed to win. Exact if it matches <tt>maxMoves</tt>. */
+	private int minMoves;
+	/** Number of moves the board is known to be winnable in. */
+	private int maxMoves;
+	/** Number of different swaps available from the starting position. */
+	private int branching;
+	
+	/** Standard constructor. */
+	public RatedBoard(int d_mode, int d_grid[][], int d_minMoves, int d_maxMoves, int d_branching)
+	{
+		mode = d_mode;
+		grid = d_grid;
+		minMoves = d_minMoves;
+		maxMoves = Math.max(d_minMoves, d_maxMoves);
+		branching = d_branching;
+	}
+	
+	/** Gets the game mode the board was rated for. */
+	public int getMode()
+	{
+		return mode;
+	}
+	
+	/** Gets the board size (in tiles per side). */
+	public int getSize()
+	{
+		return grid.length;
+	}
+	
+	/** Gets the piece values, indexed by [y][x]. Don't change them. */
+	public int[][] getGrid()
+	{
+		return grid;
+	}
+	
+	/** Gets the proven minimum number of moves needed to win. */
+	public int getMinMoves()
+	{
+		return minMoves;
+	}
+	
+	/** Gets the number of moves the board is known to be winnable in. */
+	public int getMaxMoves()
+	{
+		return maxMoves;
+	}
+	
+	/** Is the number of moves needed to win known exactly? */
+	public boolean isExact()
+	{
+		return minMoves == maxMoves;
+	}
+	
+	/** Gets the number of different swaps available from the starting position. */
+	public int getBranching()
+	{
+		return branching;
+	}
+	
+	/**
+	  * Is the board inside the band for its difficulty (see {@link BoardGenerator#inBand})? A generator
+	  * that runs out of tries settles for a board that isn't.
+	  */
+	public boolean isInBand()
+	{
+		return BoardGenerator.inBand(this, getSize());
+	}
+	
+	/**
+	  * Gets the difficulty rating: roughly, the number of bits of choice a player has to get right
+	  * to win. That's the moves needed times log2 of the number of swaps to pick from every move.
+	  */
+	public double getRating()
+	{
+		return minMoves*Math.log(Math.max(branching, 1))/Math.log(2);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+/**
+  * Ray table class. <br /><br />
+  *
+  * Lists, for every cell on a board of a given size, the cells along each of
+  * the eight directions a piece can move in, nearest cell first. Even pieces
+  * use the four orthogonal directions and odd pieces use the four diagonal
+  * ones. Tables are built once per board size and shared by every board, so
+  * the arrays handed out here must never be modified.
+  */
+public class RayTable
+{
+	/** Number of directions stored for every cell. */
+	public static final int DIRECTIONS = 8;
+	/** Number of directions a single piece can move in. */
+	public static final int DIRECTIONS_PER_PIECE = 4;
+	/** First orthogonal direction (used by even pieces). */
+	public static final int FIRST_ORTHOGONAL = 0;
+	/** First diagonal direction (used by odd pieces). */
+	public static final int FIRST_DIAGONAL = 4;
+	
+	/** x-steps for every direction: left, right, up, down, up-left, up-right, down-left, down-right. */
+	private static final int DX[] = {-1, 1, 0, 0, -1, 1, -1, 1};
+	/** y-steps for every direction: left, right, up, down, up-left, up-right, down-left, down-right. */
+	private static final int DY[] = {0, 0, -1, 1, -1, -1, 1, 1};
+	
+	/** Tables shared between every board of the same size, indexed by size. */
+	private static final RayTable TABLES[] = new RayTable[BitBoard.MAX_SIZE+1];
+	
+	/** Grabs the (shared) ray table for a board size, building it on first use. */
+	public static synchronized RayTable forSize(int size)
+	{
+		if (TABLES[size] == null)
+		{
+			TABLES[size] = new RayTable(size);
+		}
+		return TABLES[size];
+	}
+	
+	/** Board size, in tiles per side. */
+	private int size;
+	/** Every ray, stored back to back as cell indices. */
+	private int rays[];
+	/** Start of the ray for (cell, direction), at index cell*DIRECTIONS+direction. */
+	private int starts[];
+	/** End (exclusive) of the ray for (cell, direction), at index cell*DIRECTIONS+direction. */
+	private int ends[];
+	
+	/** Builds every ray for a board size. */
+	private RayTable(int d_size)
+	{
+		size = d_size;
+		starts = new int[size*size*DIRECTIONS];
+		ends = new int[size*size*DIRECTIONS];
+		
+		// count up the total length first, so every ray fits into one array
+		int total = 0;
+		for (int cell = 0; cell < size*size; cell++)
+		{
+			for (int direction = 0; direction < DIRECTIONS; direction++)
+			{
+				total += rayLength(cell%size, cell/size, direction);
+			}
+		}
+		
+		rays = new int[total];
+		int position = 0;
+		for (int cell = 0; cell < size*size; cell++)
+		{
+			for (int direction = 0; direction < DIRECTIONS; direction++)
+			{
+				starts[cell*DIRECTIONS+direction] = position;
+				int x = cell%size + DX[direction];
+				int y = cell/size + DY[direction];
+				while (x >= 0 && y >= 0 && x < size && y < size)
+				{
+					rays[position++] = y*size+x;
+					x += DX[direction];
+					y += DY[direction];
+				}
+				ends[cell*DIRECTIONS+direction] = position;
+			}
+		}
+	}
+	
+	/** Number of cells between (x, y) and the edge of the board in a direction. */
+	private int rayLength(int x, int y, int direction)
+	{
+		int length = 0;
+		x += DX[direction];
+		y += DY[direction];
+		while (x >= 0 && y >= 0 && x < size && y < size)
+		{
+			length++;
+			x += DX[direction];
+			y += DY[direction];
+		}
+		return length;
+	}
+	
+	/** Gets the board size this table was built for. */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/** Gets the shared array of every ray. Index it with {@link #getStarts()} and {@link #getEnds()}. */
+	public int[] getRays()
+	{
+		return rays;
+	}
+	
+	/** Gets the shared array of ray starts, indexed by cell*DIRECTIONS+direction. */
+	public int[] getStarts()
+	{
+		return starts;
+	}
+	
+	/** Gets the shared array of ray ends (exclusive), indexed by cell*DIRECTIONS+direction. */
+	public int[] getEnds()
+	{
+		return ends;
+	}
+	
+	/** Gets the first direction a piece of the given value moves in. */
+	public static int firstDirection(int value)
+	{
+		return (value % 2 == 0) ? FIRST_ORTHOGONAL : FIRST_DIAGONAL;
+	}
+}
\ No newline at end of file
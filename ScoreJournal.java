@@ -0,0 +1,758 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+  * Score journal. <br /><br />
+  * The file high scores are kept in. Nothing in it is ever rewritten in place: new scores are
+  * appended to the end in fixed-size records, a batch at a time, and only once a batch is safely
+  * on disk does the header get moved along to take it in. Every so often the journal is compacted
+  * into a snapshot of just the scores still worth keeping, which is written out to a file of its
+  * own and then renamed over the old one. Either way, a crash part way through leaves the last
+  * good version of the file, less at most the batch that was being written. <br /><br />
+  * Every batch is written as a block, sealed with a keyed MAC (HMAC-SHA256) over its records and
+  * where it sits in the file, so scores can't be edited, forged or moved around without the key.
+  * The key is made at random when a journal's started, and kept in a key file next to it (never in
+  * the journal itself), so no two installations share one unless they share the file. The key file
+  * has to be kept where players can't read it - anyone who can read it can seal scores of their own -
+  * and kept safe along with the journal, since without it none of the scores can be checked. A journal
+  * with blocks in it never gets a new key: if the key file's gone, or no block checks out with the key,
+  * opening it fails rather than starting over with nothing (and compacting every old score away).
+  * Loading maps the file and goes through it block by block in one pass, checking each block's MAC
+  * and reading its records straight out of the map. Names are copied out as plain chars, so nothing
+  * read in holds on to the map once it's been gone through (a file that's still mapped can't be renamed
+  * over on some systems), and only turned into strings if something actually asks for them. <br /><br />
+  * Any number of processes can share a journal. A batch is only written while holding a lock on
+  * the stretch of file it's going into, and only if the end of the journal is still where this
+  * journal last caught up to - otherwise it catches up on whatever got added and tries again - so
+  * two batches never land on top of each other. Compacting locks everything from the end of the
+  * journal on until the snapshot's in place, then marks the old file retired, so anyone still
+  * holding it knows to open the new one. Reading never takes a lock, since nothing before the end
+  * of the journal ever changes. Locks belong to the whole process, so a process should only have
+  * the one journal open on a file.
+  */
+public class ScoreJournal
+{
+	/** Replays the scores in a journal, oldest first. */
+	public interface Replay
+	{
+		/**
+		  * Called for every score in the journal. Scores from the snapshot come first, in the order they
+		  * were snapshotted in; the rest were appended since, and come in the order they were added in.
+		  * The name is a copy of the one in the file, padded out to its full length with 0s.
+		  */
+		public void replayed(int mode, int difficulty, CharSequence name, int score);
+		
+		/**
+		  * Called when the journal has to be replayed again from the start, because it was compacted more
+		  * than once since it was last caught up on. Every score replayed so far should be forgotten.
+		  */
+		public void reset();
+	}
+	
+	/** First int in the file. Used to make sure it's actually a score journal. */
+	private static final int INITIAL_INT = 0x4E4D5331;
+	/** Version of the file format. */
+	private static final int VERSION = 2;
+	/** First int in an old-style scores file, which was rewritten whole on every save. */
+	public static final int LEGACY_INITIAL_INT = 2437;
+	
+	/** System property the MAC key can be given in, instead of keeping it in the key file. */
+	public static final String KEY_PROPERTY = "numerate.scoreKey";
+	/** Added on to the filename for the key file. */
+	public static final String KEY_SUFFIX = ".key";
+	/** Size of a key made for the key file (in bytes). */
+	private static final int KEY_SIZE = 32;
+	/** MAC algorithm blocks are sealed with. */
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	
+	/** Size of the header (in bytes). */
+	private static final int HEADER_SIZE = 32;
+	/** Offset of the end of the snapshot in the header. */
+	private static final int SNAPSHOT_END_OFFSET = 8;
+	/** Offset of the end of the journal in the header. */
+	private static final int END_OFFSET = 16;
+	/** Offset of the retired flag in the header. */
+	private static final int RETIRED_OFFSET = 24;
+	/** Offset of the generation in the header. */
+	private static final int GENERATION_OFFSET = 28;
+	/** Size of a block's header (in bytes). */
+	private static final int BLOCK_HEADER_SIZE = 8;
+	/** Size of the MAC on the end of a block (in bytes). */
+	private static final int MAC_SIZE = 32;
+	/** Size of a single record (in bytes). */
+	public static final int RECORD_SIZE = 40;
+	/** Offset of the name in a record. */
+	private static final int NAME_OFFSET = 8;
+	/** Most records in a block: the number held back and written together. */
+	private static final int BATCH_RECORDS = 32;
+	/** Added on to the filename for a snapshot while it's being written. */
+	private static final String SNAPSHOT_SUFFIX = ".new";
+	
+	// The header is in this format:
+	// INT initial int
+	// INT version
+	// LONG end of the snapshot: blocks before it are the snapshot, blocks after it were appended since
+	// LONG end of the journal: anything after it is a batch that never finished being written
+	// INT retired: 1 once a snapshot's been renamed over this file, and nothing more will be added to it
+	// INT generation: how many times the journal's been compacted
+	
+	// Blocks are in this format:
+	// INT number of records
+	// INT spare
+	// records
+	// BYTE[32] MAC of the file's generation (INT), the block's offset in the file (LONG), then the block up to here
+	
+	// Records are in this format:
+	// BYTE difficulty
+	// BYTE game mode
+	// SHORT spare
+	// INT score
+	// CHAR[16] name, padded out with 0s
+	
+	/** Name of the journal file. */
+	private String filename;
+	/** The journal file. */
+	private RandomAccessFile file;
+	/** Channel everything's read and written through. */
+	private FileChannel channel;
+	/** Where scores are replayed to as they're read in. */
+	private Replay replay;
+	/** The old journal file, while a snapshot is being written to replace it. */
+	private RandomAccessFile replaced;
+	/** Lock on the end of the old journal file, while a snapshot is being written to replace it. */
+	private FileLock replacedLock;
+	/** Is the old journal file being replaced an old-style scores file? If so, there's no header to mark it retired in. */
+	private boolean replacedLegacy;
+	/** Is this an old-style scores file? It has to be read by hand and compacted before it's any use. */
+	private boolean legacy;
+	/** Number of times the journal file's been compacted. */
+	private int generation;
+	/** End of the snapshot in the file. */
+	private long snapshotEnd;
+	/** End of the journal, as far as it's been read or written. The next batch is written here. */
+	private long end;
+	/** Number of scores in the snapshot. */
+	private int snapshotCount;
+	/** Number of scores read or written since the snapshot. */
+	private int loggedCount;
+	/** Block waiting to be written: room for the block header, the records so far, and the MAC once it's sealed. */
+	private ByteBuffer pending;
+	/** Buffer the header's read and written through. */
+	private ByteBuffer header;
+	/** MAC blocks are sealed and checked with. */
+	private Mac mac;
+	/** Buffer the generation and offset go through on their way into the MAC. */
+	private ByteBuffer macPrefix;
+	/** MAC read in from a block, to check against. */
+	private byte sealed[];
+	/** Number of blocks read in from the journal file whose MAC checked out. */
+	private int checkedBlocks;
+	/** Number of blocks read in from the journal file whose MAC didn't check out. */
+	private int rejectedBlocks;
+	
+	/** Standard constructor. Opens a journal file, starting a new one if it's empty or doesn't exist yet. Nothing's read in until it's refreshed. */
+	public ScoreJournal(String d_filename, Replay d_replay) throws Exception
+	{
+		filename = d_filename;
+		replay = d_replay;
+		pending = ByteBuffer.allocate(BLOCK_HEADER_SIZE+BATCH_RECORDS*RECORD_SIZE+MAC_SIZE);
+		clearPending();
+		header = ByteBuffer.allocate(HEADER_SIZE);
+		macPrefix = ByteBuffer.allocate(NumerateGame.INT_FIELD_SIZE+NumerateGame.LONG_FIELD_SIZE);
+		sealed = new byte[MAC_SIZE];
+		open();
+		try
+		{
+			mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(new SecretKeySpec(readKey(!hasBlocks()), MAC_ALGORITHM));
+		}
+		catch (GeneralSecurityException X)
+		{
+			throw new Exception(TextBank.SCORE_KEY_ERROR);
+		}
+	}
+	
+	/** Has anything ever been written to the journal file? Old-style scores files have no blocks, so they never have. */
+	private boolean hasBlocks() throws Exception
+	{
+		try
+		{
+			return !legacy && readHeaderField(channel, END_OFFSET, NumerateGame.LONG_FIELD_SIZE).getLong(0) > HEADER_SIZE;
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNREADABLE_FILE_ERROR);
+		}
+	}
+	
+	/**
+	  * Gets the MAC key: from the system property if it's set, otherwise from the key file. The key
+	  * file's locked while it's looked at, so processes starting up together all end up with the same key.
+	  * @param create whether a new random key can be made if the key file's empty or doesn't exist yet.
+	  * Only a journal with nothing in it yet can have one made; for any other, that's an error.
+	  */
+	private byte[] readKey(boolean create) throws Exception
+	{
+		String property = System.getProperty(KEY_PROPERTY);
+		if (property != null)
+		{
+			if (property.length() == 0)
+			{
+				throw new Exception(TextBank.SCORE_KEY_ERROR);
+			}
+			return property.getBytes("UTF-8");
+		}
+		
+		if (!create && !Files.exists(Paths.get(filename+KEY_SUFFIX)))
+		{
+			throw new Exception(TextBank.SCORE_KEY_ERROR);
+		}
+		RandomAccessFile keyFile = null;
+		try
+		{
+			keyFile = new RandomAccessFile(filename+KEY_SUFFIX, "rw");
+			FileLock lock = keyFile.getChannel().lock();
+			try
+			{
+				byte key[] = new byte[KEY_SIZE];
+				if (keyFile.length() == 0)
+				{
+					if (!create)
+					{
+						throw new Exception(TextBank.SCORE_KEY_ERROR);
+					}
+					new SecureRandom().nextBytes(key);
+					keyFile.write(key);
+					keyFile.getChannel().force(true);
+				}
+				else if (keyFile.length() == KEY_SIZE)
+				{
+					keyFile.readFully(key);
+				}
+				else
+				{
+					throw new Exception(TextBank.SCORE_KEY_ERROR);
+				}
+				return key;
+			}
+			finally
+			{
+				lock.release();
+			}
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.SCORE_KEY_ERROR);
+		}
+		finally
+		{
+			if (keyFile != null)
+			{
+				keyFile.close();
+			}
+		}
+	}
+	
+	/** Opens the journal file by name, and reads its header in. */
+	private void open() throws Exception
+	{
+		try
+		{
+			file = new RandomAccessFile(filename, "rw");
+		}
+		catch (FileNotFoundException X)
+		{
+			throw new Exception(TextBank.FILE_NOT_FOUND_ERROR);
+		}
+		channel = file.getChannel();
+		checkedBlocks = rejectedBlocks = 0;
+		
+		try
+		{
+			// whoever gets the header first gets to start the file off
+			FileLock lock = channel.lock(0, HEADER_SIZE, false);
+			try
+			{
+				if (channel.size() == 0)
+				{
+					generation = 0;
+					snapshotEnd = end = HEADER_SIZE;
+					writeHeader();
+					channel.force(true);
+				}
+				else if (channel.size() >= NumerateGame.INT_FIELD_SIZE && file.readInt() == LEGACY_INITIAL_INT)
+				{
+					legacy = true;
+					generation = 0;
+					snapshotEnd = end = HEADER_SIZE;
+				}
+				else
+				{
+					readHeader();
+				}
+			}
+			finally
+			{
+				lock.release();
+			}
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNREADABLE_FILE_ERROR);
+		}
+	}
+	
+	/** Reads the header in, and makes sure it holds together. Nothing in the file counts as read yet. */
+	private void readHeader() throws Exception
+	{
+		header.clear();
+		if (channel.size() < HEADER_SIZE || readFully(header, 0) < HEADER_SIZE)
+		{
+			throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+		}
+		if (header.getInt(0) != INITIAL_INT || header.getInt(NumerateGame.INT_FIELD_SIZE) != VERSION)
+		{
+			throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+		}
+		snapshotEnd = header.getLong(SNAPSHOT_END_OFFSET);
+		long committed = header.getLong(END_OFFSET);
+		if (snapshotEnd < HEADER_SIZE || committed < snapshotEnd)
+		{
+			throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+		}
+		generation = header.getInt(GENERATION_OFFSET);
+		end = HEADER_SIZE;
+	}
+	
+	/** Writes the whole header out, for a brand new file. */
+	private void writeHeader() throws IOException
+	{
+		header.clear();
+		header.putInt(INITIAL_INT);
+		header.putInt(VERSION);
+		header.putLong(snapshotEnd);
+		header.putLong(end);
+		header.putInt(0);
+		header.putInt(generation);
+		header.flip();
+		writeFully(header, 0);
+	}
+	
+	/** Reads a field of the header as it is on disk right now. Returns the header buffer, with the field at the start of it. */
+	private ByteBuffer readHeaderField(FileChannel from, int offset, int size) throws IOException
+	{
+		header.clear();
+		header.limit(size);
+		while (header.hasRemaining())
+		{
+			if (from.read(header, offset+header.position()) < 0)
+			{
+				throw new IOException();
+			}
+		}
+		return header;
+	}
+	
+	/** Writes the header buffer, up to its limit, into the header at an offset. */
+	private void writeHeaderField(FileChannel to, int offset) throws IOException
+	{
+		header.flip();
+		while (header.hasRemaining())
+		{
+			to.write(header, offset+header.position());
+		}
+	}
+	
+	/** Reads into a buffer from a position in the file, until either the buffer's full or the file runs out. Returns the number of bytes read. */
+	private int readFully(ByteBuffer buffer, long position) throws IOException
+	{
+		int total = 0;
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position+total);
+			if (read < 0)
+			{
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+	
+	/** Writes a whole buffer out at a position in the file. */
+	private void writeFully(ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+	
+	/** Has anyone added to (or retired) the journal file since it was last caught up on? */
+	private boolean moved() throws IOException
+	{
+		return readHeaderField(channel, RETIRED_OFFSET, NumerateGame.INT_FIELD_SIZE).getInt(0) != 0 || readHeaderField(channel, END_OFFSET, NumerateGame.LONG_FIELD_SIZE).getLong(0) != end;
+	}
+	
+	/** Works out the MAC of a block: the file's generation and the block's offset in the file, then the block itself, from the buffer's position to its limit. */
+	private byte[] seal(ByteBuffer block, long offset)
+	{
+		macPrefix.clear();
+		macPrefix.putInt(generation);
+		macPrefix.putLong(offset);
+		macPrefix.flip();
+		mac.update(macPrefix);
+		mac.update(block);
+		return mac.doFinal();
+	}
+	
+	/** Is this an old-style scores file? */
+	public boolean isLegacy()
+	{
+		return legacy;
+	}
+	
+	/** Gets the journal file itself. Only old-style scores files need reading from it directly. */
+	public RandomAccessFile getFile()
+	{
+		return file;
+	}
+	
+	/** Gets the number of scores in the last snapshot. */
+	public int getSnapshotCount()
+	{
+		return snapshotCount;
+	}
+	
+	/** Gets the number of scores added since the last snapshot, written out or not. */
+	public int getLoggedCount()
+	{
+		return loggedCount + (pending.position()-BLOCK_HEADER_SIZE)/RECORD_SIZE;
+	}
+	
+	/**
+	  * Catch up on the journal: replay every score added to it since it was last caught up on, by this
+	  * process or any other. The first time round, that's every score in it. If the file's been retired,
+	  * the one that replaced it is opened instead. When that's the snapshot of the file just caught up on,
+	  * every score in the snapshot's been replayed already, so only what's been added since is; otherwise
+	  * it's replayed from scratch. Blocks whose MAC doesn't check out are skipped - but if none of them
+	  * do, it's the wrong key rather than a few tampered-with blocks, so that's an error.
+	  */
+	public void refresh() throws Exception
+	{
+		if (legacy)
+		{
+			return;
+		}
+		
+		boolean reset = false;
+		try
+		{
+			while (true)
+			{
+				// retired comes first: once it's set, the end never moves again
+				boolean retired = readHeaderField(channel, RETIRED_OFFSET, NumerateGame.INT_FIELD_SIZE).getInt(0) != 0;
+				long committed = readHeaderField(channel, END_OFFSET, NumerateGame.LONG_FIELD_SIZE).getLong(0);
+				if (committed > end)
+				{
+					if (committed-end > Integer.MAX_VALUE || committed > channel.size())
+					{
+						throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+					}
+					ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, end, committed-end);
+					replayBlocks(map, end);
+					end = committed;
+				}
+				if (!retired)
+				{
+					break;
+				}
+				
+				int replacedGeneration = generation;
+				file.close();
+				open();
+				if (generation == replacedGeneration+1)
+				{
+					// the snapshot's everything that was in the old file
+					end = snapshotEnd;
+					snapshotCount += loggedCount;
+					loggedCount = 0;
+				}
+				else
+				{
+					replay.reset();
+					reset = true;
+					snapshotCount = loggedCount = 0;
+				}
+			}
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNREADABLE_FILE_ERROR);
+		}
+		
+		if (rejectedBlocks > 0 && checkedBlocks == 0)
+		{
+			throw new Exception(TextBank.SCORE_KEY_ERROR);
+		}
+		
+		if (reset && pending.position() > BLOCK_HEADER_SIZE)
+		{
+			// scores still waiting to be written were forgotten along with the rest; they're copied, since the batch gets reused
+			ByteBuffer waiting = ByteBuffer.allocate(pending.position()-BLOCK_HEADER_SIZE);
+			waiting.put(pending.array(), BLOCK_HEADER_SIZE, waiting.capacity());
+			waiting.flip();
+			replayRecords(waiting, 0, waiting.capacity()/RECORD_SIZE);
+		}
+	}
+	
+	/**
+	  * Replay every block in a buffer, from the start of it to the limit, checking each one's MAC on
+	  * the way through. A block whose MAC is wrong is skipped; one that doesn't even fit means nothing
+	  * after it can be trusted to line up, so that's as far as it goes.
+	  */
+	private void replayBlocks(ByteBuffer blocks, long start)
+	{
+		int offset = 0;
+		while (offset+BLOCK_HEADER_SIZE+MAC_SIZE <= blocks.limit())
+		{
+			int count = blocks.getInt(offset);
+			int length = BLOCK_HEADER_SIZE+count*RECORD_SIZE;
+			if (count < 1 || count > BATCH_RECORDS || offset+length+MAC_SIZE > blocks.limit())
+			{
+				break;
+			}
+			
+			ByteBuffer block = blocks.duplicate();
+			block.limit(offset+length);
+			block.position(offset);
+			byte expected[] = seal(block, start+offset);
+			block.limit(offset+length+MAC_SIZE);
+			block.get(sealed);
+			if (MessageDigest.isEqual(expected, sealed))
+			{
+				replayRecords(blocks, offset+BLOCK_HEADER_SIZE, count);
+				if (start+offset < snapshotEnd)
+				{
+					snapshotCount += count;
+				}
+				else
+				{
+					loggedCount += count;
+				}
+				checkedBlocks++;
+			}
+			else
+			{
+				rejectedBlocks++;
+			}
+			offset += length+MAC_SIZE;
+		}
+	}
+	
+	/** Replay a run of records in a buffer, starting from an offset. Names are copied out, so nothing replayed refers to the buffer. */
+	private void replayRecords(ByteBuffer records, int from, int count)
+	{
+		// records and names are all at even offsets, so one char view covers every name
+		CharBuffer names = records.asCharBuffer();
+		for (int offset = from; offset < from+count*RECORD_SIZE; offset += RECORD_SIZE)
+		{
+			char name[] = new char[ScoresList.MAX_NAME_LENGTH+1];
+			names.position((offset+NAME_OFFSET)/NumerateGame.CHAR_FIELD_SIZE);
+			names.get(name);
+			replay.replayed(records.get(offset+1), records.get(offset), CharBuffer.wrap(name), records.getInt(offset+NumerateGame.INT_FIELD_SIZE));
+		}
+	}
+	
+	/** Add a score to the journal. It's held back with the rest of the batch until the next flush. */
+	public void append(int mode, int difficulty, String name, int score) throws Exception
+	{
+		if (!pending.hasRemaining())
+		{
+			flush();
+		}
+		int offset = pending.position();
+		pending.put((byte)difficulty);
+		pending.put((byte)mode);
+		pending.putShort((short)0);
+		pending.putInt(score);
+		for (int i = 0; i < ScoresList.MAX_NAME_LENGTH+1; i++)
+		{
+			pending.putChar((i < name.length()) ? name.charAt(i) : 0);
+		}
+		pending.position(offset+RECORD_SIZE);
+	}
+	
+	/** Empty out the block waiting to be written, leaving room for its header. */
+	private void clearPending()
+	{
+		pending.clear();
+		pending.limit(BLOCK_HEADER_SIZE+BATCH_RECORDS*RECORD_SIZE);
+		pending.position(BLOCK_HEADER_SIZE);
+	}
+	
+	/**
+	  * Write out every score waiting to be written, as one block on the end of the journal. The block only
+	  * goes in while holding a lock on the stretch of file it's going into, and only if nobody's added to
+	  * the journal since it was caught up on; if somebody has, it catches up and tries again further along,
+	  * sealing the block again for where it ends up. The block's forced out to disk before the header takes
+	  * it in, so a crash in between just loses the batch.
+	  */
+	public void flush() throws Exception
+	{
+		int count = (pending.position()-BLOCK_HEADER_SIZE)/RECORD_SIZE;
+		if (count == 0)
+		{
+			return;
+		}
+		if (legacy)
+		{
+			// it has to be read in and compacted first
+			throw new Exception(TextBank.CORRUPT_FILE_ERROR);
+		}
+		pending.putInt(0, count);
+		pending.putInt(NumerateGame.INT_FIELD_SIZE, 0);
+		int length = BLOCK_HEADER_SIZE+count*RECORD_SIZE;
+		try
+		{
+			while (true)
+			{
+				refresh();
+				FileLock lock = channel.lock(end, length+MAC_SIZE, false);
+				try
+				{
+					if (moved())
+					{
+						continue;
+					}
+					ByteBuffer block = pending.duplicate();
+					block.limit(length);
+					block.position(0);
+					byte seal[] = seal(block, end);
+					block.limit(length+MAC_SIZE);
+					block.put(seal);
+					block.flip();
+					writeFully(block, end);
+					channel.force(false);
+					end += length+MAC_SIZE;
+					loggedCount += count;
+					header.clear();
+					header.putLong(end);
+					writeHeaderField(channel, END_OFFSET);
+					channel.force(false);
+					break;
+				}
+				finally
+				{
+					lock.release();
+				}
+			}
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+		}
+		clearPending();
+	}
+	
+	/**
+	  * Start compacting the journal. Everything waiting to be written goes out to the old file first.
+	  * Then the end of the old file is locked, so nobody can add to it until the snapshot's in place, and
+	  * once this journal's caught up on it, every score appended goes into the snapshot until it's ended.
+	  */
+	public void beginSnapshot() throws Exception
+	{
+		flush();
+		try
+		{
+			FileLock lock = null;
+			while (lock == null)
+			{
+				refresh();
+				lock = channel.lock(end, Long.MAX_VALUE-end, false);
+				if (!legacy && moved())
+				{
+					lock.release();
+					lock = null;
+				}
+			}
+			
+			RandomAccessFile snapshot = new RandomAccessFile(filename+SNAPSHOT_SUFFIX, "rw");
+			snapshot.setLength(0);
+			replaced = file;
+			replacedLock = lock;
+			replacedLegacy = legacy;
+			file = snapshot;
+			channel = file.getChannel();
+			legacy = false;
+			generation++;
+			snapshotEnd = end = HEADER_SIZE;
+			snapshotCount = loggedCount = 0;
+			writeHeader();
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+		}
+	}
+	
+	/** Finish compacting the journal: write out the snapshot, put it in place of the old file, and mark the old file retired. */
+	public void endSnapshot() throws Exception
+	{
+		flush();
+		try
+		{
+			snapshotEnd = end;
+			snapshotCount = loggedCount;
+			loggedCount = 0;
+			writeHeader();
+			channel.force(true);
+			Files.move(Paths.get(filename+SNAPSHOT_SUFFIX), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (!replacedLegacy)
+			{
+				header.clear();
+				header.putInt(1);
+				writeHeaderField(replaced.getChannel(), RETIRED_OFFSET);
+				replaced.getChannel().force(false);
+			}
+			replacedLock.release();
+			replaced.close();
+			replacedLock = null;
+			replaced = null;
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+		}
+	}
+	
+	/** Write out everything waiting to be written, and close the file. */
+	public void close() throws Exception
+	{
+		flush();
+		try
+		{
+			file.close();
+		}
+		catch (IOException X)
+		{
+			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+		}
+	}
+}
\ No newline at end of file
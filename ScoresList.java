@@ -1,40 +1,54 @@
 import java.io.RandomAccessFile;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ArrayList;
 
 /**
   * High scores list. <br /><br />
-  * Keeps track of a list of all high scores. Updates and manages them dynamically in a specified binary file.
+  * Keeps track of a list of all high scores. Updates and manages them dynamically in a specified binary file,
+  * kept as a {@link ScoreJournal}: new scores are appended to it, and it's compacted down every so often.
+  * There's a {@link Leaderboard} for every game mode and difficulty, and every score is kept.
   */
 public class ScoresList
 {
 	/** The class representing a single score in the scores list. */
 	public class Score
 	{
-		/** The name associated with the score. */
+		/** The name associated with the score. Null until a name read in from the file gets decoded. */
 		private String name;
 		
+		/** The name as it was read in from the file, padded out with 0s. Only decoded when it's asked for. */
+		private CharSequence encodedName;
+		
 		/** The score associated with the score. */
 		private int score;
 		
-		/** The code associated with the score. Used for verifying codes in memory. */
-		private long codeA;
-		
 		/** Standard constructor. */
 		public Score(String d_name, int d_score)
 		{
 			name = d_name;
 			score = d_score;
-			codeA = codeA(d_score);
 		}
 		
-		/** Accessor method for name */
+		/** Constructor for a score read in from the file, with its name still encoded. */
+		public Score(CharSequence d_encodedName, int d_score)
+		{
+			encodedName = d_encodedName;
+			score = d_score;
+		}
+		
+		/** Accessor method for name. Decodes it first if it hasn't been already. */
 		public String getName()
 		{
+			if (name == null)
+			{
+				int length = 0;
+				while (length < encodedName.length() && encodedName.charAt(length) != 0)
+				{
+					length++;
+				}
+				name = encodedName.subSequence(0, length).toString();
+				encodedName = null;
+			}
 			return name;
 		}
 		
@@ -43,15 +57,9 @@ public class ScoresList
 		{
 			return score;
 		}
-		
-		/** Verify the save game score by checking the code */
-		public boolean verify()
-		{
-			return codeA(score) == codeA;
-		}
 	}
 	
-	/** Code convertor A for scores */
+	/** Code convertor A for scores. Only old-style scores files have codes, from before blocks of scores were sealed with a MAC. */
 	public static long codeA(int score)
 	{
 		long code = score*score;
@@ -62,7 +70,7 @@ public class ScoresList
 	 	return code;
 	}
 	
-	/** Code convertor B for scores */
+	/** Code convertor B for scores. Only old-style scores files have codes, from before blocks of scores were sealed with a MAC. */
 	public static long codeB(int score)
 	{
 		long code = (score + 3)*(score + 3)*(score + 3);
@@ -74,60 +82,64 @@ public class ScoresList
 		return code;
 	}
 	
-	/** Code convertor for a string - used for names */
-	public static long code(String name)
-	{
-		long code = 298483231;
-		for (int i = 0; i < name.length(); i++)
-		{
-			code += name.charAt(i)*name.charAt(i)*name.charAt(i)-name.charAt(i);
-			if (i > 0)
-			{
-				code -= (name.charAt(i-1)%23)*2;
-			}
-		}
-		return code;
-	}
-	
 	/** The default filename for scores to be stored in. */
 	public static final String SCORES_FILENAME = "scores.nmd";
 	
-	/** The number of high scores listed for each difficulty */
-	public static final int SCORES_PER_LIST = 5;
+	/** The number of game modes with leaderboards. */
+	public static final int MODES = TextBank.MODES.length;
 	
-	/** The INT value expected at the beginning of the scores file. */
-	private static final int INITIAL_INT = 2437;
-	/** The LONG value expected after the INT value. */
-	private static final long INITIAL_LONG = 393249234;
+	/** The number of difficulties with leaderboards for every game mode. */
+	public static final int DIFFICULTIES = TextBank.DIFFICULTIES_SHORT.length;
+	
+	/** The LONG value expected after the INT value in an old-style scores file. */
+	private static final long LEGACY_INITIAL_LONG = 393249234;
+	
+	/**
+	  * The least number of scores added since the last snapshot it takes for a save to compact the journal.
+	  * Past this, it takes as many as are in the snapshot, since compacting means writing every score out again.
+	  */
+	public static final int COMPACT_COUNT = 64;
 	
 	/** The max length of a string in the scores list */
 	public static final int MAX_NAME_LENGTH = 15;
 	
-	/** The binary file scores are stored in. */
-	private RandomAccessFile file;
+	/** The journal scores are stored in. */
+	private ScoreJournal journal;
 	
-	/** Array of scores - one linked list for every difficulty */
-	private ArrayList<LinkedList<Score>> scores;
+	/** Leaderboards, one for every game mode and difficulty, at index mode*DIFFICULTIES+difficulty */
+	private Leaderboard leaderboards[];
 	
 	/** Standard constructor. */
 	public ScoresList(String filename) throws Exception
 	{
-		try
+		clear();
+		journal = new ScoreJournal(filename, new ScoreJournal.Replay()
 		{
-			file = new RandomAccessFile(filename, "rw");
-		}
-		catch (FileNotFoundException X)
-		{
-			throw new Exception (TextBank.FILE_NOT_FOUND_ERROR);
-		}
-		
-		scores = new ArrayList<LinkedList<Score>>(TextBank.DIFFICULTIES_SHORT.length);
-		for (int i = 0; i < TextBank.DIFFICULTIES_SHORT.length; i++)
+			public void replayed(int mode, int difficulty, CharSequence name, int score)
+			{
+				Leaderboard leaderboard = getLeaderboard(mode, difficulty);
+				if (leaderboard != null)
+				{
+					// snapshots are in placement order, and ties keep the order they're added in, so every score ends up back where it was
+					leaderboard.add(new Score(name, score));
+				}
+			}
+			
+			public void reset()
+			{
+				clear();
+			}
+		});
+	}
+	
+	/** Empty out every leaderboard. */
+	private void clear()
+	{
+		leaderboards = new Leaderboard[MODES*DIFFICULTIES];
+		for (int i = 0; i < leaderboards.length; i++)
 		{
-			scores.add(new LinkedList<Score>());
+			leaderboards[i] = new Leaderboard();
 		}
-		
-		scores.get(0).add(new Score("Jesus",1000000));
 	}
 	
 	/** Constructor without a filename - uses the default filename. */
@@ -136,52 +148,63 @@ public class ScoresList
 		this(SCORES_FILENAME);
 	}
 	
-	/** See if a new score will fit in the scores list. If true, returns the placement. If false, returns 0. */
-	public int scoreFits(int difficulty, int score)
+	/** Gets the leaderboard for a game mode and difficulty (0 for the smallest board size, on up), or null if there isn't one. */
+	public Leaderboard getLeaderboard(int mode, int difficulty)
 	{
-		LinkedList<Score> list = scores.get(difficulty);
-		Iterator it = list.iterator();
-		int i = 1;
-		while (it.hasNext() && i < SCORES_PER_LIST)
-		{
-			Score currentScore = (Score)it.next();
-			if (currentScore.getScore() < score)
-			{
-				return i;
-			}
-			i++;
-		}
-		
-		if (i < SCORES_PER_LIST)
+		if (mode < 0 || mode >= MODES || difficulty < 0 || difficulty >= DIFFICULTIES)
 		{
-			return i;
+			return null;
 		}
-		
-		return 0;
+		return leaderboards[mode*DIFFICULTIES+difficulty];
 	}
 	
-	/** Place a new score on the scores list. */
-	public void addScore(String name, int difficulty, int score, int placement)
+	/** Gets the placement a new score would get on the leaderboard for a game mode and difficulty, or 0 if there isn't one. */
+	public int rankOf(int mode, int difficulty, int score)
 	{
-		LinkedList<Score> list = scores.get(difficulty);
-		Score newScore = new Score(name, score);
-		if (placement > 0)
-		{
-			list.add(placement-1,newScore);
-		}
-		else
+		Leaderboard leaderboard = getLeaderboard(mode, difficulty);
+		return (leaderboard != null) ? leaderboard.rankOf(score) : 0;
+	}
+	
+	/** Gets the top scores on the leaderboard for a game mode and difficulty, highest first. */
+	public Score[] top(int mode, int difficulty, int count)
+	{
+		Leaderboard leaderboard = getLeaderboard(mode, difficulty);
+		return (leaderboard != null) ? leaderboard.top(count) : new Score[0];
+	}
+	
+	/**
+	  * Place a new score on the leaderboard for a game mode and difficulty, and add it to the journal.
+	  * It's written out on the next save. Returns the placement it got, or 0 if there's no leaderboard for it.
+	  */
+	public int addScore(String name, int mode, int difficulty, int score) throws Exception
+	{
+		if (getLeaderboard(mode, difficulty) == null)
 		{
-			// placement either 0 or negative, so tack it on to the end of the list
-			list.add(newScore);
+			return 0;
 		}
-		if (list.size() > SCORES_PER_LIST)
+		journal.append(mode, difficulty, name, score);
+		// appending can catch up on the journal, which can start every leaderboard over, so only look it up now
+		return getLeaderboard(mode, difficulty).add(new Score(name, score));
+	}
+	
+	/**
+	  * Read the file: the last snapshot, then every score added since. After that, reading it again
+	  * catches up on any scores other processes have added since.
+	  */
+	public void read() throws Exception
+	{
+		if (journal.isLegacy())
 		{
-			// we have one too many items on the list... so remove dat shit
-			list.remove(SCORES_PER_LIST);
+			readLegacy(journal.getFile());
+			// get it into the new format right away
+			compact();
+			return;
 		}
+		
+		journal.refresh();
 	}
 	
-	// Files with scores are in this format:
+	// Old-style files with scores are in this format:
 	// initial int + initial long, then scores
 	// boolean TRUE = new score for this difficulty
 	// boolean FALSE = switch difficulty up
@@ -192,16 +215,17 @@ public class ScoresList
 	// LONG code B
 	// INT score
 	
-	/** Read the file. */
-	public void read() throws Exception
+	/** Read an old-style scores file, which was rewritten whole on every save. */
+	private void readLegacy(RandomAccessFile file) throws Exception
 	{
 		if (file != null)
 		{
 			try
 			{
+				file.seek(0);
 				if (file.length() >= NumerateGame.LONG_FIELD_SIZE + NumerateGame.INT_FIELD_SIZE)
 				{
-					if (file.readInt() != INITIAL_INT || file.readLong() != INITIAL_LONG)
+					if (file.readInt() != ScoreJournal.LEGACY_INITIAL_INT || file.readLong() != LEGACY_INITIAL_LONG)
 					{
 						throw new Exception(TextBank.CORRUPT_FILE_ERROR);
 					}
@@ -235,8 +259,8 @@ public class ScoresList
 								if (codeA(score) == codeA && codeB(score) == codeB)
 								{
 									// score checks out
-									Score newScore = new Score(name, score);
-									scores.get(difficulty).add(newScore);
+									// old-style files didn't keep track of the game mode
+									getLeaderboard(NumerateGame.LINEUP_MODE, difficulty).add(new Score(name, score));
 								}
 							}
 							else
@@ -248,7 +272,7 @@ public class ScoresList
 						else
 						{
 							difficulty++;
-							if (difficulty >= scores.size())
+							if (difficulty >= DIFFICULTIES)
 							{
 								// we've run out of difficulties to fill up
 								break;
@@ -265,51 +289,38 @@ public class ScoresList
 		}
 	}
 	
-	/** Save the file. */
+	/**
+	  * Save the file: write out every score added since the last save, and compact the journal if it's due.
+	  * Any scores other processes have added in the meantime are read in first.
+	  */
 	public void save() throws Exception
 	{
-		try
+		journal.flush();
+		if (journal.getLoggedCount() >= Math.max(COMPACT_COUNT, journal.getSnapshotCount()))
 		{
-			file.setLength(0);
-			file.seek(0);
-			file.writeInt(INITIAL_INT);
-			file.writeLong(INITIAL_LONG);
-			
-			for (int i = 0; i < scores.size(); i++)
-			{
-				LinkedList<Score> currentList = scores.get(i);
-				Iterator it = currentList.iterator();
-				while (it.hasNext())
-				{
-					Score score = (Score)it.next();
-					if (score.verify())
-					{
-						file.writeBoolean(true);
-						
-						file.writeLong(code(score.getName()));
-						for (int j = 0; j < (MAX_NAME_LENGTH+1); j++)
-						{
-							if (score.getName().length() > j)
-							{
-								file.writeChar(score.getName().charAt(j));
-							}
-							else
-							{
-								file.writeChar(0);
-							}
-						}
-						file.writeLong(codeA(score.getScore()));
-						file.writeLong(codeB(score.getScore()));
-						file.writeInt(score.getScore());
-					}
-				}
-				file.writeBoolean(false);
-			}
+			compact();
 		}
-		catch (IOException X)
+	}
+	
+	/** Compact the journal down to a snapshot of every score on the leaderboards, in placement order. */
+	public void compact() throws Exception
+	{
+		journal.beginSnapshot();
+		for (int i = 0; i < leaderboards.length; i++)
 		{
-			throw new Exception(TextBank.UNWRITABLE_FILE_ERROR);
+			Score all[] = leaderboards[i].top(leaderboards[i].size());
+			for (int j = 0; j < all.length; j++)
+			{
+				journal.append(i/DIFFICULTIES, i%DIFFICULTIES, all[j].getName(), all[j].getScore());
+			}
 		}
+		journal.endSnapshot();
+	}
+	
+	/** Save anything left unsaved, and close the file. */
+	public void close() throws Exception
+	{
+		journal.close();
 	}
 	
 	public static void main(String args[])
@@ -319,10 +330,6 @@ public class ScoresList
 			ScoresList s = new ScoresList();
 			s.read();
 		}
-		catch (FileNotFoundException X)
-		{
-			System.out.println("FILE NOT FOUND: "+X.toString());
-		}
 		catch (Exception X)
 		{
 			System.out.println("ERROR: "+X.toString());
@@ -0,0 +1,32 @@
+/**
+  * Scripted input class. <br /><br />
+  *
+  * Plays a fixed list of moves, in order, and then stops.
+  */
+public class ScriptedInput implements InputSource
+{
+	/** Moves to make, as (from, to) cell pairs: move i goes from moves[2*i] to moves[2*i+1]. */
+	private int moves[];
+	/** Next move to make. */
+	private int next;
+	
+	/** Standard constructor. */
+	public ScriptedInput(int d_moves[])
+	{
+		moves = d_moves;
+		next = 0;
+	}
+	
+	/** Pick the next move off the list. */
+	public boolean nextMove(Grid grid, int move[])
+	{
+		if (next*2+1 >= moves.length)
+		{
+			return false;
+		}
+		move[0] = moves[next*2];
+		move[1] = moves[next*2+1];
+		next++;
+		return true;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+  * Session host class. <br /><br />
+  *
+  * Runs lots of independent headless games at once, for tournaments and bot
+  * evaluations. Every session has its own Game - grid, timers, score and all -
+  * and only shares the things that never change once they're made, like ray
+  * tables and the text bank, so sessions never need to lock each other out.
+  * <br /><br />
+  *
+  * Where the JVM has virtual threads, every session gets one of its own, so
+  * tens of thousands can be going at once without a platform thread apiece,
+  * even if their input sources block. They're looked up by reflection, so
+  * the code still builds and runs on JVMs without them; there, sessions are
+  * queued on a fixed pool of daemon threads instead.
+  */
+public class SessionHost
+{
+	/** Runs the sessions. */
+	private ExecutorService executor;
+	/** Is every session getting its own virtual thread? */
+	private boolean virtualThreads;
+	/** Number of sessions playing right now. */
+	private AtomicInteger activeSessions;
+	/** Most sessions that have been playing at once. */
+	private AtomicInteger peakSessions;
+	
+	/**
+	  * Standard constructor.
+	  * @param threads The number of threads to run sessions on if there are no virtual threads.
+	  */
+	public SessionHost(int threads)
+	{
+		executor = virtualThreadExecutor();
+		virtualThreads = (executor != null);
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable task)
+				{
+					Thread thread = new Thread(task, "session");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		activeSessions = new AtomicInteger(0);
+		peakSessions = new AtomicInteger(0);
+	}
+	
+	/** Constructor that falls back on one thread per processor. */
+	public SessionHost()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/** Makes an executor that starts a virtual thread for every task, or returns null if the JVM can't. */
+	private static ExecutorService virtualThreadExecutor()
+	{
+		try
+		{
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factory.invoke(null);
+		}
+		catch (Exception e)
+		{
+			// no virtual threads on this JVM
+			return null;
+		}
+	}
+	
+	/**
+	  * Start a session playing, until it's won, runs out of moves or hits a time or move limit.
+	  * @param session The game to play. Nothing else should touch it until it's finished.
+	  * @param timeLimit The most simulated time to play for (in seconds).
+	  * @param moveLimit The most moves to make.
+	  * @return the session, once it's finished.
+	  */
+	public Future<HeadlessGame> submit(final HeadlessGame session, final double timeLimit, final int moveLimit)
+	{
+		return executor.submit(new Callable<HeadlessGame>()
+		{
+			public HeadlessGame call()
+			{
+				int active = activeSessions.incrementAndGet();
+				int peak = peakSessions.get();
+				while (active > peak && !peakSessions.compareAndSet(peak, active))
+				{
+					peak = peakSessions.get();
+				}
+				try
+				{
+					session.run(timeLimit, moveLimit);
+				}
+				finally
+				{
+					activeSessions.decrementAndGet();
+				}
+				return session;
+			}
+		});
+	}
+	
+	/**
+	  * Start a session playing, until it's won, runs out of moves or hits a time limit.
+	  * @param session The game to play. Nothing else should touch it until it's finished.
+	  * @param timeLimit The most simulated time to play for (in seconds).
+	  * @return the session, once it's finished.
+	  */
+	public Future<HeadlessGame> submit(HeadlessGame session, double timeLimit)
+	{
+		return submit(session, timeLimit, Integer.MAX_VALUE);
+	}
+	
+	/** Is every session getting its own virtual thread? */
+	public boolean isUsingVirtualThreads()
+	{
+		return virtualThreads;
+	}
+	
+	/** Gets the number of sessions playing right now. */
+	public int getActiveSessions()
+	{
+		return activeSessions.get();
+	}
+	
+	/** Gets the most sessions that have been playing at once. */
+	public int getPeakSessions()
+	{
+		return peakSessions.get();
+	}
+	
+	/** Stops taking new sessions. Sessions already submitted still get played. */
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+	
+	/**
+	  * Plays a batch of concurrent headless sessions with greedy bots and reports how fast they went,
+	  * and how many were playing at once. With a think time, every bot sleeps that long before each
+	  * move, like a remote player would keep its session waiting. Every session is capped at
+	  * {@link EvaluationPipeline#DEFAULT_MOVE_LIMIT} moves.
+	  * Usage: SessionHost [sessions] [mode] [difficulty] [seed] [think time (in ms)]
+	  */
+	public static void main(String args[]) throws Exception
+	{
+		int sessions = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+		final int mode = (args.length > 1) ? Integer.parseInt(args[1]) : NumerateGame.LINEUP_MODE;
+		int difficulty = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+		final long thinkTime = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+		
+		SessionHost host = new SessionHost();
+		ArrayList<Future<HeadlessGame>> results = new ArrayList<Future<HeadlessGame>>(sessions);
+		double start = GameUtils.sysTime();
+		for (int i = 0; i < sessions; i++)
+		{
+			// every session gets its own generator, so they don't fight over one
+			Random generator = new Random(seed+i);
+			Game game = new Game(null, mode, BoardGenerator.scrambledGrid(mode, difficulty, generator), null);
+			final InputSource bot = new PolicyInput(new GreedyPolicy(generator), mode);
+			InputSource input = bot;
+			if (thinkTime > 0)
+			{
+				input = new InputSource()
+				{
+					public boolean nextMove(Grid grid, int move[])
+					{
+						try
+						{
+							Thread.sleep(thinkTime);
+						}
+						catch (InterruptedException X)
+						{
+							return false;
+						}
+						return bot.nextMove(grid, move);
+					}
+				};
+			}
+			results.add(host.submit(new HeadlessGame(game, input), HeadlessGame.DEFAULT_TIME_LIMIT, EvaluationPipeline.DEFAULT_MOVE_LIMIT));
+		}
+		
+		int won = 0;
+		long totalScore = 0;
+		for (int i = 0; i < results.size(); i++)
+		{
+			Game game = results.get(i).get().getGame();
+			if (game.isVictorious())
+			{
+				won++;
+				totalScore += game.getScore();
+			}
+		}
+		double elapsed = GameUtils.sysTime()-start;
+		host.shutdown();
+		
+		System.out.println(sessions+" sessions on "+(host.isUsingVirtualThreads() ? "virtual threads" : "a thread pool")+" in "+elapsed+"s ("+(int)(sessions/elapsed)+" sessions/s, at most "+host.getPeakSessions()+" at once)");
+		System.out.println(won+" won, average winning score "+((won > 0) ? totalScore/won : 0));
+	}
+}
\ No newline at end of file
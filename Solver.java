@@ -0,0 +1,574 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+  * Puzzle solver class. <br /><br />
+  *
+  * Finds the shortest sequence of moves that wins a board in a given game mode.
+  * Uses iterative-deepening A*, with the lower bounds kept by the board's
+  * VictoryTracker as its heuristic. Moves are tried best first, by how much
+  * they leave to fix. The top of every iteration is split into subtrees that
+  * run as separate tasks on a fork-join pool, so idle threads steal work from
+  * busy ones. A solver is good for one search only. <br /><br />
+  *
+  * Big boards can need far too many positions searched to prove a solution is
+  * the shortest, so a solver can be given a weight over 1 instead: the
+  * heuristic counts that many times over (weighted IDA*), which heads straight
+  * for boards that look close to won. Solutions come out at most <tt>weight</tt>
+  * times as long as the shortest, usually a lot sooner. A weighted search that
+  * uses up its share of the node limit without a solution doubles its weight and
+  * starts over, a few times at most, so it settles for a longer solution rather
+  * than none at all.
+  */
+public class Solver
+{
+	/** Default cap on the number of positions searched before giving up. */
+	public static final long DEFAULT_NODE_LIMIT = 20000000;
+	/** Default weight for searches that don't need the shortest solution. */
+	public static final double DEFAULT_WEIGHT = 2.0;
+	
+	/** Number of weights a weighted search tries (doubling each time), each with an even share of the node limit. */
+	private static final int WEIGHT_STAGES = 4;
+	
+	/** Subtrees are handed out as separate tasks down to this depth. */
+	private static final int SPLIT_DEPTH = 2;
+	/** Number of positions a task counts up locally before adding them to the shared total. */
+	private static final int NODE_BATCH = 1024;
+	/** The transposition table holds 2^TABLE_BITS entries. */
+	private static final int TABLE_BITS = 20;
+	/** Low bits of a table entry hold the depth; the rest hold the top of the position hash. */
+	private static final long DEPTH_MASK = 0xFF;
+	/** Weights are counted in fractions, so they don't have to be whole numbers. This is how many make 1. */
+	private static final int COST_SCALE = 16;
+	/**
+	  * Costs are counted in fractions of a move, so that neither weights nor the heuristic's
+	  * estimates have to be whole numbers. This is how many make a move.
+	  */
+	private static final int MOVE_COST = COST_SCALE*VictoryTracker.ESTIMATE_SCALE;
+	/** Move orderings hold a move's cost from this bit on. */
+	private static final int ORDER_COST_SHIFT = 32;
+	/** Move orderings hold how much a move leaves to fix from this bit on, and the move's number below it. */
+	private static final int ORDER_UNFIXED_SHIFT = 16;
+	
+	/** Search result for a subtree with a solution in it. */
+	private static final int FOUND = -1;
+	/** Search result for a subtree with no moves left to try. */
+	private static final int EXHAUSTED = Integer.MAX_VALUE;
+	/** Search result for a subtree that was stopped early (cancelled, out of nodes, or beaten to a solution). */
+	private static final int STOPPED = Integer.MAX_VALUE-1;
+	
+	/** The game mode being solved for. */
+	private int mode;
+	/** Cap on the number of positions searched. */
+	private long nodeLimit;
+	/** What every move the heuristic says is left costs, in {@link #COST_SCALE}ths of a move. */
+	private int weight;
+	/** Number of positions the current weight can search up to before it gets doubled. */
+	private volatile long stageLimit;
+	/** Pool the search runs on. */
+	private ForkJoinPool pool;
+	
+	/** Has the search been cancelled? */
+	private volatile boolean cancelled;
+	/** Number of positions searched so far. */
+	private AtomicLong nodes;
+	/** The first solution found, as (from, to) cell pairs. */
+	private AtomicReference<int[]> solution;
+	/** Transposition table for the current iteration: the shallowest depth each position was reached at. Shared by every task. */
+	private AtomicLongArray visited;
+	/** Proven lower bound on the length of a solution. Once solved, this is the solution length. */
+	private volatile int lowerBound;
+	/** Did the search run out of moves without finding a solution? */
+	private volatile boolean unsolvable;
+	
+	/**
+	  * Standard constructor.
+	  * @param d_weight How many times over the heuristic counts. 1 finds the shortest solution;
+	  * anything more finds one at most that many times as long, faster.
+	  */
+	public Solver(int d_mode, long d_nodeLimit, double d_weight, ForkJoinPool d_pool)
+	{
+		mode = d_mode;
+		nodeLimit = d_nodeLimit;
+		weight = (int)Math.round(Math.max(d_weight, 1.0)*COST_SCALE);
+		pool = d_pool;
+		
+		cancelled = false;
+		nodes = new AtomicLong();
+		solution = new AtomicReference<int[]>();
+		stageLimit = nodeLimit;
+		lowerBound = 0;
+		unsolvable = false;
+	}
+	
+	/** Constructor for a search for the shortest solution. */
+	public Solver(int d_mode, long d_nodeLimit, ForkJoinPool d_pool)
+	{
+		this(d_mode, d_nodeLimit, 1.0, d_pool);
+	}
+	
+	/** Constructor using the common fork-join pool. */
+	public Solver(int d_mode, long d_nodeLimit, double d_weight)
+	{
+		this(d_mode, d_nodeLimit, d_weight, ForkJoinPool.commonPool());
+	}
+	
+	/** Constructor for a search for the shortest solution, using the common fork-join pool. */
+	public Solver(int d_mode, long d_nodeLimit)
+	{
+		this(d_mode, d_nodeLimit, 1.0);
+	}
+	
+	/** Constructor using the common fork-join pool and the default node limit. */
+	public Solver(int d_mode)
+	{
+		this(d_mode, DEFAULT_NODE_LIMIT);
+	}
+	
+	/** Solve a grid. The grid itself is left alone. See {@link #solve(BitBoard)}. */
+	public int[] solve(Grid grid)
+	{
+		return solve(grid.copyBoard());
+	}
+	
+	/**
+	  * Find the shortest winning sequence of moves for a board (or one within the weight of it).
+	  * The board itself is left alone.
+	  * @return the moves as (from, to) cell pairs - move i goes from [2*i] to [2*i+1] - or
+	  * <tt>null</tt> if there's no solution, or the search was cancelled or ran out of nodes.
+	  */
+	public int[] solve(BitBoard start)
+	{
+		BitBoard board = new BitBoard(start);
+		lowerBound = board.getTracker().lowerBound(mode);
+		int bound = wholeMoves(cost(0, board.getTracker().estimate(mode)));
+		int stagesLeft = (weight > COST_SCALE) ? WEIGHT_STAGES-1 : 0;
+		stageLimit = (stagesLeft > 0) ? nodeLimit/WEIGHT_STAGES : nodeLimit;
+		
+		while (true)
+		{
+			visited = new AtomicLongArray(1 << TABLE_BITS);
+			int next = pool.invoke(new SearchTask(board, bound, new int[0], new long[] {board.positionHash()}, 0));
+			if (solution.get() != null)
+			{
+				return (weight > COST_SCALE) ? shortcut(start, solution.get()) : solution.get();
+			}
+			else if (cancelled || nodes.get() > nodeLimit)
+			{
+				return null;
+			}
+			else if (stopped())
+			{
+				// this weight's used up its share, so double it and start again
+				weight *= 2;
+				stagesLeft--;
+				stageLimit = (stagesLeft > 0) ? nodes.get() + nodeLimit/WEIGHT_STAGES : nodeLimit;
+				bound = wholeMoves(cost(0, board.getTracker().estimate(mode)));
+				continue;
+			}
+			else if (next == EXHAUSTED)
+			{
+				// we've tried every move sequence there is... so there's no solution
+				unsolvable = true;
+				return null;
+			}
+			
+			// nothing within this bound, so the shortest solution's weighted cost is at least the next one
+			bound = wholeMoves(next);
+			lowerBound = Math.max(lowerBound, (next+weight*VictoryTracker.ESTIMATE_SCALE-1)/(weight*VictoryTracker.ESTIMATE_SCALE));
+		}
+	}
+	
+	/**
+	  * Gets the cost of a position g moves in, with at least <tt>estimate</tt> more to go (as
+	  * {@link VictoryTracker#estimate(int)} counts them), in {@link #MOVE_COST}ths of a move.
+	  */
+	private int cost(int g, int estimate)
+	{
+		return g*MOVE_COST + estimate*weight;
+	}
+	
+	/** Rounds a cost up to whole moves, so every iteration goes at least a move further than the last. */
+	private static int wholeMoves(int cost)
+	{
+		return (cost+MOVE_COST-1)/MOVE_COST*MOVE_COST;
+	}
+	
+	/**
+	  * Shortens a solution by skipping ahead wherever one move gets to a position further along it
+	  * than the next. Weighted searches wander a bit, so this usually saves a few moves.
+	  */
+	private static int[] shortcut(BitBoard start, int found[])
+	{
+		// where every position along the solution comes up (the search never comes back to one)
+		BitBoard board = new BitBoard(start);
+		int length = found.length/2;
+		long hashes[] = new long[length+1];
+		hashes[0] = board.positionHash();
+		for (int i = 0; i < length; i++)
+		{
+			board.swap(found[i*2], found[i*2+1]);
+			hashes[i+1] = board.positionHash();
+		}
+		HashMap<Long, Integer> steps = new HashMap<Long, Integer>();
+		for (int i = 0; i <= length; i++)
+		{
+			steps.put(hashes[i], i);
+		}
+		
+		int shortened[] = new int[found.length];
+		int moves[] = new int[BitBoard.moveBufferSize(start.getSize())];
+		int kept = 0;
+		board = new BitBoard(start);
+		for (int step = 0; step < length; )
+		{
+			int from = found[step*2], to = found[step*2+1], next = step+1;
+			int count = board.generateMoves(moves);
+			for (int i = 0; i < count; i++)
+			{
+				board.swap(moves[i*2], moves[i*2+1]);
+				Integer reached = steps.get(board.positionHash());
+				board.swap(moves[i*2], moves[i*2+1]);
+				if (reached != null && reached > next)
+				{
+					from = moves[i*2];
+					to = moves[i*2+1];
+					next = reached;
+				}
+			}
+			board.swap(from, to);
+			shortened[kept++] = from;
+			shortened[kept++] = to;
+			step = next;
+		}
+		return Arrays.copyOf(shortened, kept);
+	}
+	
+	/** Cancel the search. Safe to call from any thread. */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+	
+	/** Has the search been cancelled? */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+	
+	/** Gets the number of positions searched so far. */
+	public long getNodes()
+	{
+		return nodes.get();
+	}
+	
+	/** Gets the proven lower bound on the length of the shortest solution. Once solved with no weight, this is the solution length. */
+	public int getLowerBound()
+	{
+		return lowerBound;
+	}
+	
+	/** Gets whether the search proved there's no solution at all. */
+	public boolean isUnsolvable()
+	{
+		return unsolvable;
+	}
+	
+	/** Should every task stop searching? */
+	private boolean stopped()
+	{
+		return cancelled || solution.get() != null || nodes.get() > stageLimit;
+	}
+	
+	/** A single subtree of a single IDA* iteration. */
+	@SuppressWarnings("serial")
+	private class SearchTask extends RecursiveTask<Integer>
+	{
+		/** The board, as of this task's root. Owned by the task. */
+		private BitBoard board;
+		/** Bound for this iteration. Nothing that costs more (moves so far plus weighted lower bound) than this is searched. */
+		private int limit;
+		/** Deepest a position can be and still be within the limit. */
+		private int maxDepth;
+		/** Moves from the start to the current position, as (from, to) cell pairs. */
+		private int path[];
+		/** Hashes of every position from the start to the current position. Used to avoid going around in circles. */
+		private long hashes[];
+		/** Depth of this task's root. */
+		private int depth;
+		
+		/** Move buffers, one for every depth. */
+		private int moveBuffers[][];
+		/** Masks of swaps already tried, one for every depth. Swapping a with b is the same as swapping b with a. */
+		private long seen[][];
+		/** The order to try moves in, one for every depth: cost, then how much is left to fix, then the move's number. */
+		private long orders[][];
+		/** Smallest cost over the limit of the moves left out of the last ordering. */
+		private int overLimit;
+		/** Positions counted since the last time they were added to the shared total. */
+		private int localNodes;
+		/** Set once this task notices it should stop. */
+		private boolean halted;
+		
+		/** Standard constructor. Takes ownership of the board; the path and hashes are copied. */
+		private SearchTask(BitBoard d_board, int d_limit, int d_path[], long d_hashes[], int d_depth)
+		{
+			board = d_board;
+			limit = d_limit;
+			maxDepth = limit/MOVE_COST;
+			depth = d_depth;
+			path = Arrays.copyOf(d_path, Math.max(2*maxDepth, 2*depth));
+			hashes = Arrays.copyOf(d_hashes, Math.max(maxDepth, depth)+1);
+		}
+		
+		/** Search the subtree. Returns FOUND, STOPPED, EXHAUSTED or the smallest bound that went over the limit. */
+		protected Integer compute()
+		{
+			moveBuffers = new int[maxDepth+1][];
+			seen = new long[maxDepth+1][];
+			orders = new long[maxDepth+1][];
+			localNodes = 0;
+			halted = stopped();
+			if (halted)
+			{
+				return STOPPED;
+			}
+			
+			int result = (depth < SPLIT_DEPTH) ? split() : search(depth);
+			nodes.addAndGet(localNodes);
+			return result;
+		}
+		
+		/** Hand out every child position as its own task, and wait for them all. */
+		private int split()
+		{
+			localNodes++;
+			int estimate = board.getTracker().estimate(mode);
+			if (cost(depth, estimate) > limit)
+			{
+				return cost(depth, estimate);
+			}
+			else if (estimate == 0)
+			{
+				found(depth);
+				return FOUND;
+			}
+			
+			ArrayList<SearchTask> tasks = new ArrayList<SearchTask>();
+			int moves[] = moveBuffer(depth);
+			// tasks get started in order, so the most promising go first
+			int count = orderMoves(depth, moves);
+			int best = overLimit;
+			for (int i = 0; i < count; i++)
+			{
+				int move = (int)(orders[depth][i] & ((1 << ORDER_UNFIXED_SHIFT)-1));
+				int from = moves[move*2], to = moves[move*2+1];
+				BitBoard child = new BitBoard(board);
+				child.swap(from, to);
+				path[depth*2] = from;
+				path[depth*2+1] = to;
+				hashes[depth+1] = child.positionHash();
+				tasks.add(new SearchTask(child, limit, path, hashes, depth+1));
+			}
+			
+			invokeAll(tasks);
+			boolean stoppedEarly = false;
+			for (int i = 0; i < tasks.size(); i++)
+			{
+				int result = tasks.get(i).join();
+				if (result == FOUND)
+				{
+					return FOUND;
+				}
+				else if (result == STOPPED)
+				{
+					stoppedEarly = true;
+				}
+				else
+				{
+					best = Math.min(best, result);
+				}
+			}
+			return stoppedEarly ? STOPPED : best;
+		}
+		
+		/** Plain depth-first search from the current position, at depth g. It's already been counted, when it was ordered. */
+		private int search(int g)
+		{
+			if (localNodes >= NODE_BATCH)
+			{
+				nodes.addAndGet(localNodes);
+				localNodes = 0;
+				halted = stopped();
+			}
+			if (halted)
+			{
+				return STOPPED;
+			}
+			
+			int estimate = board.getTracker().estimate(mode);
+			if (cost(g, estimate) > limit)
+			{
+				return cost(g, estimate);
+			}
+			else if (estimate == 0)
+			{
+				found(g);
+				return FOUND;
+			}
+			
+			if (!firstVisit(board.positionHash(), g))
+			{
+				// this position is already being searched from at least this shallow, so leave it to that search
+				return EXHAUSTED;
+			}
+
+			int moves[] = moveBuffer(g);
+			int count = orderMoves(g, moves);
+			int best = overLimit;
+			for (int i = 0; i < count; i++)
+			{
+				int move = (int)(orders[g][i] & ((1 << ORDER_UNFIXED_SHIFT)-1));
+				int from = moves[move*2], to = moves[move*2+1];
+				board.swap(from, to);
+				path[g*2] = from;
+				path[g*2+1] = to;
+				hashes[g+1] = board.positionHash();
+				int result = search(g+1);
+				board.swap(from, to);
+				
+				if (result == FOUND || result == STOPPED)
+				{
+					return result;
+				}
+				best = Math.min(best, result);
+			}
+			return best;
+		}
+		
+		/**
+		  * Generates the moves from the current position at depth g, tries each one, and puts the
+		  * ones worth searching into the ordering for the depth, cheapest first (then whichever
+		  * leaves the least to fix). Moves that go over the limit are left out, and the cheapest of
+		  * them is kept in {@link #overLimit}; so are moves that change nothing, come back to a
+		  * position on the path, or repeat another swap.
+		  * @return the number of moves in the ordering.
+		  */
+		private int orderMoves(int g, int moves[])
+		{
+			if (orders[g] == null)
+			{
+				orders[g] = new long[moves.length/2];
+			}
+			long order[] = orders[g];
+			VictoryTracker tracker = board.getTracker();
+			overLimit = EXHAUSTED;
+			int kept = 0;
+			int count = board.generateMoves(moves);
+			for (int i = 0; i < count; i++)
+			{
+				int from = moves[i*2], to = moves[i*2+1];
+				if (!firstTry(from, to, g))
+				{
+					continue;
+				}
+				
+				board.swap(from, to);
+				localNodes++;
+				if (!onPath(board.positionHash(), g))
+				{
+					int childCost = cost(g+1, tracker.estimate(mode));
+					if (childCost > limit)
+					{
+						overLimit = Math.min(overLimit, childCost);
+					}
+					else
+					{
+						order[kept++] = ((long)childCost << ORDER_COST_SHIFT) | ((long)tracker.unfixed(mode) << ORDER_UNFIXED_SHIFT) | i;
+					}
+				}
+				board.swap(from, to);
+			}
+			Arrays.sort(order, 0, kept);
+			return kept;
+		}
+		
+		/**
+		  * Is this the first time this swap has come up at depth g? Swapping equal pieces changes
+		  * nothing, and swapping b with a is the same as swapping a with b, so both are only worth
+		  * trying once. {@link #moveBuffer(int)} clears the mask for a depth.
+		  */
+		private boolean firstTry(int from, int to, int g)
+		{
+			if (board.get(from) == board.get(to))
+			{
+				return false;
+			}
+			int key = Math.min(from, to)*board.getCellCount() + Math.max(from, to);
+			if (BitBoard.testBit(seen[g], key))
+			{
+				return false;
+			}
+			BitBoard.setBit(seen[g], key);
+			return true;
+		}
+		
+		/** Gets the (cleared) move buffer for a depth, making it if need be. */
+		private int[] moveBuffer(int g)
+		{
+			if (moveBuffers[g] == null)
+			{
+				int cells = board.getCellCount();
+				moveBuffers[g] = new int[BitBoard.moveBufferSize(board.getSize())];
+				seen[g] = new long[(cells*cells+BitBoard.WORD_BITS-1)/BitBoard.WORD_BITS];
+			}
+			else
+			{
+				BitBoard.clearBits(seen[g]);
+			}
+			return moveBuffers[g];
+		}
+		
+		/**
+		  * Is this the shallowest a position has been reached at during this iteration? Records it
+		  * if so. Entries can be overwritten by other positions, which only means a position gets
+		  * searched again.
+		  */
+		private boolean firstVisit(long hash, int g)
+		{
+			int index = (int)(hash >>> (64-TABLE_BITS));
+			long entry = visited.get(index);
+			if (((entry ^ hash) & ~DEPTH_MASK) == 0 && (entry & DEPTH_MASK) <= g)
+			{
+				return false;
+			}
+			visited.set(index, (hash & ~DEPTH_MASK) | g);
+			return true;
+		}
+
+		/** Has a position already come up between the start and depth g? */
+		private boolean onPath(long hash, int g)
+		{
+			for (int i = 0; i <= g; i++)
+			{
+				if (hashes[i] == hash)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/** Record the current path as the solution, unless another task got there first. */
+		private void found(int g)
+		{
+			solution.compareAndSet(null, Arrays.copyOf(path, g*2));
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+import java.util.Random;
+
+/**
+  * Solver policy class. <br /><br />
+  *
+  * Solves every board up front and plays the solution back, so it always wins
+  * in as few moves as possible - the best any player could do. Boards the
+  * solver gives up on (it's capped at a number of positions) are played
+  * greedily instead.
+  */
+public class SolverPolicy implements MovePolicy
+{
+	/** Cap on the number of positions searched for a single board. */
+	private long nodeLimit;
+	/** Plays the boards the solver gives up on. */
+	private GreedyPolicy fallback;
+	/** The solution being played back, or <tt>null</tt> if we're playing greedily. */
+	private int solution[];
+	/** Next move of the solution to play. */
+	private int next;
+	
+	/** Standard constructor. */
+	public SolverPolicy(long d_nodeLimit, Random generator)
+	{
+		nodeLimit = d_nodeLimit;
+		fallback = new GreedyPolicy(generator);
+		solution = null;
+		next = 0;
+	}
+	
+	/** Solve a new board. */
+	public void start(int mode, BitBoard board)
+	{
+		// the search splits up on the common pool, which batches run on too, so this just joins in
+		Solver solver = new Solver(mode, nodeLimit);
+		solution = solver.solve(board);
+		next = 0;
+		if (solution == null)
+		{
+			fallback.start(mode, board);
+		}
+	}
+	
+	/** Play the next move of the solution. */
+	public boolean nextMove(BitBoard board, int move[])
+	{
+		if (solution == null)
+		{
+			return fallback.nextMove(board, move);
+		}
+		if (next*2 >= solution.length)
+		{
+			return false;
+		}
+		move[0] = solution[next*2];
+		move[1] = solution[next*2+1];
+		next++;
+		return true;
+	}
+	
+	/** Makes another solver policy, with the same node limit. */
+	public MovePolicy fork(long seed)
+	{
+		return new SolverPolicy(nodeLimit, new Random(seed));
+	}
+}
\ No newline at end of file
@@ -68,6 +68,10 @@ public class TextBank
 	public static final String MOVE_UNDO_STATUS = "Previous move undone.";
 	public static final String MOVE_REDO_STATUS = "Previous move redone.";
 	public static final String VICTORY_NOTIFICATION = "You win!";
+	public static final String HINT_SEARCHING_STATUS = "Thinking up a hint...";
+	public static final String HINT_GUESS_STATUS = "Try swapping the pink pieces. Still thinking...";
+	public static final String HINT_FOUND_STATUS = "Swap the pink pieces and you're one step closer.";
+	public static final String HINT_UNSOLVABLE_STATUS = "There's no way to win from here. Try undoing a move.";
 	
 	public static final String FINAL_MOVES = "Total Moves:";
 	public static final String FINAL_TIME = "Total Time:";
@@ -77,6 +81,7 @@ public class TextBank
 	public static final String CORRUPT_FILE_ERROR = "This file appears to be corrupt or not in the proper format. Please either delete it or make sure it is in the proper format and try again.";
 	public static final String UNREADABLE_FILE_ERROR = "Could not read the file. Try again in a few moments.";
 	public static final String UNWRITABLE_FILE_ERROR = "Could not write to the file. Try again in a few moments.";
+	public static final String SCORE_KEY_ERROR = "The key high scores are checked with is missing, unreadable or doesn't match them. Put back the key file that goes with the high scores file (or set the key correctly), make sure it can be read and written, and try again.";
 	
 	public static final String UNDO_BUTTON = "Undo";
 	public static final String REDO_BUTTON = "Redo";
@@ -0,0 +1,101 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+
+import java.util.HashMap;
+
+/**
+  * Tile sprites class. <br /><br />
+  *
+  * Caches pre-rendered grid tiles, so drawing the grid is nothing but image
+  * copies. Every tile is rendered the first time it's needed - background,
+  * number and all - and kept for good, keyed by its value, text colour and
+  * background. Sprites are shared by every grid with the same tile size.
+  */
+public class TileSprites
+{
+	/** Plain tile text. */
+	public static final int NORMAL_TEXT = 0;
+	/** Text on an inactive grid. */
+	public static final int INACTIVE_TEXT = 1;
+	/** Text of the selected piece. */
+	public static final int SELECTED_TEXT = 2;
+	/** Text under the cursor. */
+	public static final int CURSOR_TEXT = 3;
+	/** Text of a piece the hint points at. */
+	public static final int HINT_TEXT = 4;
+	/** Text of a piece the selected piece can move to. */
+	public static final int HIGHLIGHTED_TEXT = 5;
+	
+	/** Text colours, by text state. */
+	private static final Color TEXT_COLORS[] = {
+		NumerateGame.GRID_TEXT_COLOR,
+		NumerateGame.INACTIVE_GRID_TEXT_COLOR,
+		NumerateGame.GRID_SELECTED_TEXT_COLOR,
+		NumerateGame.GRID_CURSOR_TEXT_COLOR,
+		NumerateGame.GRID_HINT_TEXT_COLOR,
+		NumerateGame.GRID_HIGHLIGHTED_TEXT_COLOR
+	};
+	/** Highest piece value a sprite can be made for. */
+	private static final int MAX_VALUE = 15;
+	
+	/** Sprite sets made so far, by tile size. */
+	private static HashMap<Integer, TileSprites> cache = new HashMap<Integer, TileSprites>();
+	
+	/** Gets the (shared) sprite set for a tile size, making it if it's the first time. */
+	public static synchronized TileSprites forSize(int tileSize)
+	{
+		TileSprites sprites = cache.get(tileSize);
+		if (sprites == null)
+		{
+			sprites = new TileSprites(tileSize);
+			cache.put(tileSize, sprites);
+		}
+		return sprites;
+	}
+	
+	/** Tile size (in px), including one border line. */
+	private int tileSize;
+	/** Sprites, indexed by [highlighted background][text state][value]. Made on first use. */
+	private BufferedImage sprites[][][];
+	
+	/** Standard constructor. */
+	private TileSprites(int d_tileSize)
+	{
+		tileSize = d_tileSize;
+		sprites = new BufferedImage[2][TEXT_COLORS.length][MAX_VALUE+1];
+	}
+	
+	/**
+	  * Draw a tile. (x, y) is the top left of the tile, just inside the border lines; the sprite
+	  * covers the tile up to (but not including) the lines on its right and bottom.
+	  */
+	public void draw(Graphics2D g, int x, int y, int value, int textState, boolean highlighted)
+	{
+		int background = highlighted ? 1 : 0;
+		BufferedImage sprite = sprites[background][textState][value];
+		if (sprite == null)
+		{
+			sprite = render(value, textState, highlighted);
+			sprites[background][textState][value] = sprite;
+		}
+		g.drawImage(sprite, x, y, null);
+	}
+	
+	/** Render a single tile. Only ever done once per tile. */
+	private BufferedImage render(int value, int textState, boolean highlighted)
+	{
+		BufferedImage sprite = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration().createCompatibleImage(tileSize-1, tileSize);
+		Graphics2D g = sprite.createGraphics();
+		g.setColor(highlighted ? NumerateGame.GRID_HIGHLIGHTED_BG_COLOR : NumerateGame.GRID_BG_COLOR);
+		g.fillRect(0, 0, tileSize-1, tileSize);
+		
+		String text = Integer.toString(value);
+		g.setFont(NumerateGame.GRID_FONT);
+		g.setColor(TEXT_COLORS[textState]);
+		g.drawString(text, tileSize/2-g.getFontMetrics().stringWidth(text)/2, tileSize/2+NumerateGame.GRID_FONT.getSize()/6);
+		g.dispose();
+		return sprite;
+	}
+}
\ No newline at end of file
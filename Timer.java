@@ -73,6 +73,26 @@ public class Timer
 		this (d_id, d_period, 0, true);
 	}
 	
+	/**
+	  * Copy constructor. The copy has the same settings and state as the original, but the two are
+	  * completely separate from then on.
+	  * @param other Timer to copy.
+	  */
+	public Timer(Timer other)
+	{
+		id = other.id;
+		
+		period = other.period;
+		currentPeriod = other.currentPeriod;
+		
+		maxExecCount = other.maxExecCount;
+		execCount = other.execCount;
+		
+		isActive = other.isActive;
+		
+		isTriggered = other.isTriggered;
+	}
+	
 	/** Accessor method for this timer's ID. */
 	public String getId()
 	{
@@ -109,6 +129,12 @@ public class Timer
 		return isActive;
 	}
 	
+	/** Accessor method for this timer's triggered status. */
+	public boolean isTriggered()
+	{
+		return isTriggered;
+	}
+	
 	/** Mutator method for this timer's ID. */
 	public void setId(String d_id)
 	{
@@ -193,6 +219,16 @@ public class Timer
 		}
 	}
 	
+	/** Gets the time (in seconds) until the timer next triggers. Infinite if it isn't active. */
+	public double timeLeft()
+	{
+		if (!isActive)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.max(0.0,period-currentPeriod);
+	}
+	
 	/** Resets the timer (ie: the period and execution counts) */
 	public void reset()
 	{
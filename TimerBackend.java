@@ -0,0 +1,87 @@
+/**
+  * Timer backend interface. <br /><br />
+  *
+  * Storage for the timers in a {@link TimerList}. Timers are addressed by
+  * branch and index, and the list checks both before calling in, so
+  * backends can take them as given.
+  */
+public interface TimerBackend
+{
+	/** Counts the number of branches. */
+	int branchCount();
+	
+	/** Counts the number of timers in a branch. */
+	int timerCount(int branchNumber);
+	
+	/** Adds a single new branch. */
+	void addBranch();
+	
+	/** Inserts a timer into a branch, moving the timers from that index on up by one. */
+	void addTimer(int branchNumber, int timerNumber, Timer timer);
+	
+	/** Gets a copy of a timer, brought up to date. Changing it has no effect on the backend. */
+	Timer getTimer(int branchNumber, int timerNumber);
+	
+	/** Gets a timer's id. */
+	String getId(int branchNumber, int timerNumber);
+	
+	/** Gets a timer's period. */
+	double getPeriod(int branchNumber, int timerNumber);
+	
+	/** Gets a timer's maximum execution count. */
+	int getMaxExecCount(int branchNumber, int timerNumber);
+	
+	/** Gets a timer's execution count. */
+	int getExecCount(int branchNumber, int timerNumber);
+	
+	/** Checks if there are any active timers. */
+	boolean isActive();
+	
+	/** Checks if there are any active timers in a branch. */
+	boolean isActive(int branchNumber);
+	
+	/** Checks if a timer is active. */
+	boolean isActive(int branchNumber, int timerNumber);
+	
+	/** Sets a timer's id. */
+	void setId(int branchNumber, int timerNumber, String id);
+	
+	/** Sets a timer's period. */
+	void setPeriod(int branchNumber, int timerNumber, double period);
+	
+	/** Sets a timer's max execution count. */
+	void setMaxExecCount(int branchNumber, int timerNumber, int maxExecCount);
+	
+	/** Sets a timer's execution count. */
+	void setExecCount(int branchNumber, int timerNumber, int execCount);
+	
+	/** Changes a timer's active status. */
+	void setIsActive(int branchNumber, int timerNumber, boolean isActive);
+	
+	/** Changes a timer's triggered status. */
+	void setIsTriggered(int branchNumber, int timerNumber, boolean isTriggered);
+	
+	/** Increments every timer. */
+	void increment(double amount);
+	
+	/** Increments every timer in a branch. */
+	void increment(int branchNumber, double amount);
+	
+	/** Increments a timer. */
+	void increment(int branchNumber, int timerNumber, double amount);
+	
+	/** Checks if any timer has been triggered, triggering every one that has. */
+	boolean triggered();
+	
+	/** Checks if any timer in a branch has been triggered, triggering every one that has. */
+	boolean triggered(int branchNumber);
+	
+	/** Checks if a timer has been triggered. */
+	boolean triggered(int branchNumber, int timerNumber);
+	
+	/** Resets a timer. */
+	void reset(int branchNumber, int timerNumber);
+	
+	/** Sets the listener told about timers coming due. Can be null. */
+	void setListener(TimerListener listener);
+}
\ No newline at end of file
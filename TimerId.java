@@ -0,0 +1,85 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+  * Timer id class. <br /><br />
+  *
+  * A timer name, interned and hashed once up front. There's only ever one
+  * TimerId per name, so comparing two is a reference check and hashing one
+  * just returns a stored int. Hold on to the TimerId for a name that gets
+  * looked up every cycle, rather than passing the string in each time.
+  * Every id also gets a small number, for storing ids in int arrays.
+  * Interned ids are kept for good, which is fine for the handful of timer
+  * names a game uses.
+  */
+public final class TimerId
+{
+	/** Every id made so far, by name. */
+	private static HashMap<String, TimerId> ids = new HashMap<String, TimerId>();
+	/** Every id made so far, by number. */
+	private static ArrayList<TimerId> numbers = new ArrayList<TimerId>();
+	
+	/** Gets the id for a name, making it if it's the first time. */
+	public static synchronized TimerId of(String name)
+	{
+		TimerId id = ids.get(name);
+		if (id == null)
+		{
+			id = new TimerId(name, numbers.size());
+			ids.put(name, id);
+			numbers.add(id);
+		}
+		return id;
+	}
+	
+	/** Gets the id with a certain number. */
+	public static synchronized TimerId forNumber(int number)
+	{
+		return numbers.get(number);
+	}
+	
+	/** The name. */
+	private final String name;
+	/** The name's hash code, worked out once. */
+	private final int hash;
+	/** The id's number. */
+	private final int number;
+	
+	/** Standard constructor. */
+	private TimerId(String d_name, int d_number)
+	{
+		name = d_name;
+		hash = d_name == null ? 0 : d_name.hashCode();
+		number = d_number;
+	}
+	
+	/** Gets the name. */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/** Gets the id's number. Numbers start at 0 and count up as ids are made. */
+	public int getNumber()
+	{
+		return number;
+	}
+	
+	/** Gets the hash code, without rehashing the name. */
+	public int hashCode()
+	{
+		return hash;
+	}
+	
+	/** Ids are interned, so they're only ever equal to themselves. */
+	public boolean equals(Object o)
+	{
+		return this == o;
+	}
+	
+	/** Gets the name. */
+	public String toString()
+	{
+		return name;
+	}
+}
\ No newline at end of file
@@ -1,11 +1,18 @@
-import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
   * Timer list class.<br /><br />
   *
   * Stores a list of timers, categorized by branch number and
   * index number. Contains functions to collectively increment,
-  * reset and adjust timers within the list.
+  * reset and adjust timers within the list. The timers themselves
+  * are kept by a {@link TimerBackend} - by default a timing wheel,
+  * so incrementing the list only costs anything for timers that
+  * come due, or {@link PackedTimerBackend} for big lists of timers
+  * that all tick together - and a {@link TimerListener} can be told
+  * as they come due. Timers can also be found by id, through an
+  * index kept up to date as timers are added and renamed. Ids should
+  * be unique; if several timers share one, lookups find one of them.
   *
   * @author Matthew Kloster
   * @version 1.0.0
@@ -13,30 +20,33 @@ import java.util.ArrayList;
 
 public class TimerList
 {
-	/** Initial capacity for branch list. */
-	private final int BRANCH_LIST_SIZE = 4;
-	
-	/** Initial capacity for timer list within branches. */
-	private final int TIMER_LIST_SIZE = 6;
-	
-	/** List of timers/branches. */
-	private ArrayList<ArrayList<Timer>> branches;
+	/** Where the timers are kept. */
+	private TimerBackend backend;
 	
+	/** Timer slots (see {@link #slot}), by id. */
+	private HashMap<TimerId, Long> index;
+
+	/**
+	  * Backend constructor. Creates a list that keeps its timers in a certain backend.
+	  * @param d_backend The backend to keep timers in. Should be empty.
+	  * @param branchCount The number of branches to start with.
+	  */
+	public TimerList(TimerBackend d_backend, int branchCount)
+	{
+		backend = d_backend;
+		index = new HashMap<TimerId, Long>();
+		addBranches(branchCount);
+	}
+
 	/**
 	  * Default constructor. Creates a list with a certain number of branches.
 	  * @param branchCount The number of branches to start with.
 	  */
 	public TimerList(int branchCount)
 	{
-		branches = new ArrayList<ArrayList<Timer>>(BRANCH_LIST_SIZE);
-		
-		// now create the initial branches...
-		for (int i = 0; i < branchCount; i++)
-		{
-			branches.add(new ArrayList<Timer>(TIMER_LIST_SIZE));
-		}
+		this(new WheelTimerBackend(), branchCount);
 	}
-	
+
 	/**
 	  * Branch count free constructor. Creates a list with 0 branches by default.
 	  */
@@ -44,567 +54,375 @@ public class TimerList
 	{
 		this(0);
 	}
+
+	/** Throws an IndexOutOfBoundsException if a branch doesn't exist. */
+	private void checkBranch(int branchNumber)
+	{
+		if (branchNumber < 0 || branchNumber >= backend.branchCount())
+		{
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/** Throws an IndexOutOfBoundsException if a timer doesn't exist. */
+	private void checkTimer(int branchNumber, int timerNumber)
+	{
+		checkBranch(branchNumber);
+		if (timerNumber < 0 || timerNumber >= backend.timerCount(branchNumber))
+		{
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/** Packs a timer's branch and index into a single slot number, for the id index. */
+	private static long slot(int branchNumber, int timerNumber)
+	{
+		return ((long)branchNumber << 32) | timerNumber;
+	}
+	
+	/** Points the id index at some timer that has a certain id, or drops the id if none do. */
+	private void repoint(TimerId id)
+	{
+		for (int i = 0; i < backend.branchCount(); i++)
+		{
+			for (int j = 0; j < backend.timerCount(i); j++)
+			{
+				if (TimerId.of(backend.getId(i, j)) == id)
+				{
+					index.put(id, slot(i, j));
+					return;
+				}
+			}
+		}
+		index.remove(id);
+	}
 	
+	/**
+	  * Points the id index at every timer in a branch, from a certain index on. Every timer that's moved
+	  * gets put back, so an id that was pointing at one of them ends up pointing at one that still has it.
+	  */
+	private void reindex(int branchNumber, int timerNumber)
+	{
+		for (int i = timerNumber; i < backend.timerCount(branchNumber); i++)
+		{
+			index.put(TimerId.of(backend.getId(branchNumber, i)), slot(branchNumber, i));
+		}
+	}
+	
+	/** Sets the listener told about timers coming due. Can be null. */
+	public void setListener(TimerListener listener)
+	{
+		backend.setListener(listener);
+	}
+
 	/** Counts the number of branches in the timer list. */
 	public int branchCount()
 	{
-		return branches.size();
+		return backend.branchCount();
 	}
-	
+
 	/** Counts the number of timers in the timer list. */
 	public int timerCount()
 	{
 		int count = 0;
-		for (int i = 0; i < branches.size(); i++)
+		for (int i = 0; i < backend.branchCount(); i++)
 		{
-			count += branches.get(i).size();
+			count += backend.timerCount(i);
 		}
 		return count;
 	}
-	
+
 	/** Counts the number of timers from a specific branch. */
 	public int timerCount(int branchNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			return branches.get(branchNumber).size();
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkBranch(branchNumber);
+		return backend.timerCount(branchNumber);
 	}
-	
+
 	/** Adds new branches. */
 	public void addBranches(int branchCount)
 	{
 		for (int i = 0; i < branchCount; i++)
 		{
-			branches.add(new ArrayList<Timer>());
+			backend.addBranch();
 		}
 	}
-	
+
 	/** Adds a single new branch. */
 	public void addBranch()
 	{
 		addBranches(1);
 	}
-	
-	/** Adds a new timer, or replaces an existing one. */
+
+	/** Adds a new timer, moving any from that index on up by one. The list takes the timer over from then on. */
 	public void addTimer(int branchNumber, int timerNumber, Timer timer)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			branches.get(branchNumber).add(timerNumber,timer);
-		}
-		else
+		checkBranch(branchNumber);
+		if (timerNumber < 0 || timerNumber > backend.timerCount(branchNumber))
 		{
 			throw new IndexOutOfBoundsException();
 		}
+		backend.addTimer(branchNumber, timerNumber, timer);
+		// everything after it has moved up one
+		reindex(branchNumber, timerNumber);
 	}
-	
+
+	/** Gets a copy of a specific timer, brought up to date. Changing it has no effect on the list. */
+	public Timer getTimer(int branchNumber, int timerNumber)
+	{
+		checkTimer(branchNumber, timerNumber);
+		return backend.getTimer(branchNumber, timerNumber);
+	}
+
 	/** Gets a specific timer's id. */
 	public String getId(int branchNumber, int timerNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).getId();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.getId(branchNumber, timerNumber);
 	}
-	
+
 	/** Gets the period of a specific timer in the list. */
 	public double getPeriod(int branchNumber, int timerNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).getPeriod();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.getPeriod(branchNumber, timerNumber);
 	}
-	
+
 	/** Gets the maximum execution count of a specific timer in the list. */
 	public int getMaxExecCount(int branchNumber, int timerNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).getMaxExecCount();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.getMaxExecCount(branchNumber, timerNumber);
 	}
-	
+
 	/** Gets the execution count of a specific timer in the list. */
 	public int getExecCount(int branchNumber, int timerNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).getExecCount();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.getExecCount(branchNumber, timerNumber);
 	}
-	
+
 	/** Checks if there are any active timers in the list. */
 	public boolean isActive()
 	{
-		for (int i = 0; i < branches.size(); i++)
-		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				if (branch.get(j).isActive())
-				{
-					// we've found an active timer - return true
-					return true;
-				}
-			}
-		}
-		
-		// no active timers found - return false
-		return false;
+		return backend.isActive();
 	}
-	
+
 	/** Checks if there are any active timers in a specific branch. */
 	public boolean isActive(int branchNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				if (branch.get(j).isActive())
-				{
-					// we've found an active timer - return true
-					return true;
-				}
-			}
-			
-			// no active timers found - return false
-			return false;
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkBranch(branchNumber);
+		return backend.isActive(branchNumber);
 	}
-	
+
 	/** Checks if a specific timer is active. */
 	public boolean isActive(int branchNumber, int timerNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).isActive();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.isActive(branchNumber, timerNumber);
 	}
-	
+
 	/** Sets a timer's id */
 	public void setId(int branchNumber, int timerNumber, String id)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setId(id);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
+		checkTimer(branchNumber, timerNumber);
+		TimerId oldId = TimerId.of(backend.getId(branchNumber, timerNumber));
+		backend.setId(branchNumber, timerNumber, id);
+		Long slot = index.get(oldId);
+		if (slot != null && slot == slot(branchNumber, timerNumber))
 		{
-			throw new IndexOutOfBoundsException();
+			// other timers may still share the old id
+			repoint(oldId);
 		}
+		index.put(TimerId.of(id), slot(branchNumber, timerNumber));
 	}
-	
+
 	/** Sets a timer's period */
 	public void setPeriod(int branchNumber, int timerNumber, double period)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setPeriod(period);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.setPeriod(branchNumber, timerNumber, period);
 	}
-	
+
 	/** Sets a timer's max execution count */
 	public void setMaxExecCount(int branchNumber, int timerNumber, int maxExecCount)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setMaxExecCount(maxExecCount);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.setMaxExecCount(branchNumber, timerNumber, maxExecCount);
 	}
-	
+
 	/** Sets a timer's execution count */
 	public void setExecCount(int branchNumber, int timerNumber, int execCount)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setExecCount(execCount);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.setExecCount(branchNumber, timerNumber, execCount);
 	}
-	
+
 	/** Changes the active status of every timer in the list. */
 	public void setIsActive(boolean isActive)
 	{
-		for (int i = 0; i < branches.size(); i++)
+		for (int i = 0; i < backend.branchCount(); i++)
 		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).setIsActive(isActive);
-			}
+			setIsActive(i, isActive);
 		}
 	}
-	
+
 	/** Changes the active status of every timer in a specific branch. */
 	public void setIsActive(int branchNumber, boolean isActive)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).setIsActive(isActive);
-			}
-		}
-		else
+		checkBranch(branchNumber);
+		for (int j = 0; j < backend.timerCount(branchNumber); j++)
 		{
-			throw new IndexOutOfBoundsException();
+			backend.setIsActive(branchNumber, j, isActive);
 		}
 	}
-	
+
 	/** Changes the active status of a specific timer. */
 	public void setIsActive(int branchNumber, int timerNumber, boolean isActive)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setIsActive(isActive);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.setIsActive(branchNumber, timerNumber, isActive);
 	}
-	
+
 	/** Changes the triggered status of every timer in the list. */
 	public void setIsTriggered(boolean isTriggered)
 	{
-		for (int i = 0; i < branches.size(); i++)
+		for (int i = 0; i < backend.branchCount(); i++)
 		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).setIsTriggered(isTriggered);
-			}
+			setIsTriggered(i, isTriggered);
 		}
 	}
-	
+
 	/** Changes the triggered status of every timer in a specific branch. */
 	public void setIsTriggered(int branchNumber, boolean isTriggered)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
+		checkBranch(branchNumber);
+		for (int j = 0; j < backend.timerCount(branchNumber); j++)
 		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).setIsTriggered(isTriggered);
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
+			backend.setIsTriggered(branchNumber, j, isTriggered);
 		}
 	}
-	
+
 	/** Changes the triggered status of a specific timer. */
 	public void setIsTriggered(int branchNumber, int timerNumber, boolean isTriggered)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).setIsTriggered(isTriggered);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.setIsTriggered(branchNumber, timerNumber, isTriggered);
 	}
-	
+
 	/** Increments all timers in the list. */
 	public void increment(double amount)
 	{
-		for (int i = 0; i < branches.size(); i++)
-		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).increment(amount);
-			}
-		}
+		backend.increment(amount);
 	}
-	
+
 	/** Increments all timers in a specific branch. */
 	public void increment(int branchNumber, double amount)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).increment(amount);
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkBranch(branchNumber);
+		backend.increment(branchNumber, amount);
 	}
-	
+
 	/** Increments a specific timer. */
 	public void increment(int branchNumber, int timerNumber, double amount)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).increment(amount);
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		backend.increment(branchNumber, timerNumber, amount);
 	}
-	
+
 	/** Checks if any timer in the list has been triggered. */
 	public boolean triggered()
 	{
-		boolean triggered = false;
-		
-		for (int i = 0; i < branches.size(); i++)
-		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				if (branch.get(j).triggered())
-				{
-					triggered = true;
-				}
-			}
-		}
-		
-		return triggered;
+		return backend.triggered();
 	}
-	
+
 	/** Checks if any timer in a specific branch has been triggered. */
 	public boolean triggered(int branchNumber)
 	{
-		boolean triggered = false;
-		
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				if (branch.get(j).triggered())
-				{
-					triggered = true;
-				}
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
-		
-		return triggered;
+		checkBranch(branchNumber);
+		return backend.triggered(branchNumber);
 	}
-	
-	/** Checks if any timer in a specific branch has been triggered. */
+
+	/** Checks if a specific timer has been triggered. */
 	public boolean triggered(int branchNumber, int timerNumber)
 	{
-		
-		if (branchNumber >= 0 && branchNumber < branches.size())
-		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				return branch.get(timerNumber).triggered();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
-		}
-		else
-		{
-			throw new IndexOutOfBoundsException();
-		}
+		checkTimer(branchNumber, timerNumber);
+		return backend.triggered(branchNumber, timerNumber);
 	}
-	
+
 	/** Rests all timers in the list. */
 	public void reset()
-	{	
-		for (int i = 0; i < branches.size(); i++)
+	{
+		for (int i = 0; i < backend.branchCount(); i++)
 		{
-			ArrayList<Timer> branch = branches.get(i);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).reset();
-			}
+			reset(i);
 		}
 	}
-	
+
 	/** Resets all timers in a specific branch. */
 	public void reset(int branchNumber)
 	{
-		if (branchNumber >= 0 && branchNumber < branches.size())
+		checkBranch(branchNumber);
+		for (int j = 0; j < backend.timerCount(branchNumber); j++)
 		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			for (int j = 0; j < branch.size(); j++)
-			{
-				branch.get(j).reset();
-			}
+			backend.reset(branchNumber, j);
 		}
-		else
+	}
+
+	/** Resets a specific timer. */
+	public void reset(int branchNumber, int timerNumber)
+	{
+		checkTimer(branchNumber, timerNumber);
+		backend.reset(branchNumber, timerNumber);
+	}
+	
+	/** Gets a copy of the timer with a certain id, brought up to date. Null if there isn't one. */
+	public Timer get(TimerId id)
+	{
+		Long slot = index.get(id);
+		if (slot == null)
 		{
-			throw new IndexOutOfBoundsException();
+			return null;
 		}
+		return backend.getTimer((int)(slot >> 32), (int)(long)slot);
 	}
 	
-	/** Resets a specific timer. */
-	public void reset(int branchNumber, int timerNumber)
+	/** Gets the timer with a certain id, brought up to date. Null if there isn't one. */
+	public Timer get(String id)
+	{
+		return get(TimerId.of(id));
+	}
+	
+	/** Checks if the timer with a certain id has been triggered. False if there isn't one. */
+	public boolean triggered(TimerId id)
 	{
-		
-		if (branchNumber >= 0 && branchNumber < branches.size())
+		Long slot = index.get(id);
+		if (slot == null)
 		{
-			ArrayList<Timer> branch = branches.get(branchNumber);
-			if (timerNumber >= 0 && timerNumber < branch.size())
-			{
-				branch.get(timerNumber).reset();
-			}
-			else
-			{
-				throw new IndexOutOfBoundsException();
-			}
+			return false;
 		}
-		else
+		return backend.triggered((int)(slot >> 32), (int)(long)slot);
+	}
+	
+	/** Checks if the timer with a certain id has been triggered. False if there isn't one. */
+	public boolean triggered(String id)
+	{
+		return triggered(TimerId.of(id));
+	}
+	
+	/** Resets the timer with a certain id, if there is one. */
+	public void reset(TimerId id)
+	{
+		Long slot = index.get(id);
+		if (slot != null)
 		{
-			throw new IndexOutOfBoundsException();
+			backend.reset((int)(slot >> 32), (int)(long)slot);
 		}
 	}
 	
+	/** Resets the timer with a certain id, if there is one. */
+	public void reset(String id)
+	{
+		reset(TimerId.of(id));
+	}
 }
\ No newline at end of file
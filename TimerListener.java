@@ -0,0 +1,13 @@
+/**
+  * Timer listener interface. <br /><br />
+  *
+  * Gets told when a timer in a {@link TimerList} comes due, so callers don't
+  * have to poll every timer to find the ones that have. The timer still
+  * needs triggering (or resetting) as usual; it won't be reported again
+  * until it has been.
+  */
+public interface TimerListener
+{
+	/** A timer has come due. */
+	void timerExpired(int branchNumber, int timerNumber, String id);
+}
\ No newline at end of file
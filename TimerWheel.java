@@ -0,0 +1,263 @@
+/**
+  * Timer wheel class. <br /><br />
+  *
+  * A hierarchical timing wheel: schedules things by integer handle to go off
+  * at a given tick. Each level is a ring of slots, with every slot on a level
+  * covering 64 times as many ticks as one on the level below. Scheduling and
+  * cancelling just link a handle into (or out of) a slot, and advancing only
+  * ever looks at the slots the clock passes through. Handles in a coarse slot
+  * get moved down a level as the clock reaches them, until they land in the
+  * bottom level and go off.
+  */
+public class TimerWheel
+{
+	/** Bits of the tick count each level covers. */
+	private static final int SLOT_BITS = 6;
+	/** Slots per level. */
+	private static final int SLOTS = 1 << SLOT_BITS;
+	/** Mask for a slot number. */
+	private static final int SLOT_MASK = SLOTS-1;
+	/** Number of levels. Together they cover 2^24 ticks; anything further out waits at the top until it's in range. */
+	private static final int LEVELS = 4;
+	/** Marks a handle that isn't scheduled. */
+	private static final int UNSCHEDULED = -1;
+	/** Marks a handle that's been taken out of its slot to go off (or move down a level). */
+	private static final int DETACHED = -2;
+	
+	/**
+	  * Expiry interface. <br /><br />
+	  *
+	  * Gets told whenever a handle goes off.
+	  */
+	public interface Expiry
+	{
+		/** A handle has gone off. It's no longer scheduled, so it can be scheduled again straight away. */
+		void expired(int handle);
+	}
+	
+	/** First handle in every slot, indexed by level*SLOTS+slot. */
+	private int heads[];
+	/** Next handle in the same slot, by handle. */
+	private int next[];
+	/** Previous handle in the same slot, by handle. */
+	private int prev[];
+	/** Slot a handle's in (or UNSCHEDULED, or DETACHED), by handle. */
+	private int slots[];
+	/** Tick a handle goes off at, by handle. */
+	private long due[];
+	/** Handles taken out of a slot, waiting to be dealt with. */
+	private int detached[];
+	
+	/** The current tick. */
+	private long now;
+	/** Number of handles scheduled. */
+	private int count;
+	
+	/** Standard constructor. */
+	public TimerWheel(int capacity, long start)
+	{
+		heads = new int[LEVELS*SLOTS];
+		for (int i = 0; i < heads.length; i++)
+		{
+			heads[i] = UNSCHEDULED;
+		}
+		next = new int[0];
+		prev = new int[0];
+		slots = new int[0];
+		due = new long[0];
+		detached = new int[16];
+		ensureCapacity(capacity);
+		now = start;
+		count = 0;
+	}
+	
+	/** Make room for handles up to (but not including) <tt>capacity</tt>. */
+	public void ensureCapacity(int capacity)
+	{
+		int old = slots.length;
+		if (capacity <= old)
+		{
+			return;
+		}
+		capacity = Math.max(capacity, old*2);
+		next = grow(next, capacity);
+		prev = grow(prev, capacity);
+		slots = grow(slots, capacity);
+		long newDue[] = new long[capacity];
+		System.arraycopy(due, 0, newDue, 0, old);
+		due = newDue;
+		for (int i = old; i < capacity; i++)
+		{
+			slots[i] = UNSCHEDULED;
+		}
+	}
+	
+	/** Copies an int array into a bigger one. */
+	private static int[] grow(int array[], int capacity)
+	{
+		int grown[] = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	
+	/**
+	  * Schedule a handle to go off at a tick, replacing any time it was already scheduled for. Ticks
+	  * that have already passed go off on the next tick.
+	  */
+	public void schedule(int handle, long tick)
+	{
+		ensureCapacity(handle+1);
+		cancel(handle);
+		due[handle] = tick;
+		place(handle, Math.max(tick, now+1));
+		count++;
+	}
+	
+	/** Unschedule a handle. Does nothing if it isn't scheduled. */
+	public void cancel(int handle)
+	{
+		if (handle >= slots.length)
+		{
+			return;
+		}
+		int slot = slots[handle];
+		if (slot == DETACHED)
+		{
+			// it's on its way out of a slot already, so just make sure it doesn't go off
+			slots[handle] = UNSCHEDULED;
+			count--;
+		}
+		else if (slot != UNSCHEDULED)
+		{
+			if (prev[handle] == UNSCHEDULED)
+			{
+				heads[slot] = next[handle];
+			}
+			else
+			{
+				next[prev[handle]] = next[handle];
+			}
+			if (next[handle] != UNSCHEDULED)
+			{
+				prev[next[handle]] = prev[handle];
+			}
+			slots[handle] = UNSCHEDULED;
+			count--;
+		}
+	}
+	
+	/** Is a handle scheduled? */
+	public boolean isScheduled(int handle)
+	{
+		return handle < slots.length && slots[handle] != UNSCHEDULED;
+	}
+	
+	/** Links a handle into the slot for a tick (which has to be now or later). */
+	private void place(int handle, long tick)
+	{
+		long delta = tick-now;
+		if (delta >= 1L << (SLOT_BITS*LEVELS))
+		{
+			// too far off for the wheel... so park it at the far end of the top level for now
+			tick = now + (1L << (SLOT_BITS*LEVELS)) - 1;
+			delta = tick-now;
+		}
+		int level = 0;
+		while (level < LEVELS-1 && delta >= 1L << (SLOT_BITS*(level+1)))
+		{
+			level++;
+		}
+		int slot = level*SLOTS + (int)((tick >> (SLOT_BITS*level)) & SLOT_MASK);
+		
+		prev[handle] = UNSCHEDULED;
+		next[handle] = heads[slot];
+		if (heads[slot] != UNSCHEDULED)
+		{
+			prev[heads[slot]] = handle;
+		}
+		heads[slot] = handle;
+		slots[handle] = slot;
+	}
+	
+	/** Takes every handle out of a slot, into the detached list. Returns how many there were. */
+	private int detach(int slot)
+	{
+		int detachedCount = 0;
+		for (int handle = heads[slot]; handle != UNSCHEDULED; handle = next[handle])
+		{
+			if (detachedCount == detached.length)
+			{
+				detached = grow(detached, detachedCount*2);
+			}
+			detached[detachedCount++] = handle;
+			slots[handle] = DETACHED;
+		}
+		heads[slot] = UNSCHEDULED;
+		return detachedCount;
+	}
+	
+	/**
+	  * Move the clock forward to a tick, setting off every handle due on the way. Handles can be
+	  * scheduled or cancelled from inside the expiry, but the wheel mustn't be advanced from there.
+	  */
+	public void advance(long tick, Expiry expiry)
+	{
+		while (now < tick)
+		{
+			if (count == 0)
+			{
+				// nothing to set off... so skip straight there
+				now = tick;
+				break;
+			}
+			now++;
+			
+			// coarser levels get moved down as the clock reaches them
+			for (int level = 1; level < LEVELS; level++)
+			{
+				if ((now & ((1L << (SLOT_BITS*level))-1)) != 0)
+				{
+					break;
+				}
+				int detachedCount = detach(level*SLOTS + (int)((now >> (SLOT_BITS*level)) & SLOT_MASK));
+				for (int i = 0; i < detachedCount; i++)
+				{
+					int handle = detached[i];
+					place(handle, Math.max(due[handle], now));
+				}
+			}
+			
+			int detachedCount = detach((int)(now & SLOT_MASK));
+			for (int i = 0; i < detachedCount; i++)
+			{
+				int handle = detached[i];
+				if (slots[handle] != DETACHED)
+				{
+					// cancelled (or rescheduled) by an earlier expiry
+					continue;
+				}
+				if (due[handle] > now)
+				{
+					// parked here from too far off; not actually due yet
+					place(handle, due[handle]);
+					continue;
+				}
+				slots[handle] = UNSCHEDULED;
+				count--;
+				expiry.expired(handle);
+			}
+		}
+	}
+	
+	/** Gets the current tick. */
+	public long getTime()
+	{
+		return now;
+	}
+	
+	/** Gets the number of handles scheduled. */
+	public int getCount()
+	{
+		return count;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,563 @@
+/**
+  * Victory tracker class. <br /><br />
+  *
+  * Keeps running summaries of a bitboard for every game mode, so victory can
+  * be checked without rescanning the board. Summaries are built once when the
+  * board is created and updated by the board on every swap, by taking away
+  * the contributions of the two swapped cells (and every pair of cells they
+  * belong to) before the swap and adding them back afterwards. The summaries
+  * go into more detail than the victory checks need, so that there's enough
+  * to work out a decent lower bound on the swaps left to win.
+  */
+public class VictoryTracker
+{
+	/** Estimates are counted in fractions of a swap, so they can say more than whole swaps. This is how many make a swap. */
+	public static final int ESTIMATE_SCALE = 24;
+	/** Most cells a single swap can change (the two swapped cells). */
+	private static final int CELLS_PER_SWAP = 2;
+	/** Most Scatter conflicts a single swap can fix (four neighbours for each swapped cell). */
+	private static final int SCATTER_FIXES_PER_SWAP = 8;
+	/** Most missing Summation values a single swap can fix along rows, or along columns (one in each line the swapped cells are in). */
+	private static final int SUMMATION_FIXES_PER_SWAP = 2;
+	
+	/** Line-Up layout: every row holds its row number, ascending. */
+	public static final int ROWS_ASCENDING = 0;
+	/** Line-Up layout: every row holds its row number, descending. */
+	public static final int ROWS_DESCENDING = 1;
+	/** Line-Up layout: every column holds its column number, ascending. */
+	public static final int COLUMNS_ASCENDING = 2;
+	/** Line-Up layout: every column holds its column number, descending. */
+	public static final int COLUMNS_DESCENDING = 3;
+	
+	/** The board being tracked. */
+	private BitBoard board;
+	/** Board size, in tiles per side. */
+	private int size;
+	/** Ray table for the board size. Used to find neighbours without any bounds math. */
+	private RayTable rays;
+	
+	/** Line-Up: number of cells that don't match each of the four layouts. */
+	private int mismatches[];
+	/**
+	  * Line-Up: number of pieces in line r (a row or column, depending on the layout) that belong in
+	  * another line t, at index layout*size*size + r*size + t.
+	  */
+	private int misplaced[];
+	/**
+	  * Line-Up: number of pieces that could be swapped straight into place with each other for each
+	  * layout, in pairs - the sum of min(misplaced r to t, misplaced t to r) over every two lines.
+	  */
+	private int exchanges[];
+	/** Alternation: number of cells that differ from the cell two tiles to their right. */
+	private int rowBreaks;
+	/** Alternation: number of cells that differ from the cell two tiles below them. */
+	private int columnBreaks;
+	/**
+	  * Alternation: count of every value in every group of cells that have to end up matching, at
+	  * index group*size+value-1. Row y's even and odd cells are groups 2y and 2y+1, and column x's
+	  * are groups 2(size+x) and 2(size+x)+1.
+	  */
+	private int groupCounts[];
+	/** Alternation: number of values that turn up a certain number of times in each group, at index group*(size+1)+times. */
+	private int groupFrequencies[];
+	/** Alternation: most times any one value turns up in each group. */
+	private int groupMost[];
+	/** Alternation: number of cells that would have to change for every row to alternate. */
+	private int rowChanges;
+	/** Alternation: number of cells that would have to change for every column to alternate. */
+	private int columnChanges;
+	/** Scatter: number of touching pairs of equal pieces. */
+	private int conflicts;
+	/** Scatter: cells already paired off while working out the lower bound. Only used in {@link #estimate(int)}. */
+	private long paired[];
+	/** Summation: count of every value in every row, at index row*size+value-1. */
+	private int rowCounts[];
+	/** Summation: count of every value in every column, at index column*size+value-1. */
+	private int columnCounts[];
+	/** Summation: number of (row, value) pairs with no pieces at all. */
+	private int rowMissing;
+	/** Summation: number of (column, value) pairs with no pieces at all. */
+	private int columnMissing;
+	/** Summation: columns holding every value in every row, as bits, at index (value-1)*size+row. */
+	private int valueColumns[];
+	/**
+	  * Summation: most pieces of every value that could stay where they are, at index value-1 - no
+	  * two of them can share a row or a column, so it's the biggest matching of rows to columns.
+	  */
+	private int staying[];
+	/** Summation: sum of {@link #staying}. */
+	private int stayingTotal;
+	/** Summation: values whose {@link #staying} count is out of date, as bits (value-1). */
+	private int staleValues;
+	/** Summation: row matched to every column while working out {@link #staying}, or -1. Only used in {@link #estimate(int)}. */
+	private int columnRows[];
+	/** Summation: columns already tried while looking for a longer matching, as bits. */
+	private int triedColumns;
+	
+	/** Standard constructor. Builds every summary from scratch. */
+	public VictoryTracker(BitBoard d_board)
+	{
+		board = d_board;
+		size = board.getSize();
+		rays = RayTable.forSize(size);
+		
+		mismatches = new int[4];
+		misplaced = new int[4*size*size];
+		exchanges = new int[4];
+		groupCounts = new int[4*size*size];
+		groupFrequencies = new int[4*size*(size+1)];
+		groupMost = new int[4*size];
+		for (int group = 0; group < 4*size; group++)
+		{
+			// every value turns up 0 times in every group, to start with
+			groupFrequencies[group*(size+1)] = size;
+		}
+		rowChanges = size*size;
+		columnChanges = size*size;
+		paired = new long[board.getWords()];
+		rowCounts = new int[size*size];
+		columnCounts = new int[size*size];
+		rowMissing = size*size;
+		columnMissing = size*size;
+		valueColumns = new int[size*size];
+		staying = new int[size];
+		stayingTotal = 0;
+		staleValues = (1 << size) - 1;
+		columnRows = new int[size];
+		
+		for (int cell = 0; cell < size*size; cell++)
+		{
+			applyCell(cell, 1);
+			
+			// count every pair once, from its left (or top) cell
+			applyPair(cell, RayTable.FIRST_ORTHOGONAL+1, -1, 1);
+			applyPair(cell, RayTable.FIRST_ORTHOGONAL+3, -1, 1);
+		}
+	}
+	
+	/** Copy constructor. Tracks <tt>d_board</tt>, which should be a copy of the board <tt>other</tt> tracks. */
+	public VictoryTracker(VictoryTracker other, BitBoard d_board)
+	{
+		board = d_board;
+		size = other.size;
+		rays = other.rays;
+		
+		mismatches = other.mismatches.clone();
+		misplaced = other.misplaced.clone();
+		exchanges = other.exchanges.clone();
+		rowBreaks = other.rowBreaks;
+		columnBreaks = other.columnBreaks;
+		groupCounts = other.groupCounts.clone();
+		groupFrequencies = other.groupFrequencies.clone();
+		groupMost = other.groupMost.clone();
+		rowChanges = other.rowChanges;
+		columnChanges = other.columnChanges;
+		conflicts = other.conflicts;
+		paired = new long[other.paired.length];
+		rowCounts = other.rowCounts.clone();
+		columnCounts = other.columnCounts.clone();
+		rowMissing = other.rowMissing;
+		columnMissing = other.columnMissing;
+		valueColumns = other.valueColumns.clone();
+		staying = other.staying.clone();
+		stayingTotal = other.stayingTotal;
+		staleValues = other.staleValues;
+		columnRows = new int[size];
+	}
+	
+	/** Takes away the contributions of cells <tt>a</tt> and <tt>b</tt>. Call this just before swapping them. */
+	public void beforeSwap(int a, int b)
+	{
+		apply(a, b, -1);
+	}
+	
+	/** Adds back the contributions of cells <tt>a</tt> and <tt>b</tt>. Call this just after swapping them. */
+	public void afterSwap(int a, int b)
+	{
+		apply(a, b, 1);
+	}
+	
+	/** Adds (sign = 1) or takes away (sign = -1) the contributions of two cells. */
+	private void apply(int a, int b, int sign)
+	{
+		applyCell(a, sign);
+		applyCell(b, sign);
+		for (int direction = RayTable.FIRST_ORTHOGONAL; direction < RayTable.FIRST_ORTHOGONAL+RayTable.DIRECTIONS_PER_PIECE; direction++)
+		{
+			applyPair(a, direction, -1, sign);
+			// skip b's pairs with a, since they've already been counted from a
+			applyPair(b, direction, a, sign);
+		}
+	}
+	
+	/** Adds or takes away the contributions of a single cell. */
+	private void applyCell(int cell, int sign)
+	{
+		int value = board.get(cell);
+		int x = cell%size, y = cell/size;
+		
+		if (value != y+1)
+		{
+			mismatches[ROWS_ASCENDING] += sign;
+		}
+		if (value != size-y)
+		{
+			mismatches[ROWS_DESCENDING] += sign;
+		}
+		if (value != x+1)
+		{
+			mismatches[COLUMNS_ASCENDING] += sign;
+		}
+		if (value != size-x)
+		{
+			mismatches[COLUMNS_DESCENDING] += sign;
+		}
+		applyMisplaced(ROWS_ASCENDING, y, value-1, sign);
+		applyMisplaced(ROWS_DESCENDING, y, size-value, sign);
+		applyMisplaced(COLUMNS_ASCENDING, x, value-1, sign);
+		applyMisplaced(COLUMNS_DESCENDING, x, size-value, sign);
+		
+		rowChanges += applyGroup(2*y + x%2, value, sign);
+		columnChanges += applyGroup(2*(size+x) + y%2, value, sign);
+		
+		// a cell's either there or it isn't, so flipping its bit both adds and takes it away
+		valueColumns[(value-1)*size + y] ^= 1 << x;
+		staleValues |= 1 << (value-1);
+		
+		// a line only goes missing a value when its count drops to 0, and stops missing it when it rises from 0
+		int row = y*size+value-1;
+		int column = x*size+value-1;
+		if (sign < 0)
+		{
+			if (--rowCounts[row] == 0)
+			{
+				rowMissing++;
+			}
+			if (--columnCounts[column] == 0)
+			{
+				columnMissing++;
+			}
+		}
+		else
+		{
+			if (rowCounts[row]++ == 0)
+			{
+				rowMissing--;
+			}
+			if (columnCounts[column]++ == 0)
+			{
+				columnMissing--;
+			}
+		}
+	}
+	
+	/** Adds or takes away a Line-Up piece in line <tt>line</tt> that belongs in line <tt>home</tt>, for one layout. */
+	private void applyMisplaced(int layout, int line, int home, int sign)
+	{
+		if (line != home)
+		{
+			int there = layout*size*size + line*size + home;
+			int back = layout*size*size + home*size + line;
+			int before = Math.min(misplaced[there], misplaced[back]);
+			misplaced[there] += sign;
+			exchanges[layout] += Math.min(misplaced[there], misplaced[back]) - before;
+		}
+	}
+	
+	/**
+	  * Adds or takes away a value from an Alternation group.
+	  * @return the change in the number of cells that would have to change for the group to match.
+	  */
+	private int applyGroup(int group, int value, int sign)
+	{
+		int index = group*size+value-1;
+		int frequencies = group*(size+1);
+		groupFrequencies[frequencies+groupCounts[index]]--;
+		groupCounts[index] += sign;
+		groupFrequencies[frequencies+groupCounts[index]]++;
+		
+		// whichever value turns up most gets to stay put, so that's the only count that matters
+		if (groupCounts[index] > groupMost[group])
+		{
+			groupMost[group]++;
+			return -1;
+		}
+		else if (groupFrequencies[frequencies+groupMost[group]] == 0)
+		{
+			groupMost[group]--;
+			return 1;
+		}
+		return 0;
+	}
+	
+	/**
+	  * Adds or takes away the contributions of the pairs a cell makes in one orthogonal direction:
+	  * with its neighbour (Scatter) and with the cell after that (Alternation). Pairs with
+	  * <tt>skip</tt> are left alone.
+	  */
+	private void applyPair(int cell, int direction, int skip, int sign)
+	{
+		int ray = cell*RayTable.DIRECTIONS + direction;
+		int start = rays.getStarts()[ray];
+		int length = rays.getEnds()[ray] - start;
+		int value = board.get(cell);
+		
+		if (length >= 1)
+		{
+			int neighbour = rays.getRays()[start];
+			if (neighbour != skip && board.get(neighbour) == value)
+			{
+				conflicts += sign;
+			}
+		}
+		if (length >= 2)
+		{
+			int next = rays.getRays()[start+1];
+			if (next != skip && board.get(next) != value)
+			{
+				if (direction < RayTable.FIRST_ORTHOGONAL+2)
+				{
+					rowBreaks += sign;
+				}
+				else
+				{
+					columnBreaks += sign;
+				}
+			}
+		}
+	}
+	
+	/** Is the board in a winning position for the given game mode? */
+	public boolean victorious(int mode)
+	{
+		if (mode == NumerateGame.LINEUP_MODE)
+		{
+			return mismatches[ROWS_ASCENDING] == 0 || mismatches[ROWS_DESCENDING] == 0
+			    || mismatches[COLUMNS_ASCENDING] == 0 || mismatches[COLUMNS_DESCENDING] == 0;
+		}
+		else if (mode == NumerateGame.ALTERNATE_MODE)
+		{
+			return rowBreaks == 0 || columnBreaks == 0;
+		}
+		else if (mode == NumerateGame.SCATTER_MODE)
+		{
+			return conflicts == 0;
+		}
+		else if (mode == NumerateGame.SUMMATION_MODE)
+		{
+			return rowMissing == 0 && columnMissing == 0;
+		}
+		return false;
+	}
+	
+	/**
+	  * Gets a lower bound on the number of swaps needed to win in the given game mode, ignoring
+	  * which swaps are actually legal. Never overestimates, so it's safe to use as a search
+	  * heuristic. Returns 0 exactly when the board is victorious. This is {@link #estimate(int)}
+	  * rounded up.
+	  */
+	public int lowerBound(int mode)
+	{
+		return (estimate(mode)+ESTIMATE_SCALE-1)/ESTIMATE_SCALE;
+	}
+	
+	/**
+	  * Gets the same lower bound as {@link #lowerBound(int)}, but before it's rounded up to whole
+	  * swaps, in {@link #ESTIMATE_SCALE}ths of a swap. A search can use it to tell apart two positions
+	  * the same number of swaps from winning.
+	  * <ul>
+	  * <li>Line-Up: a swap can put at most two misplaced pieces in place, and only does that when
+	  * they belong in each other's lines. Otherwise, pieces go round in cycles of three or more
+	  * lines, and a cycle of n pieces takes n-1 swaps.</li>
+	  * <li>Alternation: every group of cells that has to match needs everything but its most common
+	  * value changed, and a swap changes two cells.</li>
+	  * <li>Scatter: of any two conflicts that share no cells, each needs a cell of its own moved, and
+	  * a swap moves two cells (or fixes at most eight conflicts, if that says more).</li>
+	  * <li>Summation: a swap brings at most one new value into each of two rows, and one into each of
+	  * two columns. Also, every piece of a value past the most that could stay without sharing a row
+	  * or column has to move, and a swap moves two pieces.</li>
+	  * </ul>
+	  */
+	public int estimate(int mode)
+	{
+		if (mode == NumerateGame.LINEUP_MODE)
+		{
+			int fewest = Integer.MAX_VALUE;
+			for (int layout = 0; layout < 4; layout++)
+			{
+				// each cycle saves a swap, and there can't be more than a third of the pieces' worth of them
+				fewest = Math.min(fewest, (2*mismatches[layout] - exchanges[layout])*ESTIMATE_SCALE/3);
+			}
+			return fewest;
+		}
+		else if (mode == NumerateGame.ALTERNATE_MODE)
+		{
+			return Math.min(rowChanges, columnChanges)*ESTIMATE_SCALE/CELLS_PER_SWAP;
+		}
+		else if (mode == NumerateGame.SCATTER_MODE)
+		{
+			return Math.max(conflicts*ESTIMATE_SCALE/SCATTER_FIXES_PER_SWAP,
+			                separateConflicts()*ESTIMATE_SCALE/CELLS_PER_SWAP);
+		}
+		else if (mode == NumerateGame.SUMMATION_MODE)
+		{
+			int lines = Math.max(rowMissing, columnMissing)*ESTIMATE_SCALE/SUMMATION_FIXES_PER_SWAP;
+			if (lines == 0)
+			{
+				return 0;
+			}
+			updateStaying();
+			return Math.max(lines, (size*size-stayingTotal)*ESTIMATE_SCALE/CELLS_PER_SWAP);
+		}
+		return 0;
+	}
+	
+	/**
+	  * Summation: works out {@link #staying} again for every value that's moved since it was last
+	  * worked out. A swap only moves two values, so that's usually all.
+	  */
+	private void updateStaying()
+	{
+		while (staleValues != 0)
+		{
+			int value = Integer.numberOfTrailingZeros(staleValues);
+			staleValues &= staleValues-1;
+			
+			int base = value*size;
+			int matched = 0;
+			for (int column = 0; column < size; column++)
+			{
+				columnRows[column] = -1;
+			}
+			for (int row = 0; row < size; row++)
+			{
+				triedColumns = 0;
+				if (valueColumns[base+row] != 0 && matchRow(base, row))
+				{
+					matched++;
+				}
+			}
+			stayingTotal += matched - staying[value];
+			staying[value] = matched;
+		}
+	}
+	
+	/**
+	  * Summation: tries to match a row to a column it has a piece in, moving rows already matched on
+	  * to other columns if need be (an augmenting path).
+	  * @return true if the row got a column.
+	  */
+	private boolean matchRow(int base, int row)
+	{
+		int options = valueColumns[base+row] & ~triedColumns;
+		while (options != 0)
+		{
+			int column = Integer.numberOfTrailingZeros(options);
+			options &= options-1;
+			if ((triedColumns & (1 << column)) != 0)
+			{
+				continue;
+			}
+			triedColumns |= 1 << column;
+			if (columnRows[column] < 0 || matchRow(base, columnRows[column]))
+			{
+				columnRows[column] = row;
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	  * Scatter: counts conflicts that share no cells with each other, by pairing off touching equal
+	  * pieces greedily. Not necessarily the most there could be, but never more.
+	  */
+	private int separateConflicts()
+	{
+		if (conflicts == 0)
+		{
+			return 0;
+		}
+		BitBoard.clearBits(paired);
+		int found = 0;
+		for (int cell = 0; cell < size*size; cell++)
+		{
+			if (BitBoard.testBit(paired, cell))
+			{
+				continue;
+			}
+			int value = board.get(cell);
+			int right = cell+1, below = cell+size;
+			// every pair gets looked at from its left (or top) cell
+			if (cell%size < size-1 && board.get(right) == value && !BitBoard.testBit(paired, right))
+			{
+				BitBoard.setBit(paired, right);
+				found++;
+			}
+			else if (below < size*size && board.get(below) == value && !BitBoard.testBit(paired, below))
+			{
+				BitBoard.setBit(paired, below);
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	  * Gets how much is left to fix to win in the given game mode, in whatever a mode counts
+	  * (mismatched cells, breaks, conflicts or missing values). Finer-grained than
+	  * {@link #lowerBound(int)}, so better for telling two close positions apart. 0 exactly when
+	  * the board is victorious.
+	  */
+	public int unfixed(int mode)
+	{
+		if (mode == NumerateGame.LINEUP_MODE)
+		{
+			return Math.min(Math.min(mismatches[ROWS_ASCENDING], mismatches[ROWS_DESCENDING]),
+			                Math.min(mismatches[COLUMNS_ASCENDING], mismatches[COLUMNS_DESCENDING]));
+		}
+		else if (mode == NumerateGame.ALTERNATE_MODE)
+		{
+			return Math.min(rowBreaks, columnBreaks);
+		}
+		else if (mode == NumerateGame.SCATTER_MODE)
+		{
+			return conflicts;
+		}
+		else if (mode == NumerateGame.SUMMATION_MODE)
+		{
+			return rowMissing+columnMissing;
+		}
+		return 0;
+	}
+	
+	/** Gets the number of cells that don't match one of the four Line-Up layouts. */
+	public int getMismatches(int layout)
+	{
+		return mismatches[layout];
+	}
+	
+	/** Gets the number of Alternation breaks along rows. */
+	public int getRowBreaks()
+	{
+		return rowBreaks;
+	}
+	
+	/** Gets the number of Alternation breaks along columns. */
+	public int getColumnBreaks()
+	{
+		return columnBreaks;
+	}
+	
+	/** Gets the number of touching pairs of equal pieces. */
+	public int getConflicts()
+	{
+		return conflicts;
+	}
+	
+	/** Gets the number of (line, value) pairs missing from the Summation layout. */
+	public int getMissing()
+	{
+		return rowMissing+columnMissing;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,418 @@
+import java.util.ArrayList;
+
+/**
+  * Wheel timer backend class. <br /><br />
+  *
+  * Keeps timers on a {@link TimerWheel}, so incrementing the whole list only
+  * costs anything for timers that actually come due. Rather than adding time
+  * to every timer each tick, the backend keeps one running clock, and each
+  * timer is brought up to date with it only when it's looked at or changed.
+  * Every active timer sits on the wheel at the time it'll next come due, and
+  * is rescheduled whenever it changes. Timers that have come due wait in a
+  * pending list until they're triggered, so checking for triggered timers
+  * only ever looks at those.<br /><br />
+  *
+  * Timers handed to the list belong to it from then on: change them through
+  * the list, or the wheel won't know about it.
+  */
+public class WheelTimerBackend implements TimerBackend
+{
+	/** Wheel ticks per second of timer time. */
+	private static final double TICKS_PER_SEC = 1000.0;
+	/** Initial capacity for branch lists. */
+	private static final int TIMER_LIST_SIZE = 6;
+	
+	/**
+	  * Entry class. <br /><br />
+	  *
+	  * A timer along with its place in the list and on the wheel.
+	  */
+	private static class Entry
+	{
+		/** The timer. */
+		Timer timer;
+		/** Branch the timer's in. */
+		int branchNumber;
+		/** Index of the timer in its branch. */
+		int timerNumber;
+		/** The timer's handle on the wheel. */
+		int handle;
+		/** Clock time the timer was last brought up to date. */
+		double syncTime;
+		/** Is the timer waiting to be triggered? */
+		boolean pending;
+		/** Is the timer in the pending list? It stays there a while after it's triggered, until the list's cleaned. */
+		boolean listed;
+	}
+	
+	/** Timers, by branch. */
+	private ArrayList<ArrayList<Entry>> branches;
+	/** Timers, by wheel handle. */
+	private ArrayList<Entry> handles;
+	/** Timers that have come due but haven't been triggered yet. May also hold some that since have been. */
+	private ArrayList<Entry> pending;
+	/** Wheel that active timers wait on. */
+	private TimerWheel wheel;
+	/** Sets timers off as the wheel reaches them. */
+	private TimerWheel.Expiry expiry;
+	/** Total time the list has been incremented by. */
+	private double time;
+	/** Number of active timers. */
+	private int activeCount;
+	/** Listener told about timers coming due. */
+	private TimerListener listener;
+	
+	/** Standard constructor. Starts out with no branches. */
+	public WheelTimerBackend()
+	{
+		branches = new ArrayList<ArrayList<Entry>>();
+		handles = new ArrayList<Entry>();
+		pending = new ArrayList<Entry>();
+		wheel = new TimerWheel(TIMER_LIST_SIZE, 0);
+		expiry = new TimerWheel.Expiry()
+		{
+			public void expired(int handle)
+			{
+				Entry entry = handles.get(handle);
+				sync(entry);
+				schedule(entry);
+			}
+		};
+		time = 0.0;
+		activeCount = 0;
+		listener = null;
+	}
+	
+	/**
+	  * Converts clock time to the first wheel tick at or after it. The wheel's always advanced to
+	  * the tick after the clock too, so a timer due partway through a tick is never missed; one that
+	  * goes off a little early just gets rescheduled.
+	  */
+	private static long tickAfter(double time)
+	{
+		return (long)Math.ceil(time*TICKS_PER_SEC);
+	}
+	
+	/** Brings a timer's current period up to date with the clock. */
+	private void sync(Entry entry)
+	{
+		entry.timer.increment(time-entry.syncTime);
+		entry.syncTime = time;
+	}
+	
+	/**
+	  * Puts a timer back where it belongs after it's changed: on the wheel if it's counting down,
+	  * in the pending list if it's due, or nowhere if it's inactive.
+	  */
+	private void schedule(Entry entry)
+	{
+		Timer timer = entry.timer;
+		double timeLeft = timer.timeLeft();
+		if (timer.isTriggered() || timeLeft <= 0.0)
+		{
+			wheel.cancel(entry.handle);
+			if (!entry.pending)
+			{
+				entry.pending = true;
+				if (!entry.listed)
+				{
+					entry.listed = true;
+					pending.add(entry);
+				}
+				if (listener != null)
+				{
+					listener.timerExpired(entry.branchNumber, entry.timerNumber, timer.getId());
+				}
+			}
+		}
+		else
+		{
+			// it's dropped out of the pending list, if it was in it; it gets cleaned out later
+			entry.pending = false;
+			if (timer.isActive())
+			{
+				wheel.schedule(entry.handle, tickAfter(time+timeLeft));
+			}
+			else
+			{
+				wheel.cancel(entry.handle);
+			}
+		}
+	}
+	
+	/** Gets a timer's entry, brought up to date. Call {@link #update} once it's been changed. */
+	private Entry edit(int branchNumber, int timerNumber)
+	{
+		Entry entry = branches.get(branchNumber).get(timerNumber);
+		sync(entry);
+		if (entry.timer.isActive())
+		{
+			activeCount--;
+		}
+		return entry;
+	}
+	
+	/** Finishes changing a timer got with {@link #edit}. */
+	private void update(Entry entry)
+	{
+		if (entry.timer.isActive())
+		{
+			activeCount++;
+		}
+		schedule(entry);
+	}
+	
+	/** Drops timers that have since been triggered from the pending list. */
+	private void cleanPending()
+	{
+		int kept = 0;
+		for (int i = 0; i < pending.size(); i++)
+		{
+			Entry entry = pending.get(i);
+			if (entry.pending)
+			{
+				pending.set(kept++, entry);
+			}
+			else
+			{
+				entry.listed = false;
+			}
+		}
+		while (pending.size() > kept)
+		{
+			pending.remove(pending.size()-1);
+		}
+	}
+	
+	/** Counts the number of branches. */
+	public int branchCount()
+	{
+		return branches.size();
+	}
+	
+	/** Counts the number of timers in a branch. */
+	public int timerCount(int branchNumber)
+	{
+		return branches.get(branchNumber).size();
+	}
+	
+	/** Adds a single new branch. */
+	public void addBranch()
+	{
+		branches.add(new ArrayList<Entry>(TIMER_LIST_SIZE));
+	}
+	
+	/** Inserts a timer into a branch, and puts it on the wheel if it's active. */
+	public void addTimer(int branchNumber, int timerNumber, Timer timer)
+	{
+		Entry entry = new Entry();
+		entry.timer = timer;
+		entry.branchNumber = branchNumber;
+		entry.handle = handles.size();
+		entry.syncTime = time;
+		entry.pending = false;
+		entry.listed = false;
+		handles.add(entry);
+		
+		ArrayList<Entry> branch = branches.get(branchNumber);
+		branch.add(timerNumber, entry);
+		for (int i = timerNumber; i < branch.size(); i++)
+		{
+			branch.get(i).timerNumber = i;
+		}
+		
+		if (timer.isActive())
+		{
+			activeCount++;
+		}
+		schedule(entry);
+	}
+	
+	/**
+	  * Gets a copy of a timer, brought up to date with the clock. Changing it has no effect on the list:
+	  * the timer itself only changes through the backend, so its place on the wheel stays right.
+	  */
+	public Timer getTimer(int branchNumber, int timerNumber)
+	{
+		Entry entry = branches.get(branchNumber).get(timerNumber);
+		sync(entry);
+		return new Timer(entry.timer);
+	}
+	
+	/** Gets a timer's id. */
+	public String getId(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).get(timerNumber).timer.getId();
+	}
+	
+	/** Gets a timer's period. */
+	public double getPeriod(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).get(timerNumber).timer.getPeriod();
+	}
+	
+	/** Gets a timer's maximum execution count. */
+	public int getMaxExecCount(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).get(timerNumber).timer.getMaxExecCount();
+	}
+	
+	/** Gets a timer's execution count. */
+	public int getExecCount(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).get(timerNumber).timer.getExecCount();
+	}
+	
+	/** Checks if there are any active timers. Active timers are counted as they change, so this doesn't look at any. */
+	public boolean isActive()
+	{
+		return activeCount > 0;
+	}
+	
+	/** Checks if there are any active timers in a branch. */
+	public boolean isActive(int branchNumber)
+	{
+		ArrayList<Entry> branch = branches.get(branchNumber);
+		for (int i = 0; i < branch.size(); i++)
+		{
+			if (branch.get(i).timer.isActive())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/** Checks if a timer is active. */
+	public boolean isActive(int branchNumber, int timerNumber)
+	{
+		return branches.get(branchNumber).get(timerNumber).timer.isActive();
+	}
+	
+	/** Sets a timer's id. */
+	public void setId(int branchNumber, int timerNumber, String id)
+	{
+		branches.get(branchNumber).get(timerNumber).timer.setId(id);
+	}
+	
+	/** Sets a timer's period, and reschedules it. */
+	public void setPeriod(int branchNumber, int timerNumber, double period)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.setPeriod(period);
+		update(entry);
+	}
+	
+	/** Sets a timer's max execution count, and reschedules it. */
+	public void setMaxExecCount(int branchNumber, int timerNumber, int maxExecCount)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.setMaxExecCount(maxExecCount);
+		update(entry);
+	}
+	
+	/** Sets a timer's execution count, and reschedules it. */
+	public void setExecCount(int branchNumber, int timerNumber, int execCount)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.setExecCount(execCount);
+		update(entry);
+	}
+	
+	/** Changes a timer's active status, and reschedules it. */
+	public void setIsActive(int branchNumber, int timerNumber, boolean isActive)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.setIsActive(isActive);
+		update(entry);
+	}
+	
+	/** Changes a timer's triggered status. */
+	public void setIsTriggered(int branchNumber, int timerNumber, boolean isTriggered)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.setIsTriggered(isTriggered);
+		update(entry);
+	}
+	
+	/** Moves the clock on. Only timers that come due on the way get looked at. */
+	public void increment(double amount)
+	{
+		time += amount;
+		wheel.advance(tickAfter(time), expiry);
+	}
+	
+	/** Increments every timer in a branch, on top of the clock. */
+	public void increment(int branchNumber, double amount)
+	{
+		ArrayList<Entry> branch = branches.get(branchNumber);
+		for (int i = 0; i < branch.size(); i++)
+		{
+			increment(branchNumber, i, amount);
+		}
+	}
+	
+	/** Increments a timer, on top of the clock. */
+	public void increment(int branchNumber, int timerNumber, double amount)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.increment(amount);
+		update(entry);
+	}
+	
+	/** Checks if any timer has been triggered, triggering every one that has. Only timers that have come due get looked at. */
+	public boolean triggered()
+	{
+		boolean triggered = false;
+		// triggering can leave a timer due again, but never adds new ones to the list
+		for (int i = 0; i < pending.size(); i++)
+		{
+			Entry entry = pending.get(i);
+			if (entry.pending && triggered(entry.branchNumber, entry.timerNumber))
+			{
+				triggered = true;
+			}
+		}
+		cleanPending();
+		return triggered;
+	}
+	
+	/** Checks if any timer in a branch has been triggered, triggering every one that has. */
+	public boolean triggered(int branchNumber)
+	{
+		boolean triggered = false;
+		for (int i = 0; i < pending.size(); i++)
+		{
+			Entry entry = pending.get(i);
+			if (entry.pending && entry.branchNumber == branchNumber && triggered(entry.branchNumber, entry.timerNumber))
+			{
+				triggered = true;
+			}
+		}
+		cleanPending();
+		return triggered;
+	}
+	
+	/** Checks if a timer has been triggered. */
+	public boolean triggered(int branchNumber, int timerNumber)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		boolean triggered = entry.timer.triggered();
+		update(entry);
+		return triggered;
+	}
+	
+	/** Resets a timer, and reschedules it. */
+	public void reset(int branchNumber, int timerNumber)
+	{
+		Entry entry = edit(branchNumber, timerNumber);
+		entry.timer.reset();
+		update(entry);
+	}
+	
+	/** Sets the listener told about timers coming due. Can be null. */
+	public void setListener(TimerListener d_listener)
+	{
+		listener = d_listener;
+	}
+}
\ No newline at end of file